@@ -0,0 +1,97 @@
+package Inventory.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory H2 database in MySQL mode standing in for MySQL.
+ *
+ * {@link #start(int)} points the application's settings (ims.db.*) at the
+ * database, so it must run before any application class reads them, i.e.
+ * first thing in a trial-level setup. The schema is the application's own
+ * db/schema.sql.
+ */
+public final class BenchmarkDatabase {
+    static final String URL = "jdbc:h2:mem:ims-bench;MODE=MySQL;DATABASE_TO_LOWER=FALSE;"
+            + "CASE_INSENSITIVE_IDENTIFIERS=TRUE;DB_CLOSE_DELAY=-1";
+    static final String USER = "sa";
+    static final String PASSWORD = "bench";
+
+    private static int seededRows = -1;
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * Create the schema and the given number of products, once per JVM
+     */
+    public static synchronized void start(int rows) throws SQLException, IOException {
+        System.setProperty("ims.db.url", URL);
+        System.setProperty("ims.db.user", USER);
+        System.setProperty("ims.db.password", PASSWORD);
+        System.setProperty("ims.db.driver", "org.h2.Driver");
+        if (seededRows >= 0) {
+            if (seededRows < rows) {
+                insertProducts(seededRows, rows);
+                seededRows = rows;
+            }
+            return;
+        }
+        try (Connection conn = connect(); Statement stmt = conn.createStatement()) {
+            for (String sql : schema().split(";")) {
+                String statement = sql.trim();
+                // The schema also creates and selects the IMS database, which H2 does not need,
+                // and MySQL triggers, which H2 only supports as Java classes
+                if (!statement.isEmpty() && !statement.startsWith("CREATE DATABASE") && !statement.startsWith("USE ")
+                        && !statement.startsWith("CREATE TRIGGER")) {
+                    stmt.execute(statement);
+                }
+            }
+        }
+        insertProducts(0, rows);
+        seededRows = rows;
+    }
+
+    public static Connection connect() throws SQLException {
+        return DriverManager.getConnection(URL, USER, PASSWORD);
+    }
+
+    private static void insertProducts(int from, int to) throws SQLException {
+        try (Connection conn = connect();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "INSERT INTO Product (Products, Category, Name, Brand, Cost, Quantity) VALUES (?, ?, ?, ?, ?, ?)")) {
+            String[] categories = { "Dairy", "Non-Dairy", "Frozen", "Bakery" };
+            for (int i = from; i < to; i++) {
+                stmt.setString(1, "Product " + i);
+                stmt.setString(2, categories[i % categories.length]);
+                stmt.setString(3, "Name \"" + i + "\" with some text");
+                stmt.setString(4, "Brand " + (i % 50));
+                stmt.setInt(5, 10 + i % 490);
+                stmt.setInt(6, i % 100);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private static String schema() throws IOException {
+        try (InputStream in = BenchmarkDatabase.class.getResourceAsStream("/schema.sql")) {
+            if (in == null) {
+                throw new IOException("schema.sql is not on the classpath");
+            }
+            String text = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)).lines()
+                    .filter(line -> !line.trim().startsWith("--"))
+                    .collect(Collectors.joining("\n"));
+            return text;
+        }
+    }
+}
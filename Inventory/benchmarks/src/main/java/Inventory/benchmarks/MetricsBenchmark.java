@@ -0,0 +1,43 @@
+package Inventory.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Inventory.src.Inventory.Metrics;
+
+/**
+ * What MetricsFilter adds to every request: normalizing the route, finding
+ * its counters and recording status, latency and size. Run on 4 threads so
+ * contention on the shared counters is included.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@Threads(4)
+public class MetricsBenchmark {
+
+    private final Metrics metrics = Metrics.shared();
+
+    @Benchmark
+    public String route() {
+        return Metrics.route("/products", "/1234/adjust");
+    }
+
+    @Benchmark
+    public void recordRequest() {
+        metrics.request("GET", Metrics.route("/products", "/1234")).record(200, 1_500_000, 180);
+    }
+
+    @Benchmark
+    public Metrics.StatementStats statementLookup() {
+        return metrics.statement("SELECT * FROM Product WHERE ID = ?");
+    }
+}
@@ -0,0 +1,85 @@
+package Inventory.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Inventory.src.Inventory.Product;
+import Inventory.src.Inventory.ProductJsonCodec;
+
+/**
+ * Request bodies of doPost (every field) and doPut (a partial update):
+ * reading the body into a string for org.json, as the servlet did before,
+ * against parsing it from the reader with ProductJsonCodec.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class RequestParsingBenchmark {
+
+    private static final String POST_BODY = "{\n  \"products\": \"Milk 1L\",\n  \"category\": \"Dairy\",\n"
+            + "  \"name\": \"Whole milk \\\"fresh\\\"\",\n  \"brand\": \"Amul\",\n  \"cost\": 60,\n  \"quantity\": 25\n}";
+    private static final String PUT_BODY = "{\"cost\": 65, \"quantity\": 24}";
+
+    @Benchmark
+    public Product postOrgJson() throws IOException {
+        JSONObject json = new JSONObject(readBody(POST_BODY));
+        return new Product(null, json.getString("products"), json.getString("category"), json.getString("name"),
+                json.getString("brand"), json.getInt("cost"), json.getInt("quantity"));
+    }
+
+    @Benchmark
+    public Product postCodec() throws IOException {
+        return ProductJsonCodec.readProduct(new StringReader(POST_BODY))
+                .require(ProductJsonCodec.ALL_FIELDS).getProduct();
+    }
+
+    @Benchmark
+    public int putOrgJson() throws IOException {
+        JSONObject json = new JSONObject(readBody(PUT_BODY));
+        int changed = 0;
+        for (String key : new String[] { "products", "category", "name", "brand", "cost", "quantity" }) {
+            if (json.has(key)) {
+                changed += key.equals("cost") || key.equals("quantity") ? json.getInt(key) : json.getString(key).length();
+            }
+        }
+        return changed;
+    }
+
+    @Benchmark
+    public int putCodec() throws IOException {
+        ProductJsonCodec.Fields fields = ProductJsonCodec.readProduct(new StringReader(PUT_BODY));
+        Product changes = fields.getProduct();
+        int changed = 0;
+        if (fields.has(ProductJsonCodec.COST)) {
+            changed += changes.getCost();
+        }
+        if (fields.has(ProductJsonCodec.QUANTITY)) {
+            changed += changes.getQuantity();
+        }
+        return changed;
+    }
+
+    /**
+     * The body collected line by line, as doPost and doPut did for org.json
+     */
+    private static String readBody(String body) throws IOException {
+        BufferedReader reader = new BufferedReader(new StringReader(body));
+        StringBuilder requestBody = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            requestBody.append(line);
+        }
+        return requestBody.toString();
+    }
+}
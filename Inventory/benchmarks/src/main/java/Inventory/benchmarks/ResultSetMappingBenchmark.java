@@ -0,0 +1,108 @@
+package Inventory.benchmarks;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+
+import Inventory.src.Inventory.DatabaseUtil;
+import Inventory.src.Inventory.Product;
+import Inventory.src.Inventory.ProductJsonCodec;
+
+/**
+ * Product rows to JSON. The query runs once per trial into a scrollable
+ * result set that every operation rewinds, so only the mapping is measured,
+ * not the query.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class ResultSetMappingBenchmark {
+
+    @Param({ "1", "100", "1000" })
+    public int rows;
+
+    private Connection conn;
+    private Statement stmt;
+    private ResultSet rs;
+    private final Gson gson = new Gson();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkDatabase.start(1000);
+        conn = BenchmarkDatabase.connect();
+        stmt = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        rs = stmt.executeQuery("SELECT * FROM Product ORDER BY ID ASC LIMIT " + rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        rs.close();
+        stmt.close();
+        conn.close();
+    }
+
+    @Benchmark
+    public String orgJson() throws SQLException {
+        rs.beforeFirst();
+        JSONArray array = new JSONArray();
+        while (rs.next()) {
+            JSONObject json = new JSONObject();
+            json.put("id", rs.getString("ID"));
+            json.put("products", rs.getString("Products"));
+            json.put("category", rs.getString("Category"));
+            json.put("name", rs.getString("Name"));
+            json.put("brand", rs.getString("Brand"));
+            json.put("cost", rs.getInt("Cost"));
+            json.put("quantity", rs.getInt("Quantity"));
+            json.put("version", rs.getLong("Version"));
+            array.put(json);
+        }
+        return array.toString();
+    }
+
+    @Benchmark
+    public String gsonProducts() throws SQLException {
+        rs.beforeFirst();
+        List<Product> products = new ArrayList<>();
+        while (rs.next()) {
+            products.add(DatabaseUtil.toProduct(rs));
+        }
+        return gson.toJson(products);
+    }
+
+    @Benchmark
+    public String codec() throws SQLException {
+        rs.beforeFirst();
+        StringBuilder sb = new StringBuilder(256);
+        sb.append('[');
+        boolean first = true;
+        while (rs.next()) {
+            if (!first) {
+                sb.append(',');
+            }
+            ProductJsonCodec.write(sb, rs);
+            first = false;
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,48 @@
+package Inventory.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks twice: throughput in ops/s, then sampled latency in
+ * microseconds, whose output includes p99. The GC profiler adds the
+ * allocation rate (gc.alloc.rate and gc.alloc.rate.norm, bytes per
+ * operation) to both. Results are also written to jmh-throughput.json and
+ * jmh-latency.json.
+ *
+ * Any standard JMH option can be passed, e.g. a benchmark regex or -f 1;
+ * passing -bm runs only that mode.
+ */
+public final class RunBenchmarks {
+
+    private RunBenchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (!cli.getBenchModes().isEmpty()) {
+            new Runner(new OptionsBuilder().parent(cli).addProfiler(GCProfiler.class).build()).run();
+            return;
+        }
+        run(cli, Mode.Throughput, TimeUnit.SECONDS, "jmh-throughput.json");
+        run(cli, Mode.SampleTime, TimeUnit.MICROSECONDS, "jmh-latency.json");
+    }
+
+    private static void run(CommandLineOptions cli, Mode mode, TimeUnit unit, String resultFile) throws Exception {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(cli)
+                .mode(mode)
+                .timeUnit(cli.getTimeUnit().orElse(unit))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile);
+        new Runner(options.build()).run();
+    }
+}
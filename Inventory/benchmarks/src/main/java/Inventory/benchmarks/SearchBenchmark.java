@@ -0,0 +1,104 @@
+package Inventory.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Inventory.src.Inventory.Product;
+import Inventory.src.Inventory.SearchIndex;
+
+/**
+ * SearchIndex queries over a synthetic catalog: names of two to four words
+ * drawn from a 20,000-word vocabulary, 2,000 brands and 40 categories.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SearchBenchmark {
+
+    @Param({ "100000", "1000000" })
+    public int products;
+
+    private SearchIndex index;
+    private String[] vocabulary;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        vocabulary = new String[20_000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = word(random, 4 + random.nextInt(6));
+        }
+        String[] brands = new String[2_000];
+        for (int i = 0; i < brands.length; i++) {
+            brands[i] = word(random, 5 + random.nextInt(4));
+        }
+        String[] categories = new String[40];
+        for (int i = 0; i < categories.length; i++) {
+            categories[i] = word(random, 6 + random.nextInt(4));
+        }
+        index = new SearchIndex(50);
+        for (int i = 0; i < products; i++) {
+            StringBuilder name = new StringBuilder();
+            int words = 2 + random.nextInt(3);
+            for (int w = 0; w < words; w++) {
+                // Skewed, so some words are common and most are rare
+                name.append(w > 0 ? " " : "").append(vocabulary[(int) (vocabulary.length * Math.pow(random.nextDouble(), 3))]);
+            }
+            index.productSaved(new Product(String.valueOf(i + 1), vocabulary[random.nextInt(vocabulary.length)],
+                    categories[random.nextInt(categories.length)], name.toString(),
+                    brands[random.nextInt(brands.length)], 10 + random.nextInt(1000), random.nextInt(100)));
+        }
+    }
+
+    /**
+     * A mid-frequency word, as typed in full
+     */
+    @Benchmark
+    public SearchIndex.Result exactWord() {
+        return index.search(vocabulary[500], 20);
+    }
+
+    /**
+     * The first three letters of a word, as typed so far
+     */
+    @Benchmark
+    public SearchIndex.Result prefix() {
+        return index.search(vocabulary[500].substring(0, 3), 20);
+    }
+
+    /**
+     * A word with two letters swapped
+     */
+    @Benchmark
+    public SearchIndex.Result typo() {
+        String word = vocabulary[1500];
+        return index.search(word.charAt(1) + "" + word.charAt(0) + word.substring(2), 20);
+    }
+
+    /**
+     * Two words that must both match
+     */
+    @Benchmark
+    public SearchIndex.Result twoWords() {
+        return index.search(vocabulary[3] + " " + vocabulary[800].substring(0, 4), 20);
+    }
+
+    private static String word(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(26)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,119 @@
+package Inventory.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+
+import Inventory.src.Inventory.Product;
+import Inventory.src.Inventory.ProductJsonCodec;
+
+/**
+ * Product to JSON array text: the org.json and Gson code the servlets used
+ * before, against ProductJsonCodec.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({ "1", "100" })
+    public int size;
+
+    private List<Product> products;
+    private final Gson gson = new Gson();
+    private final StringBuilder buffer = new StringBuilder(256);
+
+    @Setup
+    public void setUp() {
+        products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Product product = new Product(String.valueOf(i + 1), "Product " + i, "Dairy",
+                    "Name \"" + i + "\" with some text", "Brand " + (i % 50), 10 + i, i % 100);
+            product.setVersion(i % 7);
+            products.add(product);
+        }
+    }
+
+    /**
+     * A JSONObject per product, as the listings did
+     */
+    @Benchmark
+    public String orgJson() {
+        JSONArray array = new JSONArray();
+        for (Product product : products) {
+            JSONObject json = new JSONObject();
+            json.put("id", product.getId());
+            json.put("products", product.getProducts());
+            json.put("category", product.getCategory());
+            json.put("name", product.getName());
+            json.put("brand", product.getBrand());
+            json.put("cost", product.getCost());
+            json.put("quantity", product.getQuantity());
+            json.put("version", product.getVersion());
+            array.put(json);
+        }
+        return array.toString();
+    }
+
+    /**
+     * A map per product and a new Gson per response, as the low-stock listing did
+     */
+    @Benchmark
+    public String gsonMaps() {
+        List<Map<String, Object>> maps = new ArrayList<>(products.size());
+        for (Product product : products) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("id", product.getId());
+            map.put("products", product.getProducts());
+            map.put("category", product.getCategory());
+            map.put("name", product.getName());
+            map.put("brand", product.getBrand());
+            map.put("cost", product.getCost());
+            map.put("quantity", product.getQuantity());
+            map.put("version", product.getVersion());
+            maps.add(map);
+        }
+        return new Gson().toJson(maps);
+    }
+
+    /**
+     * Gson reflecting over Product with a shared instance, its best case
+     */
+    @Benchmark
+    public String gsonReflective() {
+        return gson.toJson(products);
+    }
+
+    @Benchmark
+    public String codec() {
+        StringBuilder sb = new StringBuilder(256);
+        ProductJsonCodec.writeArray(sb, products);
+        return sb.toString();
+    }
+
+    /**
+     * The codec into a reused buffer, as the streamed listings use it
+     */
+    @Benchmark
+    public int codecReusedBuffer() {
+        buffer.setLength(0);
+        ProductJsonCodec.writeArray(buffer, products);
+        return buffer.length();
+    }
+}
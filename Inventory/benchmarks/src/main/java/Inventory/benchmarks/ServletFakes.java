@@ -0,0 +1,105 @@
+package Inventory.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Minimal in-memory request and response objects, so servlet handlers can
+ * be invoked directly without a container or a socket in the measurement.
+ */
+final class ServletFakes {
+
+    private ServletFakes() {
+    }
+
+    /**
+     * A request; async is reported as unsupported so handlers run on the
+     * calling thread
+     */
+    static HttpServletRequest request(String method, String pathInfo, Map<String, String> parameters,
+            Map<String, String> headers, String body) {
+        return (HttpServletRequest) Proxy.newProxyInstance(ServletFakes.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class }, (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "getMethod": return method;
+                        case "getPathInfo": return pathInfo;
+                        case "getServletPath": return "/products";
+                        case "getRequestURI": return "/Inventory/products" + (pathInfo == null ? "" : pathInfo);
+                        case "getProtocol": return "HTTP/1.1";
+                        case "getParameter": return parameters.get((String) args[0]);
+                        case "getParameterMap": return Collections.emptyMap();
+                        case "getHeader": return headers.get((String) args[0]);
+                        case "getDateHeader": return -1L;
+                        case "getIntHeader": return -1;
+                        case "getContentType": return headers.get("Content-Type");
+                        case "getCharacterEncoding": return "UTF-8";
+                        case "getReader": return new BufferedReader(new StringReader(body == null ? "" : body));
+                        case "isAsyncSupported": return false;
+                        case "getDispatcherType": return jakarta.servlet.DispatcherType.REQUEST;
+                        case "hashCode": return System.identityHashCode(proxy);
+                        case "equals": return proxy == args[0];
+                        case "toString": return method + " " + pathInfo;
+                        default: return defaultValue(m.getReturnType());
+                    }
+                });
+    }
+
+    /**
+     * A response whose body and status can be read back and reused
+     */
+    static final class Response {
+        final StringWriter body = new StringWriter(4096);
+        final Map<String, String> headers = new HashMap<>();
+        int status = 200;
+        private PrintWriter writer = new PrintWriter(body);
+
+        final HttpServletResponse servletResponse = (HttpServletResponse) Proxy.newProxyInstance(
+                ServletFakes.class.getClassLoader(), new Class<?>[] { HttpServletResponse.class }, (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "getWriter": return writer;
+                        case "setStatus": status = (Integer) args[0]; return null;
+                        case "getStatus": return status;
+                        case "setHeader":
+                        case "addHeader": headers.put((String) args[0], (String) args[1]); return null;
+                        case "getHeader": return headers.get((String) args[0]);
+                        case "setContentType": headers.put("Content-Type", (String) args[0]); return null;
+                        case "isCommitted": return false;
+                        case "reset": clear(); return null;
+                        case "hashCode": return System.identityHashCode(proxy);
+                        case "equals": return proxy == args[0];
+                        default: return defaultValue(m.getReturnType());
+                    }
+                });
+
+        /**
+         * Forget the previous request's output
+         */
+        void clear() {
+            body.getBuffer().setLength(0);
+            headers.clear();
+            status = 200;
+        }
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
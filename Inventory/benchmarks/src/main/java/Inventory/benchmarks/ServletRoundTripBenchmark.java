@@ -0,0 +1,109 @@
+package Inventory.benchmarks;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Inventory.src.Inventory.ProductServlet;
+
+/**
+ * ProductServlet requests end to end against the in-memory database:
+ * routing, body parsing, JDBC through the connection pool and the JSON
+ * response. The product cache is turned off so every read reaches the
+ * database. Created products are left in the table.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dims.cache.enabled=false")
+public class ServletRoundTripBenchmark {
+    private static final int PRODUCTS = 1000;
+    private static final Map<String, String> NONE = Collections.emptyMap();
+    private static final Map<String, String> JSON = Collections.singletonMap("Content-Type", "application/json");
+
+    private ProductServlet servlet;
+
+    /**
+     * Each thread reuses its own response buffer
+     */
+    @State(Scope.Thread)
+    public static class Exchange {
+        final ServletFakes.Response response = new ServletFakes.Response();
+
+        String randomId() {
+            return String.valueOf(ThreadLocalRandom.current().nextInt(PRODUCTS) + 1);
+        }
+
+        int send(ProductServlet servlet, String method, String pathInfo, Map<String, String> parameters,
+                Map<String, String> headers, String body) throws Exception {
+            response.clear();
+            servlet.service(ServletFakes.request(method, pathInfo, parameters, headers, body),
+                    response.servletResponse);
+            if (response.status >= 400) {
+                throw new IllegalStateException(method + " " + pathInfo + " failed with " + response.status
+                        + ": " + response.body);
+            }
+            return response.body.getBuffer().length();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkDatabase.start(PRODUCTS);
+        servlet = new ProductServlet();
+        servlet.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        servlet.destroy();
+    }
+
+    @Benchmark
+    public int getById(Exchange exchange) throws Exception {
+        return exchange.send(servlet, "GET", "/" + exchange.randomId(), NONE, NONE, null);
+    }
+
+    @Benchmark
+    public int listPage(Exchange exchange) throws Exception {
+        return exchange.send(servlet, "GET", null, Collections.singletonMap("limit", "50"), NONE, null);
+    }
+
+    @Benchmark
+    public int create(Exchange exchange) throws Exception {
+        return exchange.send(servlet, "POST", null, NONE, JSON,
+                "{\"products\":\"Bench\",\"category\":\"Dairy\",\"name\":\"Benchmark product\","
+                        + "\"brand\":\"Brand\",\"cost\":42,\"quantity\":10}");
+    }
+
+    @Benchmark
+    public int update(Exchange exchange) throws Exception {
+        return exchange.send(servlet, "PUT", "/" + exchange.randomId(), NONE, JSON,
+                "{\"cost\":" + (10 + ThreadLocalRandom.current().nextInt(100)) + "}");
+    }
+
+    @Benchmark
+    public int adjust(Exchange exchange) throws Exception {
+        int delta = ThreadLocalRandom.current().nextBoolean() ? 1 : -1;
+        exchange.response.clear();
+        String id = exchange.randomId();
+        servlet.service(ServletFakes.request("POST", "/" + id + "/adjust", NONE, JSON, "{\"delta\":" + delta + "}"),
+                exchange.response.servletResponse);
+        // 409 when a decrement would go below zero is an expected outcome
+        if (exchange.response.status >= 400 && exchange.response.status != 409) {
+            throw new IllegalStateException("adjust " + id + " failed with " + exchange.response.status);
+        }
+        return exchange.response.status;
+    }
+}
@@ -0,0 +1,104 @@
+package Inventory.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Inventory.src.Inventory.ColumnarSnapshot;
+import Inventory.src.Inventory.Product;
+import Inventory.src.Inventory.ProductQuery;
+
+/**
+ * Filtered listings answered by ColumnarSnapshot over a synthetic catalog of
+ * 40 categories and 2,000 brands.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SnapshotBenchmark {
+
+    @Param({ "100000", "1000000" })
+    public int products;
+
+    private ColumnarSnapshot snapshot;
+    private ProductQuery categoryPage;
+    private ProductQuery costRangeByQuantity;
+    private ProductQuery namePrefixByName;
+    private ProductQuery rareBrandPage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        snapshot = new ColumnarSnapshot(true, 65536, 0);
+        for (int i = 0; i < products; i++) {
+            snapshot.productSaved(new Product(String.valueOf(i + 1), "item" + random.nextInt(5000),
+                    "category" + random.nextInt(40), word(random) + " " + word(random),
+                    "brand" + random.nextInt(2000), 10 + random.nextInt(1000), random.nextInt(100)));
+        }
+        categoryPage = query("category", "category7", "limit", "100");
+        costRangeByQuantity = query("minCost", "200", "maxCost", "400", "sort", "quantity", "order", "desc", "limit", "100");
+        namePrefixByName = query("name", "ka", "sort", "name", "limit", "50");
+        rareBrandPage = query("brand", "brand1234", "limit", "100");
+    }
+
+    /**
+     * Equality filter in ID order: stops once the page is full
+     */
+    @Benchmark
+    public ProductQuery.Page categoryPage() {
+        return snapshot.query(categoryPage);
+    }
+
+    /**
+     * Range filter in another order: scans every row
+     */
+    @Benchmark
+    public ProductQuery.Page costRangeByQuantity() {
+        return snapshot.query(costRangeByQuantity);
+    }
+
+    /**
+     * Name prefix ordered by name
+     */
+    @Benchmark
+    public ProductQuery.Page namePrefixByName() {
+        return snapshot.query(namePrefixByName);
+    }
+
+    /**
+     * Selective filter in ID order: fewer matches than a page, so every row is scanned
+     */
+    @Benchmark
+    public ProductQuery.Page rareBrandPage() {
+        return snapshot.query(rareBrandPage);
+    }
+
+    private static ProductQuery query(String... parameters) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < parameters.length; i += 2) {
+            map.put(parameters[i], parameters[i + 1]);
+        }
+        return ProductQuery.fromRequest(ServletFakes.request("GET", null, map, new HashMap<>(), ""));
+    }
+
+    private static String word(Random random) {
+        StringBuilder sb = new StringBuilder(8);
+        int length = 4 + random.nextInt(5);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(26)));
+        }
+        return sb.toString();
+    }
+}
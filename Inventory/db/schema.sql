@@ -0,0 +1,77 @@
+-- Inventory Management System schema (MySQL 8)
+--
+-- Fresh install:  mysql -u root -p < db/schema.sql
+-- Existing database: run this file again (it only creates what is missing
+-- and replaces the triggers), then the commented ALTER TABLE and INSERT
+-- INTO ProductChange statements it has not had yet, once each.
+
+CREATE DATABASE IF NOT EXISTS IMS;
+USE IMS;
+
+CREATE TABLE IF NOT EXISTS Product (
+    ID INT NOT NULL AUTO_INCREMENT,
+    Products VARCHAR(255) NOT NULL,
+    Category VARCHAR(100) NOT NULL,
+    Name VARCHAR(255) NOT NULL,
+    Brand VARCHAR(100) NOT NULL,
+    Cost INT NOT NULL,
+    Quantity INT NOT NULL,
+    Version INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (ID),
+    -- Listing filters and keyset pagination: every sortable column is indexed
+    -- together with ID so "WHERE col = ? ORDER BY col, ID" and
+    -- "(col, ID) > (?, ?)" page boundaries are plain range scans.
+    INDEX idx_product_category (Category, ID),
+    INDEX idx_product_brand (Brand, ID),
+    INDEX idx_product_name (Name, ID),
+    INDEX idx_product_cost (Cost, ID),
+    INDEX idx_product_quantity (Quantity, ID)
+);
+
+-- Row version for optimistic concurrency, bumped by every update
+-- ALTER TABLE Product ADD COLUMN Version INT NOT NULL DEFAULT 0;
+
+-- Listing indexes (MySQL has no CREATE INDEX IF NOT EXISTS)
+-- ALTER TABLE Product ADD INDEX idx_product_category (Category, ID),
+--     ADD INDEX idx_product_brand (Brand, ID), ADD INDEX idx_product_name (Name, ID),
+--     ADD INDEX idx_product_cost (Cost, ID), ADD INDEX idx_product_quantity (Quantity, ID);
+
+-- Last stock-adjustment journal record applied by write-behind
+-- (ims.writeBehind.enabled); only needed when that is enabled
+CREATE TABLE IF NOT EXISTS WriteBehindCheckpoint (
+    Name VARCHAR(64) NOT NULL,
+    Seq BIGINT NOT NULL,
+    PRIMARY KEY (Name)
+);
+
+-- Change log for delta sync (GET /products?since=<Seq>): the triggers
+-- below add an entry for every insert, update and delete of a product.
+-- Entries superseded by a newer one for the same product are deleted
+-- periodically (ims.sync.compactIntervalMs). Every product write, stock
+-- adjustments included, therefore also inserts one ProductChange row in
+-- the same transaction.
+CREATE TABLE IF NOT EXISTS ProductChange (
+    Seq BIGINT NOT NULL AUTO_INCREMENT,
+    ProductID INT NOT NULL,
+    Deleted BOOLEAN NOT NULL DEFAULT FALSE,
+    ChangedAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (Seq),
+    -- Change log compaction joins every entry to the newer ones of its product
+    INDEX idx_product_change_product (ProductID, Seq)
+);
+
+-- Change log index on a database that already has ProductChange
+-- ALTER TABLE ProductChange ADD INDEX idx_product_change_product (ProductID, Seq);
+
+DROP TRIGGER IF EXISTS product_change_insert;
+DROP TRIGGER IF EXISTS product_change_update;
+DROP TRIGGER IF EXISTS product_change_delete;
+CREATE TRIGGER product_change_insert AFTER INSERT ON Product
+    FOR EACH ROW INSERT INTO ProductChange (ProductID) VALUES (NEW.ID);
+CREATE TRIGGER product_change_update AFTER UPDATE ON Product
+    FOR EACH ROW INSERT INTO ProductChange (ProductID) VALUES (NEW.ID);
+CREATE TRIGGER product_change_delete AFTER DELETE ON Product
+    FOR EACH ROW INSERT INTO ProductChange (ProductID, Deleted) VALUES (OLD.ID, TRUE);
+
+-- Existing database: log the products already there, once
+-- INSERT INTO ProductChange (ProductID) SELECT ID FROM Product;
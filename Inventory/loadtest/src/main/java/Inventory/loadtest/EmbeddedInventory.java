@@ -0,0 +1,253 @@
+package Inventory.loadtest;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+
+import Inventory.src.Inventory.Product;
+import Inventory.src.Inventory.ProductRepository;
+import Inventory.src.Inventory.ProductServlet;
+import jakarta.servlet.Servlet;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.annotation.WebListener;
+import jakarta.servlet.annotation.WebServlet;
+
+/**
+ * The application in an embedded Tomcat at /Inventory, on an in-memory H2
+ * database in MySQL mode (loaded from db/schema.sql) or on the embedded log
+ * store in a temporary directory.
+ *
+ * The application's settings (ims.*) are set as system properties before
+ * any application class reads them, so settings passed with -D on the
+ * command line win. Products are written through the store before Tomcat
+ * starts, so the in-memory indexes load them as they would after a restart.
+ */
+public final class EmbeddedInventory implements AutoCloseable {
+    private static final String DB_URL = "jdbc:h2:mem:ims-load;MODE=MySQL;DATABASE_TO_LOWER=FALSE;"
+            + "CASE_INSENSITIVE_IDENTIFIERS=TRUE;DB_CLOSE_DELAY=-1";
+    private static final String APP_PACKAGE = "Inventory/src/Inventory/";
+    private static final String[] CATEGORIES = { "Dairy", "Non-Dairy", "Frozen", "Bakery" };
+    // As mapped in WEB-INF/web.xml
+    private static final List<String> FILTER_ORDER = List.of(
+            "HttpResponseFilter", "MetricsFilter", "AdmissionControlFilter");
+
+    private final Tomcat tomcat;
+    private final Path baseDir;
+    private final List<String> productIds;
+
+    private EmbeddedInventory(Tomcat tomcat, Path baseDir, List<String> productIds) {
+        this.tomcat = tomcat;
+        this.baseDir = baseDir;
+        this.productIds = productIds;
+    }
+
+    /**
+     * @param store "h2" for the JDBC code path against an in-memory database,
+     *            or "log" for the embedded append-only store
+     */
+    public static EmbeddedInventory start(int port, String store, int products) throws Exception {
+        Path baseDir = Files.createTempDirectory("ims-loadtest");
+        if ("log".equals(store)) {
+            setDefault("ims.store", "log");
+            setDefault("ims.store.dir", baseDir.resolve("store").toString());
+        } else if ("h2".equals(store)) {
+            setDefault("ims.store", "mysql");
+            setDefault("ims.db.url", DB_URL);
+            setDefault("ims.db.user", "sa");
+            setDefault("ims.db.password", "load");
+            setDefault("ims.db.driver", "org.h2.Driver");
+            createSchema();
+        } else {
+            throw new IllegalArgumentException("Unknown store: " + store + " (expected h2 or log)");
+        }
+
+        List<String> ids = seed(products);
+
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(baseDir.resolve("tomcat").toString());
+        tomcat.setPort(port);
+        tomcat.getConnector();
+        File docBase = Files.createDirectories(baseDir.resolve("webapp")).toFile();
+        Context context = tomcat.addContext("/Inventory", docBase.getAbsolutePath());
+        deploy(context);
+        tomcat.start();
+        return new EmbeddedInventory(tomcat, baseDir, ids);
+    }
+
+    public String getBaseUri() {
+        return "http://localhost:" + tomcat.getConnector().getLocalPort() + "/Inventory";
+    }
+
+    /**
+     * IDs of the products written at startup, in insertion order
+     */
+    public List<String> getProductIds() {
+        return productIds;
+    }
+
+    @Override
+    public void close() throws LifecycleException, IOException {
+        tomcat.stop();
+        tomcat.destroy();
+        try (Stream<Path> paths = Files.walk(baseDir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    private static void createSchema() throws SQLException, IOException {
+        try (Connection conn = DriverManager.getConnection(System.getProperty("ims.db.url"),
+                System.getProperty("ims.db.user"), System.getProperty("ims.db.password"));
+             Statement stmt = conn.createStatement()) {
+            for (String sql : schema().split(";")) {
+                String statement = sql.trim();
+                // The schema also creates and selects the IMS database, which H2 does not need,
+                // and MySQL triggers, which H2 only supports as Java classes
+                if (!statement.isEmpty() && !statement.startsWith("CREATE DATABASE") && !statement.startsWith("USE ")
+                        && !statement.startsWith("CREATE TRIGGER")) {
+                    stmt.execute(statement);
+                }
+            }
+        }
+    }
+
+    private static String schema() throws IOException {
+        try (InputStream in = EmbeddedInventory.class.getResourceAsStream("/schema.sql")) {
+            if (in == null) {
+                throw new IOException("schema.sql is not on the classpath");
+            }
+            return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)).lines()
+                    .filter(line -> !line.trim().startsWith("--"))
+                    .collect(Collectors.joining("\n"));
+        }
+    }
+
+    private static List<String> seed(int products) throws SQLException {
+        ProductRepository repository = ProductRepository.shared();
+        List<String> ids = new ArrayList<>(products);
+        for (int i = 0; i < products; i++) {
+            Product product = new Product(null, "Product " + i, CATEGORIES[i % CATEGORIES.length],
+                    "Name " + i + " with some text", "Brand " + (i % 50), 10 + i % 490, i % 100);
+            ids.add(repository.insert(product).getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Register the application's annotated servlets, filters and listeners,
+     * as a container scanning WEB-INF/classes would. Filters run in the
+     * order web.xml maps them, so CORS headers, compression and metrics also
+     * cover requests that admission control turns away.
+     */
+    private static void deploy(Context context) throws Exception {
+        List<Class<?>> filters = new ArrayList<>();
+        for (Class<?> type : applicationClasses()) {
+            if (type.isAnnotationPresent(WebListener.class)) {
+                context.addApplicationListener(type.getName());
+            }
+            WebServlet servlet = type.getAnnotation(WebServlet.class);
+            if (servlet != null) {
+                Wrapper wrapper = Tomcat.addServlet(context, type.getSimpleName(),
+                        (Servlet) type.getDeclaredConstructor().newInstance());
+                wrapper.setAsyncSupported(servlet.asyncSupported());
+                wrapper.setLoadOnStartup(servlet.loadOnStartup());
+                for (String pattern : patterns(servlet.value(), servlet.urlPatterns())) {
+                    context.addServletMappingDecoded(pattern, type.getSimpleName());
+                }
+            }
+            if (type.isAnnotationPresent(WebFilter.class)) {
+                filters.add(type);
+            }
+        }
+        filters.sort(Comparator.comparing((Class<?> type) -> filterOrder(type.getAnnotation(WebFilter.class)))
+                .thenComparing(Class::getSimpleName));
+        for (Class<?> type : filters) {
+            WebFilter filter = type.getAnnotation(WebFilter.class);
+            FilterDef def = new FilterDef();
+            def.setFilterName(filter.filterName());
+            def.setFilterClass(type.getName());
+            def.setAsyncSupported(Boolean.toString(filter.asyncSupported()));
+            context.addFilterDef(def);
+            FilterMap map = new FilterMap();
+            map.setFilterName(filter.filterName());
+            for (String pattern : patterns(filter.value(), filter.urlPatterns())) {
+                map.addURLPattern(pattern);
+            }
+            context.addFilterMap(map);
+        }
+    }
+
+    /**
+     * Position of the filter's mapping in web.xml; unmapped filters last
+     */
+    private static int filterOrder(WebFilter filter) {
+        int index = FILTER_ORDER.indexOf(filter.filterName());
+        return index >= 0 ? index : FILTER_ORDER.size();
+    }
+
+    private static List<String> patterns(String[] value, String[] urlPatterns) {
+        List<String> patterns = new ArrayList<>(List.of(value));
+        patterns.addAll(List.of(urlPatterns));
+        return patterns;
+    }
+
+    /**
+     * Top-level classes of the application, from its jar or class directory
+     */
+    private static List<Class<?>> applicationClasses() throws IOException, URISyntaxException, ClassNotFoundException {
+        Path location = Path.of(ProductServlet.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        List<String> names = new ArrayList<>();
+        if (Files.isDirectory(location)) {
+            try (Stream<Path> files = Files.list(location.resolve(APP_PACKAGE))) {
+                files.forEach(file -> names.add(APP_PACKAGE + file.getFileName()));
+            }
+        } else {
+            try (JarFile jar = new JarFile(location.toFile())) {
+                for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements();) {
+                    String name = entries.nextElement().getName();
+                    if (name.startsWith(APP_PACKAGE) && name.indexOf('/', APP_PACKAGE.length()) < 0) {
+                        names.add(name);
+                    }
+                }
+            }
+        }
+        List<Class<?>> classes = new ArrayList<>();
+        for (String name : names) {
+            if (name.endsWith(".class") && name.indexOf('$') < 0) {
+                String className = name.substring(0, name.length() - ".class".length()).replace('/', '.');
+                classes.add(Class.forName(className, false, EmbeddedInventory.class.getClassLoader()));
+            }
+        }
+        return classes;
+    }
+}
@@ -0,0 +1,321 @@
+package Inventory.loadtest;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import Inventory.loadtest.Workload.Operation;
+
+/**
+ * Sends a {@link Workload} at a fixed arrival rate (an open model) and
+ * records the latencies.
+ *
+ * Requests are started on a schedule, Poisson or evenly spaced, whether or
+ * not earlier ones have finished, each on its own virtual thread (before
+ * Java 21, a pool of 256 platform threads). Latency is measured from the time a
+ * request was scheduled to start, not from when it was sent, so a stalled
+ * server or a late scheduler shows up in the percentiles instead of
+ * quietly lowering the request rate (coordinated omission). The time from
+ * sending to the response (service time) is recorded as well; the gap
+ * between the two is time spent queued.
+ *
+ * A request that would exceed maxInFlight is not sent and counts as an
+ * error: past that point the client, not the server, is the bottleneck.
+ */
+public final class LoadDriver {
+    // Latencies are recorded in microseconds up to a minute, to three significant digits
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+    // Senders before Java 21; requests beyond this wait in the pool's queue, which counts against their latency
+    private static final int FALLBACK_THREADS = 256;
+
+    private final Workload workload;
+    private final double rate;
+    private final boolean poisson;
+    private final int maxInFlight;
+    private final HttpClient client;
+    private final ExecutorService executor;
+
+    private final Recorder[] latency = new Recorder[Operation.values().length];
+    private final Recorder[] serviceTime = new Recorder[Operation.values().length];
+    private final LongAdder[] ok = new LongAdder[Operation.values().length];
+    private final LongAdder[] shed = new LongAdder[Operation.values().length];
+    private final LongAdder[] errors = new LongAdder[Operation.values().length];
+    private final LongAdder unsent = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile long recordFrom;
+
+    /**
+     * @param rate requests per second
+     * @param poisson exponentially distributed gaps between requests, as from
+     *            many independent clients; otherwise evenly spaced
+     */
+    public LoadDriver(Workload workload, double rate, boolean poisson, int maxInFlight, Duration connectTimeout) {
+        this.workload = workload;
+        this.rate = rate;
+        this.poisson = poisson;
+        this.maxInFlight = maxInFlight;
+        this.executor = newExecutor("ims-load", maxInFlight);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .build();
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] = new Recorder(MAX_LATENCY_MICROS, 3);
+            serviceTime[i] = new Recorder(MAX_LATENCY_MICROS, 3);
+            ok[i] = new LongAdder();
+            shed[i] = new LongAdder();
+            errors[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Send requests for warmup + duration, printing progress every
+     * reportInterval, then wait for the requests still in flight
+     *
+     * @return the latencies of the requests scheduled after the warmup
+     */
+    public Results run(Duration warmup, Duration duration, Duration reportInterval, Duration drainTimeout,
+            PrintStream out) throws InterruptedException {
+        long start = System.nanoTime();
+        long measureStart = start + warmup.toNanos();
+        long end = measureStart + duration.toNanos();
+        recordFrom = measureStart;
+
+        Results results = new Results();
+        long nextReport = start + reportInterval.toNanos();
+        long lastReport = start;
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        double intended = start;
+        out.println("    time    req/s   p50 ms   p99 ms   max ms   errors  shed  in flight");
+        while (intended < end) {
+            long scheduled = (long) intended;
+            long now = System.nanoTime();
+            if (now >= nextReport) {
+                report(results, now - start, now - lastReport, now < measureStart, out);
+                lastReport = now;
+                nextReport += reportInterval.toNanos();
+            }
+            if (scheduled > now) {
+                LockSupport.parkNanos(Math.min(scheduled, nextReport) - now);
+                continue;
+            }
+            send(scheduled);
+            intended += poisson ? -Math.log(1 - ThreadLocalRandom.current().nextDouble()) * meanGapNanos : meanGapNanos;
+        }
+
+        executor.shutdown();
+        if (!executor.awaitTermination(drainTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            out.println("Gave up waiting for " + inFlight.get() + " requests still in flight");
+            executor.shutdownNow();
+        }
+        long now = System.nanoTime();
+        report(results, now - start, now - lastReport, false, out);
+        results.seconds = duration.toNanos() / 1e9;
+        results.unsent = unsent.sum();
+        for (Operation operation : Operation.values()) {
+            int i = operation.ordinal();
+            results.ok[i] = ok[i].sum();
+            results.shed[i] = shed[i].sum();
+            results.errors[i] = errors[i].sum();
+        }
+        return results;
+    }
+
+    private void send(long scheduled) {
+        Workload.Call call = workload.next();
+        boolean recorded = scheduled >= recordFrom;
+        int i = call.operation.ordinal();
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            if (recorded) {
+                unsent.increment();
+                errors[i].increment();
+            }
+            return;
+        }
+        executor.execute(() -> {
+            long sent = System.nanoTime();
+            int status;
+            try {
+                if (call.operation == Operation.CREATE) {
+                    HttpResponse<String> response = client.send(call.request, HttpResponse.BodyHandlers.ofString());
+                    status = response.statusCode();
+                    if (status == 200 || status == 201) {
+                        workload.created(response.body());
+                    }
+                } else {
+                    status = client.send(call.request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                status = -1;
+            } catch (Exception e) {
+                // Timeouts and refused or reset connections
+                status = -1;
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            long done = System.nanoTime();
+            if (!recorded) {
+                return;
+            }
+            latency[i].recordValue(Math.min(MAX_LATENCY_MICROS, (done - scheduled) / 1000));
+            serviceTime[i].recordValue(Math.min(MAX_LATENCY_MICROS, (done - sent) / 1000));
+            if ((status >= 200 && status < 300) || status == 304) {
+                ok[i].increment();
+            } else if (status == 503) {
+                shed[i].increment();
+            } else {
+                errors[i].increment();
+            }
+        });
+    }
+
+    /**
+     * One progress line for the requests completed since the last one, which
+     * are also added to the results unless still warming up
+     */
+    private void report(Results results, long elapsedNanos, long intervalNanos, boolean warmingUp, PrintStream out) {
+        Histogram interval = new Histogram(MAX_LATENCY_MICROS, 3);
+        for (Operation operation : Operation.values()) {
+            int i = operation.ordinal();
+            Histogram operationInterval = latency[i].getIntervalHistogram();
+            Histogram operationService = serviceTime[i].getIntervalHistogram();
+            interval.add(operationInterval);
+            results.latency[i].add(operationInterval);
+            results.serviceTime[i].add(operationService);
+        }
+        long errorCount = 0;
+        long shedCount = 0;
+        for (int i = 0; i < errors.length; i++) {
+            errorCount += errors[i].sum();
+            shedCount += shed[i].sum();
+        }
+        out.println(String.format(Locale.ROOT, "%7.1fs %8.0f %8.2f %8.2f %8.2f %8d %5d %10d%s",
+                elapsedNanos / 1e9, interval.getTotalCount() / (intervalNanos / 1e9),
+                interval.getValueAtPercentile(50) / 1000.0, interval.getValueAtPercentile(99) / 1000.0,
+                interval.getMaxValue() / 1000.0, errorCount, shedCount, inFlight.get(),
+                warmingUp ? "  (warmup)" : ""));
+    }
+
+    /**
+     * A virtual thread per task where the runtime has them, otherwise a
+     * prestarted pool of daemon threads, since starting a platform thread
+     * per request would hold up the schedule
+     */
+    private static ExecutorService newExecutor(String threadName, int maxThreads) {
+        try {
+            // Looked up reflectively so the code still compiles for Java 17
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, threadName + "-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger count = new AtomicInteger();
+            int threads = Math.min(maxThreads, FALLBACK_THREADS);
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                        Thread thread = new Thread(r, threadName + "-" + count.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            pool.prestartAllCoreThreads();
+            return pool;
+        }
+    }
+
+    /**
+     * Counts and latency histograms by operation, in microseconds
+     */
+    public static final class Results {
+        final Histogram[] latency = new Histogram[Operation.values().length];
+        final Histogram[] serviceTime = new Histogram[Operation.values().length];
+        final long[] ok = new long[Operation.values().length];
+        final long[] shed = new long[Operation.values().length];
+        final long[] errors = new long[Operation.values().length];
+        long unsent;
+        double seconds;
+
+        Results() {
+            for (int i = 0; i < latency.length; i++) {
+                latency[i] = new Histogram(MAX_LATENCY_MICROS, 3);
+                serviceTime[i] = new Histogram(MAX_LATENCY_MICROS, 3);
+            }
+        }
+
+        /**
+         * Table of throughput and latency percentiles (in ms, from the
+         * scheduled start) by operation, with the service-time p99 alongside
+         */
+        public void print(PrintStream out) {
+            out.println();
+            out.println("operation       count       ok   shed  errors    req/s     p50     p90     p99   p99.9     max"
+                    + "  svc p99");
+            Histogram allLatency = new Histogram(MAX_LATENCY_MICROS, 3);
+            Histogram allService = new Histogram(MAX_LATENCY_MICROS, 3);
+            long allOk = 0;
+            long allShed = 0;
+            long allErrors = 0;
+            for (Operation operation : Operation.values()) {
+                int i = operation.ordinal();
+                if (latency[i].getTotalCount() == 0 && errors[i] == 0) {
+                    continue;
+                }
+                row(out, operation.label(), latency[i], serviceTime[i], ok[i], shed[i], errors[i]);
+                allLatency.add(latency[i]);
+                allService.add(serviceTime[i]);
+                allOk += ok[i];
+                allShed += shed[i];
+                allErrors += errors[i];
+            }
+            row(out, "all", allLatency, allService, allOk, allShed, allErrors);
+            if (unsent > 0) {
+                out.println(unsent + " requests were not sent: more than --max-in-flight were outstanding");
+            }
+        }
+
+        /**
+         * Write the full latency distribution of each operation as an HdrHistogram
+         * percentile file, prefix-operation.hgrm, for plotting
+         */
+        public void writeDistributions(String prefix) throws FileNotFoundException {
+            for (Operation operation : Operation.values()) {
+                Histogram histogram = latency[operation.ordinal()];
+                if (histogram.getTotalCount() == 0) {
+                    continue;
+                }
+                try (PrintStream file = new PrintStream(prefix + "-" + operation.label() + ".hgrm")) {
+                    histogram.outputPercentileDistribution(file, 1000.0);
+                }
+            }
+        }
+
+        private void row(PrintStream out, String label, Histogram latency, Histogram service, long ok, long shed,
+                long errors) {
+            out.println(String.format(Locale.ROOT,
+                    "%-12s %8d %8d %6d %7d %8.1f %7.2f %7.2f %7.2f %7.2f %7.2f %8.2f",
+                    label, ok + shed + errors, ok, shed, errors, (ok + shed + errors) / seconds,
+                    latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(90) / 1000.0,
+                    latency.getValueAtPercentile(99) / 1000.0, latency.getValueAtPercentile(99.9) / 1000.0,
+                    latency.getMaxValue() / 1000.0, service.getValueAtPercentile(99) / 1000.0));
+        }
+    }
+}
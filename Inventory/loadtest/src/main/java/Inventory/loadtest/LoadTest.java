@@ -0,0 +1,163 @@
+package Inventory.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Load test for /products: starts the application in an embedded Tomcat on
+ * an in-memory database (or uses --target), sends the workload at the given
+ * rate and prints throughput and latency percentiles by operation.
+ *
+ * <pre>
+ * java -jar loadtest.jar --rate 2000 --duration 60
+ * java -jar loadtest.jar --store log --products 100000 --mix get=90,update=10
+ * java -jar loadtest.jar --target http://staging:8080/Inventory --rate 200
+ * </pre>
+ *
+ * Application settings (ims.*) can be passed with -D, e.g.
+ * -Dims.admission.enabled=false to measure without load shedding.
+ */
+public final class LoadTest {
+    private static final Pattern PRODUCT_ID = Pattern.compile("\"id\"\\s*:\\s*\"?(\\d+)");
+
+    private static final String USAGE = String.join("\n",
+            "Options (defaults in brackets):",
+            "  --target URL           application to load, e.g. http://host:8080/Inventory [embedded]",
+            "  --store h2|log         store of the embedded application [h2]",
+            "  --port N               port of the embedded application, 0 for any free one [0]",
+            "  --products N           products written before the embedded application starts [10000]",
+            "  --rate N               requests per second [500]",
+            "  --duration SECONDS     measured time [30]",
+            "  --warmup SECONDS       unmeasured time before it [10]",
+            "  --arrival poisson|constant  gaps between requests [poisson]",
+            "  --mix OP=WEIGHT,...    operations: list, get, low-stock, create, update, delete",
+            "                         [" + Workload.DEFAULT_MIX + "]",
+            "  --skew N               Zipf exponent of product popularity, 0 for uniform [0.99]",
+            "  --list-limit N         page size of list requests, 0 for the full listing [50]",
+            "  --gzip true|false      ask for compressed reads [true]",
+            "  --max-in-flight N      outstanding requests before new ones are counted as errors [10000]",
+            "  --timeout-ms N         per-request timeout [10000]",
+            "  --report-interval SECONDS  progress line interval [5]",
+            "  --hgrm PREFIX          also write PREFIX-<operation>.hgrm latency distributions");
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        if (options == null) {
+            System.out.println(USAGE);
+            return;
+        }
+        Duration timeout = Duration.ofMillis(Long.parseLong(option(options, "timeout-ms", "10000")));
+        // Reject a bad mix before spending time on startup
+        Workload.parseMix(option(options, "mix", Workload.DEFAULT_MIX));
+
+        EmbeddedInventory embedded = null;
+        String baseUri = options.get("target");
+        List<String> productIds;
+        if (baseUri == null) {
+            String store = option(options, "store", "h2");
+            int products = Integer.parseInt(option(options, "products", "10000"));
+            System.out.println("Starting the application on " + store + " with " + products + " products...");
+            embedded = EmbeddedInventory.start(Integer.parseInt(option(options, "port", "0")), store, products);
+            baseUri = embedded.getBaseUri();
+            productIds = embedded.getProductIds();
+        } else {
+            baseUri = baseUri.replaceAll("/+$", "");
+            productIds = fetchProductIds(baseUri, timeout);
+        }
+
+        try {
+            Workload workload = new Workload(baseUri, option(options, "mix", Workload.DEFAULT_MIX), productIds,
+                    Double.parseDouble(option(options, "skew", "0.99")),
+                    Integer.parseInt(option(options, "list-limit", "50")),
+                    Boolean.parseBoolean(option(options, "gzip", "true")), timeout);
+            double rate = Double.parseDouble(option(options, "rate", "500"));
+            String arrival = option(options, "arrival", "poisson");
+            if (!arrival.equals("poisson") && !arrival.equals("constant")) {
+                throw new IllegalArgumentException("Unknown arrival: " + arrival + " (expected poisson or constant)");
+            }
+            LoadDriver driver = new LoadDriver(workload, rate, arrival.equals("poisson"),
+                    Integer.parseInt(option(options, "max-in-flight", "10000")), timeout);
+
+            Duration warmup = Duration.ofSeconds(Long.parseLong(option(options, "warmup", "10")));
+            Duration duration = Duration.ofSeconds(Long.parseLong(option(options, "duration", "30")));
+            System.out.println("Loading " + baseUri + " at " + rate + " requests/s (" + arrival + ") for "
+                    + warmup.getSeconds() + "s warmup + " + duration.getSeconds() + "s, " + productIds.size()
+                    + " products");
+            LoadDriver.Results results = driver.run(warmup, duration,
+                    Duration.ofSeconds(Long.parseLong(option(options, "report-interval", "5"))),
+                    timeout.plusSeconds(1), System.out);
+            results.print(System.out);
+            System.out.println("Latency in ms from each request's scheduled start (corrected for coordinated"
+                    + " omission); svc p99 is measured from when it was sent.");
+            if (options.containsKey("hgrm")) {
+                results.writeDistributions(options.get("hgrm"));
+            }
+        } finally {
+            if (embedded != null) {
+                embedded.close();
+            }
+        }
+        // The application's own pools and timers are not all daemon threads
+        System.exit(0);
+    }
+
+    /**
+     * @return the options by name, or null if help was asked for
+     */
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--help") || arg.equals("-h")) {
+                return null;
+            }
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg + "\n" + USAGE);
+            }
+            int equals = arg.indexOf('=');
+            if (equals > 0) {
+                options.put(arg.substring(2, equals), arg.substring(equals + 1));
+            } else if (i + 1 < args.length) {
+                options.put(arg.substring(2), args[++i]);
+            } else {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+        }
+        return options;
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    /**
+     * The IDs in the target's product listing, to read and update
+     */
+    private static List<String> fetchProductIds(String baseUri, Duration timeout) throws Exception {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(timeout).build();
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(URI.create(baseUri + "/products")).timeout(timeout).build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("GET " + baseUri + "/products answered " + response.statusCode());
+        }
+        List<String> ids = new ArrayList<>();
+        Matcher matcher = PRODUCT_ID.matcher(response.body());
+        while (matcher.find()) {
+            ids.add(matcher.group(1));
+        }
+        return ids;
+    }
+}
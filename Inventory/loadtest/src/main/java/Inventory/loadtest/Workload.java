@@ -0,0 +1,205 @@
+package Inventory.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * What the load test sends: a weighted mix of /products operations, with the
+ * products read and updated chosen by a {@link ZipfianGenerator}, so a few
+ * hot SKUs take most of the traffic as they do in a real catalogue.
+ *
+ * Which products are hot is a fixed shuffle of the known IDs, not the
+ * lowest IDs, so hot rows are spread over the table. Deletes remove
+ * products the load test created, newest first, and leave the known
+ * products alone; with none left to delete, a delete is sent as a create.
+ */
+public final class Workload {
+
+    /**
+     * Operations in the mix, by the name used in --mix
+     */
+    public enum Operation {
+        LIST("list"), GET("get"), LOW_STOCK("low-stock"), CREATE("create"), UPDATE("update"), DELETE("delete");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+
+        static Operation of(String label) {
+            for (Operation operation : values()) {
+                if (operation.label.equals(label)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation: " + label);
+        }
+    }
+
+    /**
+     * A request to send, and the operation it is counted under
+     */
+    public static final class Call {
+        final Operation operation;
+        final HttpRequest request;
+
+        Call(Operation operation, HttpRequest request) {
+            this.operation = operation;
+            this.request = request;
+        }
+    }
+
+    public static final String DEFAULT_MIX = "list=5,get=60,low-stock=10,create=8,update=14,delete=3";
+
+    private static final Pattern CREATED_ID = Pattern.compile("\"id\"\\s*:\\s*\"?(\\d+)");
+    private static final String[] CATEGORIES = { "Dairy", "Non-Dairy", "Frozen", "Bakery" };
+
+    private final String baseUri;
+    private final Duration timeout;
+    private final boolean compressed;
+    private final int listLimit;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final List<String> hotIds;
+    private final ZipfianGenerator keys;
+    private final ConcurrentLinkedDeque<String> created = new ConcurrentLinkedDeque<>();
+
+    /**
+     * @param mix weights by operation, e.g. {@link #DEFAULT_MIX}
+     * @param productIds existing products to read and update
+     * @param skew Zipf exponent; 0 reads all products equally often
+     * @param listLimit page size of list requests, or 0 for the full listing
+     * @param compressed send Accept-Encoding: gzip on reads, as browsers do
+     */
+    public Workload(String baseUri, String mix, List<String> productIds, double skew, int listLimit,
+            boolean compressed, Duration timeout) {
+        if (productIds.isEmpty()) {
+            throw new IllegalArgumentException("No products to read; seed some first");
+        }
+        this.baseUri = baseUri;
+        this.timeout = timeout;
+        this.compressed = compressed;
+        this.listLimit = listLimit;
+
+        Map<Operation, Integer> weights = parseMix(mix);
+        this.operations = weights.keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += weights.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("The mix has no operations: " + mix);
+        }
+
+        List<String> shuffled = new ArrayList<>(productIds);
+        Collections.shuffle(shuffled, new Random(42));
+        this.hotIds = shuffled;
+        this.keys = new ZipfianGenerator(shuffled.size(), skew);
+    }
+
+    public static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected operation=weight in the mix: " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight in the mix: " + part);
+            }
+            weights.put(Operation.of(pair[0].trim()), weight);
+        }
+        return weights;
+    }
+
+    /**
+     * The next request, drawn from the mix
+     */
+    public Call next() {
+        int draw = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int index = 0;
+        while (draw >= cumulativeWeights[index]) {
+            index++;
+        }
+        Operation operation = operations[index];
+        switch (operation) {
+            case LIST:
+                return new Call(operation, read(listLimit > 0 ? "/products?limit=" + listLimit : "/products"));
+            case GET:
+                return new Call(operation, read("/products/" + hotId()));
+            case LOW_STOCK:
+                return new Call(operation, read("/products?action=low-stock"));
+            case UPDATE:
+                return new Call(operation, write("/products/" + hotId(), "PUT",
+                        "{\"quantity\": " + ThreadLocalRandom.current().nextInt(100) + "}"));
+            case DELETE:
+                String id = created.pollLast();
+                if (id != null) {
+                    return new Call(operation, request("/products/" + id).DELETE().build());
+                }
+                return create();
+            default:
+                return create();
+        }
+    }
+
+    /**
+     * Note the ID of a product the load test created, so it can be deleted
+     * later
+     */
+    public void created(String responseBody) {
+        Matcher matcher = CREATED_ID.matcher(responseBody);
+        if (matcher.find()) {
+            created.addLast(matcher.group(1));
+        }
+    }
+
+    private Call create() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int n = random.nextInt(1_000_000);
+        String body = "{\"products\": \"Load " + n + "\", \"category\": \"" + CATEGORIES[n % CATEGORIES.length]
+                + "\", \"name\": \"Load test product " + n + "\", \"brand\": \"Brand " + (n % 50)
+                + "\", \"cost\": " + (10 + n % 490) + ", \"quantity\": " + random.nextInt(100) + "}";
+        return new Call(Operation.CREATE, write("/products", "POST", body));
+    }
+
+    private String hotId() {
+        return hotIds.get((int) keys.next());
+    }
+
+    private HttpRequest read(String path) {
+        HttpRequest.Builder builder = request(path).GET();
+        if (compressed) {
+            builder.header("Accept-Encoding", "gzip");
+        }
+        return builder.build();
+    }
+
+    private HttpRequest write(String path, String method, String json) {
+        return request(path).header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUri + path)).timeout(timeout);
+    }
+}
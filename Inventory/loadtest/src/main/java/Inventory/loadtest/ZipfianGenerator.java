@@ -0,0 +1,59 @@
+package Inventory.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Zipf-distributed ranks in [0, items), rank 0 the most popular.
+ *
+ * Uses the rejection-free method of Gray et al., "Quickly Generating
+ * Billion-Record Synthetic Databases" (SIGMOD 1994), as YCSB does: the
+ * harmonic sum zeta(items) is computed once, after which each draw costs one
+ * random number and one pow(). A skew of 0.99 sends about half the traffic
+ * to the top 1% of 10,000 keys; 0 is uniform.
+ */
+public final class ZipfianGenerator {
+    private final long items;
+    private final double skew;
+    private final double alpha;
+    private final double zetaN;
+    private final double eta;
+
+    public ZipfianGenerator(long items, double skew) {
+        if (items < 1) {
+            throw new IllegalArgumentException("items must be at least 1");
+        }
+        if (skew < 0 || skew == 1) {
+            throw new IllegalArgumentException("skew must be at least 0 and not 1");
+        }
+        this.items = items;
+        this.skew = skew;
+        this.alpha = 1 / (1 - skew);
+        this.zetaN = zeta(items, skew);
+        double zeta2 = zeta(Math.min(2, items), skew);
+        this.eta = items < 2 ? 1 : (1 - Math.pow(2.0 / items, 1 - skew)) / (1 - zeta2 / zetaN);
+    }
+
+    public long next() {
+        double u = ThreadLocalRandom.current().nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1) {
+            return 0;
+        }
+        if (uz < 1 + Math.pow(0.5, skew)) {
+            return Math.min(1, items - 1);
+        }
+        return Math.min(items - 1, (long) (items * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    public long getItems() {
+        return items;
+    }
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
@@ -72,6 +72,7 @@ const mockProducts = [
 let products = [];
 let filteredProducts = [];
 let selectedProduct = null;
+let activeFilters = {};
 
 
 
@@ -261,15 +262,30 @@ document.addEventListener('DOMContentLoaded', () => {
 });
 
 // API Functions
+
+// Products as of the last sync, and the version to sync from next
+const syncedProducts = new Map();
+let syncVersion = 0;
+
+// Fetch only what changed since the last sync (everything the first time)
 async function fetchAllProducts() {
     try {
-        console.log('Fetching all products from Java backend...');
-        const response = await fetch(`${API_BASE_URL}/products`);
-        if (!response.ok) {
-            throw new Error(`Server responded with status: ${response.status}`);
-        }
-        const data = await response.json();
-        console.log('Products fetched successfully:', data.length, 'items');
+        console.log('Syncing products from Java backend since version', syncVersion);
+        let delta;
+        do {
+            const response = await fetch(`${API_BASE_URL}/products?since=${syncVersion}`);
+            if (!response.ok) {
+                throw new Error(`Server responded with status: ${response.status}`);
+            }
+            delta = await response.json();
+            delta.items.forEach(product => syncedProducts.set(product.id, product));
+            delta.deleted.forEach(id => syncedProducts.delete(id));
+            const advanced = delta.version > syncVersion;
+            syncVersion = delta.version;
+            if (!advanced) break;
+        } while (delta.more);
+        const data = [...syncedProducts.values()].sort((a, b) => Number(a.id) - Number(b.id));
+        console.log('Products synced successfully:', data.length, 'items');
         return data;
     } catch (error) {
         console.error('Error fetching products from Java backend:', error);
@@ -278,6 +294,29 @@ async function fetchAllProducts() {
     }
 }
 
+// Fetch every product matching the given filters, one server-side page at a time
+async function fetchFilteredProducts(filters) {
+    try {
+        const query = new URLSearchParams({ ...filters, limit: 500 });
+        const items = [];
+        let cursor = null;
+        do {
+            if (cursor) query.set('after', cursor);
+            const response = await fetch(`${API_BASE_URL}/products?${query}`);
+            if (!response.ok) {
+                throw new Error(`Server responded with status: ${response.status}`);
+            }
+            const page = await response.json();
+            items.push(...page.items);
+            cursor = page.nextCursor;
+        } while (cursor);
+        return items;
+    } catch (error) {
+        console.error('Error fetching filtered products from Java backend:', error);
+        return null;
+    }
+}
+
 async function fetchProductById(id) {
     try {
         console.log(`Fetching product ID ${id} from Java backend...`);
@@ -602,24 +641,50 @@ toast.className = 'toast';
 
 
 //
+function formatLowStockMessage(products) {
+    let message = "⚠️ Low Stock Alert:\n";
+    products.forEach(p => {
+        message += `🔸 ${p.name} (Category: ${p.category}, Stock: ${p.quantity})\n`;
+    });
+    return message;
+}
+
 async function checkLowStock() {
     try {
-        const response = await fetch('http://localhost:8080/Inventory/products?action=low-stock');
+        const response = await fetch(`${API_BASE_URL}/products?action=low-stock`);
         const products = await response.json();
 
         if (products.length > 0) {
-            let message = "⚠️ Low Stock Alert:\n";
-            products.forEach(p => {
-                message += `🔸 ${p.name} (Category: ${p.category}, Stock: ${p.quantity})\n`;
-            });
-
-            showNotification(message);
+            showNotification(formatLowStockMessage(products));
         }
     } catch (error) {
         console.error("Error fetching low-stock products:", error);
     }
 }
 
+// Subscribe to low-stock changes pushed by the server; poll only if the browser has no EventSource
+function watchLowStock() {
+    if (!window.EventSource) {
+        setInterval(checkLowStock, 10000);
+        return;
+    }
+
+    const source = new EventSource(`${API_BASE_URL}/products/low-stock/stream`);
+    source.addEventListener('snapshot', event => {
+        const products = JSON.parse(event.data);
+        if (products.length > 0) {
+            showNotification(formatLowStockMessage(products));
+        }
+    });
+    source.addEventListener('enter', event => {
+        showNotification(formatLowStockMessage([JSON.parse(event.data)]));
+    });
+    source.addEventListener('update', event => {
+        showNotification(formatLowStockMessage([JSON.parse(event.data)]));
+    });
+    source.onerror = () => console.warn('Low-stock stream interrupted, reconnecting...');
+}
+
 // Function to Show Notification
 function showNotification(message) {
     // Show system notification if allowed
@@ -663,32 +728,81 @@ function showOnPageNotification(message) {
     setTimeout(() => alertBox.remove(), 5000);
 }
 
-// Run checkLowStock every 10 seconds
-setInterval(checkLowStock, 10000);
+// Start listening for low-stock alerts
+watchLowStock();
+
 
+// Ranked, typo-tolerant search on the server; results of older keystrokes are dropped
+let searchTimer = null;
+let searchSequence = 0;
+
+async function fetchSearchResults(term) {
+    try {
+        const query = new URLSearchParams({ q: term, limit: 100 });
+        const response = await fetch(`${API_BASE_URL}/products/search?${query}`);
+        if (!response.ok) {
+            throw new Error(`Server responded with status: ${response.status}`);
+        }
+        const result = await response.json();
+        return result.items;
+    } catch (error) {
+        console.error('Error searching products on Java backend:', error);
+        return null;
+    }
+}
 
 function handleSearch() {
-const term = searchInput.value.toLowerCase();
+const term = searchInput.value.trim();
+clearTimeout(searchTimer);
 
-filteredProducts = products.filter(product =>
-product.name.toLowerCase().includes(term) ||
-product.category.toLowerCase().includes(term) ||
-product.brand.toLowerCase().includes(term)
-);
+if (!term) {
+    filteredProducts = [...products];
+    renderProducts();
+    return;
+}
 
-renderProducts();
+const sequence = ++searchSequence;
+searchTimer = setTimeout(async () => {
+    const serverResults = await fetchSearchResults(term);
+    if (sequence !== searchSequence) {
+        return;
+    }
+    if (serverResults) {
+        filteredProducts = serverResults;
+    } else {
+        // Backend not reachable: search the locally loaded list instead
+        const lower = term.toLowerCase();
+        filteredProducts = products.filter(product =>
+        product.name.toLowerCase().includes(lower) ||
+        product.category.toLowerCase().includes(lower) ||
+        product.brand.toLowerCase().includes(lower)
+        );
+    }
+    renderProducts();
+}, 150);
 }
 
-function handleFilter() {
+async function handleFilter() {
 const minPrice = parseFloat(document.getElementById('minPrice').value) || 0;
 const maxPrice = parseFloat(document.getElementById('maxPrice').value) || Infinity;
-const category = document.getElementById('categoryFilter').value.toLowerCase();
+const category = document.getElementById('categoryFilter').value.trim();
 
-filteredProducts = products.filter(product => {
-const priceMatch = product.cost >= minPrice && product.cost <= maxPrice;
-const categoryMatch = category ? product.category.toLowerCase().includes(category) : true;
-return priceMatch && categoryMatch;
-});
+const params = { minCost: Math.floor(minPrice) };
+if (maxPrice !== Infinity) params.maxCost = Math.floor(maxPrice);
+if (category) params.categoryPrefix = category;
+activeFilters = params;
+
+const serverResults = await fetchFilteredProducts(params);
+if (serverResults) {
+    filteredProducts = serverResults;
+} else {
+    // Backend not reachable: filter the locally loaded list instead
+    filteredProducts = products.filter(product => {
+    const priceMatch = product.cost >= minPrice && product.cost <= maxPrice;
+    const categoryMatch = category ? product.category.toLowerCase().startsWith(category.toLowerCase()) : true;
+    return priceMatch && categoryMatch;
+    });
+}
 
 renderProducts();
 showToast(`Showing ${filteredProducts.length} products matching filter criteria`, 'info');
@@ -699,30 +813,24 @@ document.getElementById('minPrice').value = 0;
 document.getElementById('maxPrice').value = 1000;
 document.getElementById('categoryFilter').value = '';
 
+activeFilters = {};
 filteredProducts = [...products];
 renderProducts();
 showToast('Filter reset', 'info');
 }
 
 function exportToCsv() {
-// Create CSV content
-let csvContent = 'ID,Name,Brand,Category,Cost,Quantity\n';
-
-filteredProducts.forEach(product => {
-csvContent += `${product.id},"${product.name}","${product.brand}","${product.category}",${product.cost},${product.quantity}\n`;
-});
-
-// Create download link
-const encodedUri = encodeURI('data:text/csv;charset=utf-8,' + csvContent);
+// The server streams the export, so large catalogs never pass through the browser as JSON
+const query = new URLSearchParams(activeFilters);
 const link = document.createElement('a');
-link.setAttribute('href', encodedUri);
+link.setAttribute('href', `${API_BASE_URL}/products/export.csv?${query}`);
 link.setAttribute('download', 'products.csv');
 document.body.appendChild(link);
 
 // Trigger download and cleanup
 link.click();
 document.body.removeChild(link);
-showToast('CSV file exported successfully', 'success');
+showToast('CSV export started', 'success');
 }
 
 // Event Setup
@@ -750,6 +858,8 @@ btn.addEventListener('click', () => {
 searchInput.addEventListener('input', handleSearch);
 clearSearchBtn.addEventListener('click', () => {
 searchInput.value = '';
+clearTimeout(searchTimer);
+searchSequence++;
 filteredProducts = [...products];
 renderProducts();
 });
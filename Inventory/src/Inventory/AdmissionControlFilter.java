@@ -0,0 +1,134 @@
+package Inventory.src.Inventory;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Sheds /products load before it reaches MySQL (ims.admission.enabled).
+ *
+ * Every request needs a slot from {@link AdmissionLimiter}, whose limit
+ * follows the latency of the requests it admits: when MySQL slows down the
+ * limit shrinks, and requests beyond it wait briefly and are then answered
+ * at once with 503 and Retry-After instead of piling onto the database.
+ * Writes come first, then reads, then polls (low-stock, stats and delta
+ * sync). Slots are held until the handler of an async request returns,
+ * even past a timeout; bulk imports, batches and exports hold one but are
+ * left out of the latency samples, and the low-stock event stream is not
+ * limited at all.
+ */
+@WebFilter(filterName = "AdmissionControlFilter", urlPatterns = "/products/*", asyncSupported = true)
+public class AdmissionControlFilter implements Filter {
+    private static final boolean ENABLED = InventoryConfig.getBoolean("admission.enabled", true);
+    private static final int RETRY_AFTER_SECONDS = InventoryConfig.getInt("admission.retryAfterSeconds", 1);
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        String route = Metrics.route(httpRequest.getServletPath(), httpRequest.getPathInfo());
+        if (!ENABLED || "OPTIONS".equals(httpRequest.getMethod()) || "/products/low-stock/stream".equals(route)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        AdmissionLimiter limiter = AdmissionLimiter.shared();
+        boolean admitted;
+        try {
+            admitted = limiter.acquire(route, priority(httpRequest));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            httpResponse.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            httpResponse.setHeader("Retry-After", Integer.toString(RETRY_AFTER_SECONDS));
+            httpResponse.setHeader("Cache-Control", "no-store");
+            httpResponse.setContentType("application/json");
+            httpResponse.getWriter().print(ProductJsonCodec.error("Server is busy, retry later"));
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean sampled = !isLongRunning(route);
+        AtomicBoolean timedOut = new AtomicBoolean();
+        AtomicBoolean released = new AtomicBoolean();
+        IntConsumer release = status -> {
+            if (released.compareAndSet(false, true)) {
+                boolean dropped = timedOut.get() || status == HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+                limiter.release(route, sampled ? System.nanoTime() - start : -1, dropped);
+            }
+        };
+        // A dispatched handler can outlive its async context after a timeout, still holding
+        // a connection, so its slot is only released once the handler is done
+        AsyncDispatcher.whenHandled(request, release);
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                boolean dispatched = AsyncDispatcher.isDispatched(request);
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        if (!dispatched) {
+                            release.accept(httpResponse.getStatus());
+                        }
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                        timedOut.set(true);
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                release.accept(httpResponse.getStatus());
+            }
+        }
+    }
+
+    /**
+     * Writes first; low-stock polls, stats and delta sync are polled on a
+     * timer and can best afford to wait
+     */
+    private static AdmissionLimiter.Priority priority(HttpServletRequest request) {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            return AdmissionLimiter.Priority.WRITE;
+        }
+        if ("low-stock".equals(request.getParameter("action")) || "/stats".equals(request.getPathInfo())
+                || request.getParameter("since") != null) {
+            return AdmissionLimiter.Priority.POLL;
+        }
+        return AdmissionLimiter.Priority.READ;
+    }
+
+    /**
+     * Routes whose duration depends on the size of the upload or download
+     */
+    private static boolean isLongRunning(String route) {
+        return route.equals("/products/bulk") || route.equals("/products/batch")
+                || route.startsWith("/products/export.");
+    }
+}
@@ -0,0 +1,320 @@
+package Inventory.src.Inventory;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive concurrency limit for /products requests, see
+ * {@link AdmissionControlFilter}.
+ *
+ * The limit is adjusted by AIMD once per window of completed requests: if
+ * their average latency stays within ims.admission.latencyTolerancePercent
+ * of the long-term baseline (and below ims.admission.maxLatencyMs), and the
+ * limit was at least half used, it grows by one; if latency rose past that
+ * or a request timed out, it is cut by ims.admission.backoffPercent. The
+ * baseline follows improvements quickly and regressions slowly, so a
+ * sustained overload keeps the limit down instead of becoming the new
+ * normal.
+ *
+ * Reads may only use ims.admission.readSharePercent of the limit and polls
+ * ims.admission.pollSharePercent, so writes still get in while reads are
+ * saturating it, and no route may hold more than
+ * ims.admission.routeSharePercent. A request over its share waits in a
+ * queue of at most ims.admission.maxQueue, ordered by priority, for up to
+ * ims.admission.maxWaitMs; a full queue turns away its lowest-priority
+ * waiter to make room for a more important request.
+ */
+public final class AdmissionLimiter {
+    private static final AdmissionLimiter SHARED = new AdmissionLimiter(
+            InventoryConfig.getInt("admission.initialLimit", 20),
+            InventoryConfig.getInt("admission.minLimit", 4),
+            InventoryConfig.getInt("admission.maxLimit", 200),
+            InventoryConfig.getInt("admission.maxQueue", 100),
+            InventoryConfig.getLong("admission.maxWaitMs", 100),
+            InventoryConfig.getLong("admission.windowMs", 200),
+            InventoryConfig.getInt("admission.latencyTolerancePercent", 200),
+            InventoryConfig.getLong("admission.maxLatencyMs", 2000),
+            InventoryConfig.getInt("admission.backoffPercent", 90),
+            InventoryConfig.getInt("admission.readSharePercent", 90),
+            InventoryConfig.getInt("admission.pollSharePercent", 50),
+            InventoryConfig.getInt("admission.routeSharePercent", 50));
+
+    // Fewer samples than this never decide a window, however long it lasts
+    private static final int MIN_WINDOW_SAMPLES = 10;
+
+    /**
+     * Order in which waiting requests are admitted and shed
+     */
+    public enum Priority {
+        WRITE, READ, POLL
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+    private final long windowNanos;
+    private final int latencyTolerancePercent;
+    private final long maxLatencyNanos;
+    private final int backoffPercent;
+    // Share of the limit each priority may use, by ordinal
+    private final int[] sharePercent;
+    private final int routeSharePercent;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TreeSet<Waiter> queue = new TreeSet<>(
+            Comparator.comparing((Waiter w) -> w.priority).thenComparingLong(w -> w.sequence));
+    private final Map<String, Integer> routeInFlight = new HashMap<>();
+    private double limit;
+    private int inFlight;
+    private long nextSequence;
+
+    private long windowStart = System.nanoTime();
+    private int windowSamples;
+    private long windowLatencySum;
+    private int windowMaxInFlight;
+    private boolean windowDropped;
+    private double baselineNanos;
+
+    // Admitted and rejected requests, by priority ordinal
+    private final AtomicLongArray admitted = new AtomicLongArray(Priority.values().length);
+    private final AtomicLongArray rejected = new AtomicLongArray(Priority.values().length);
+
+    public AdmissionLimiter(int initialLimit, int minLimit, int maxLimit, int maxQueue, long maxWaitMillis,
+            long windowMillis, int latencyTolerancePercent, long maxLatencyMillis, int backoffPercent,
+            int readSharePercent, int pollSharePercent, int routeSharePercent) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+        this.maxQueue = maxQueue;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.latencyTolerancePercent = latencyTolerancePercent;
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+        this.backoffPercent = backoffPercent;
+        this.sharePercent = new int[] { 100, readSharePercent, pollSharePercent };
+        this.routeSharePercent = routeSharePercent;
+    }
+
+    public static AdmissionLimiter shared() {
+        return SHARED;
+    }
+
+    /**
+     * A request waiting for a slot
+     */
+    private static final class Waiter {
+        final String route;
+        final Priority priority;
+        final long sequence;
+        final Condition ready;
+        boolean admitted;
+        boolean rejected;
+
+        Waiter(String route, Priority priority, long sequence, Condition ready) {
+            this.route = route;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.ready = ready;
+        }
+    }
+
+    /**
+     * Take a slot for the request, waiting up to ims.admission.maxWaitMs
+     *
+     * @return false if the request should be turned away
+     */
+    public boolean acquire(String route, Priority priority) throws InterruptedException {
+        lock.lock();
+        try {
+            if (!hasWaiterAtOrAbove(priority) && fits(route, priority)) {
+                admit(route, priority);
+                return true;
+            }
+            if (maxWaitNanos <= 0 || !makeRoom(priority)) {
+                rejected.incrementAndGet(priority.ordinal());
+                return false;
+            }
+            Waiter waiter = new Waiter(route, priority, nextSequence++, lock.newCondition());
+            queue.add(waiter);
+            // Only a waiter held back by its route's share can be ahead of it
+            admitWaiters();
+            long remaining = maxWaitNanos;
+            try {
+                while (!waiter.admitted && !waiter.rejected && remaining > 0) {
+                    remaining = waiter.ready.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                if (waiter.admitted) {
+                    release(route, -1, false);
+                } else {
+                    queue.remove(waiter);
+                }
+                throw e;
+            }
+            if (waiter.admitted) {
+                return true;
+            }
+            queue.remove(waiter);
+            rejected.incrementAndGet(priority.ordinal());
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Give back a slot taken by {@link #acquire}
+     *
+     * @param latencyNanos how long the request held the slot, or -1 to leave
+     *            it out of the latency samples (long-running transfers)
+     * @param dropped true if the request timed out or was refused for lack
+     *            of capacity further down
+     */
+    public void release(String route, long latencyNanos, boolean dropped) {
+        lock.lock();
+        try {
+            inFlight--;
+            Integer count = routeInFlight.get(route);
+            if (count != null && count > 1) {
+                routeInFlight.put(route, count - 1);
+            } else {
+                routeInFlight.remove(route);
+            }
+            if (latencyNanos >= 0 || dropped) {
+                sample(Math.max(0, latencyNanos), dropped);
+            }
+            admitWaiters();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String statsJson() {
+        lock.lock();
+        try {
+            StringBuilder sb = new StringBuilder(256);
+            sb.append("{\"limit\": ").append((int) limit)
+                    .append(", \"inFlight\": ").append(inFlight)
+                    .append(", \"queued\": ").append(queue.size())
+                    .append(", \"baselineLatencyMicros\": ").append((long) (baselineNanos / 1000));
+            for (String counter : new String[] { "admitted", "rejected" }) {
+                AtomicLongArray counts = counter.equals("admitted") ? admitted : rejected;
+                sb.append(", \"").append(counter).append("\": {");
+                for (Priority priority : Priority.values()) {
+                    if (priority.ordinal() > 0) {
+                        sb.append(", ");
+                    }
+                    sb.append('"').append(priority.name().toLowerCase()).append("\": ")
+                            .append(counts.get(priority.ordinal()));
+                }
+                sb.append('}');
+            }
+            return sb.append('}').toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean fits(String route, Priority priority) {
+        int share = Math.max(1, (int) (limit * sharePercent[priority.ordinal()] / 100));
+        int routeShare = Math.max(1, (int) Math.ceil(limit * routeSharePercent / 100));
+        return inFlight < share && routeInFlight.getOrDefault(route, 0) < routeShare;
+    }
+
+    private void admit(String route, Priority priority) {
+        inFlight++;
+        routeInFlight.merge(route, 1, Integer::sum);
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+        admitted.incrementAndGet(priority.ordinal());
+    }
+
+    private boolean hasWaiterAtOrAbove(Priority priority) {
+        return !queue.isEmpty() && queue.first().priority.compareTo(priority) <= 0;
+    }
+
+    /**
+     * Make sure the queue has space for a request of this priority, turning
+     * away the newest waiter of a lower priority if it is full
+     *
+     * @return false if the request itself should be turned away
+     */
+    private boolean makeRoom(Priority priority) {
+        if (queue.size() < maxQueue) {
+            return true;
+        }
+        if (queue.isEmpty() || queue.last().priority.compareTo(priority) <= 0) {
+            return false;
+        }
+        Waiter shed = queue.pollLast();
+        shed.rejected = true;
+        shed.ready.signal();
+        return true;
+    }
+
+    /**
+     * Hand freed slots to waiters, most important first; a waiter held back
+     * by its route's share does not block the others
+     */
+    private void admitWaiters() {
+        Iterator<Waiter> waiters = queue.iterator();
+        while (waiters.hasNext() && inFlight < limit) {
+            Waiter waiter = waiters.next();
+            if (fits(waiter.route, waiter.priority)) {
+                waiters.remove();
+                admit(waiter.route, waiter.priority);
+                waiter.admitted = true;
+                waiter.ready.signal();
+            }
+        }
+    }
+
+    private void sample(long latencyNanos, boolean dropped) {
+        windowSamples++;
+        windowLatencySum += latencyNanos;
+        windowDropped |= dropped;
+        long now = System.nanoTime();
+        if (!windowDropped && (windowSamples < MIN_WINDOW_SAMPLES || now - windowStart < windowNanos)) {
+            return;
+        }
+
+        double average = (double) windowLatencySum / windowSamples;
+        if (baselineNanos == 0) {
+            baselineNanos = average;
+        }
+        boolean overloaded = windowDropped || average > maxLatencyNanos
+                || average * 100 > baselineNanos * latencyTolerancePercent;
+        if (overloaded) {
+            limit = Math.max(minLimit, limit * backoffPercent / 100);
+        } else if (windowMaxInFlight * 2 >= limit) {
+            // Only grow a limit that is actually being used
+            limit = Math.min(maxLimit, limit + 1);
+        }
+        if (!windowDropped) {
+            // Quick to learn that things got faster, slow to accept that they got slower
+            baselineNanos += (average - baselineNanos) * (average < baselineNanos ? 0.1 : 0.01);
+        }
+
+        windowStart = now;
+        windowSamples = 0;
+        windowLatencySum = 0;
+        windowMaxInFlight = inFlight;
+        windowDropped = false;
+    }
+}
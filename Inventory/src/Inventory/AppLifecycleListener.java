@@ -0,0 +1,116 @@
+package Inventory.src.Inventory;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+
+/**
+ * Starts shared resources when the web application is deployed and releases
+ * them when it is undeployed
+ */
+@WebListener
+public class AppLifecycleListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        // Open the product store selected by ims.store
+        ProductRepository repository = ProductRepository.shared();
+        repository.start();
+        if (!repository.isDatabase() && QuantityWriteBehind.shared() != null) {
+            throw new IllegalStateException("ims.writeBehind.enabled requires ims.store=mysql");
+        }
+        
+        if (repository.isDatabase()) {
+            // Open the minimum number of pooled connections up front
+            DatabaseUtil.getPool().warmUp();
+            
+            // Route reads to replicas that keep up with the primary
+            ReplicaRouter replicas = DatabaseUtil.getReplicas();
+            if (replicas != null) {
+                for (ReplicaRouter.Replica replica : replicas.getReplicas()) {
+                    replica.getPool().warmUp();
+                }
+                replicas.start();
+            }
+        }
+        
+        // Keep the low-stock set in memory and current with every write
+        ProductEvents.addListener(LowStockIndex.shared());
+        try {
+            LowStockIndex.shared().load();
+        } catch (SQLException e) {
+            // Start anyway; the index is rebuilt on the next reload
+            e.printStackTrace();
+        }
+        
+        // Build the search index and keep it current with every write
+        ProductEvents.addListener(SearchIndex.shared());
+        try {
+            SearchIndex.shared().load();
+        } catch (SQLException e) {
+            // Start anyway; the index is rebuilt on the next reload
+            e.printStackTrace();
+        }
+        
+        // Optionally hold the table in columns and answer listings from them
+        ColumnarSnapshot snapshot = ColumnarSnapshot.shared();
+        if (snapshot.isEnabled()) {
+            ProductEvents.addListener(snapshot);
+            try {
+                snapshot.start();
+            } catch (SQLException e) {
+                // Start anyway; listings use the database until the next reload
+                e.printStackTrace();
+            }
+        }
+        
+        // Count stock value and totals by category and brand, then maintain them
+        ProductEvents.addListener(InventoryStats.shared());
+        try {
+            InventoryStats.shared().start();
+        } catch (SQLException e) {
+            // Start anyway; the next reconciliation recounts
+            e.printStackTrace();
+        }
+        
+        // Drop superseded entries from the delta-sync change log now and then
+        if (repository.isDatabase()) {
+            ProductChangeLog.shared().start();
+        }
+        
+        // Replay journaled stock adjustments left over from the last run
+        QuantityWriteBehind writeBehind = QuantityWriteBehind.shared();
+        if (writeBehind != null) {
+            try {
+                writeBehind.start();
+            } catch (IOException | SQLException e) {
+                throw new IllegalStateException("Cannot start write-behind", e);
+            }
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        QuantityWriteBehind writeBehind = QuantityWriteBehind.shared();
+        if (writeBehind != null) {
+            try {
+                writeBehind.close();
+            } catch (IOException | SQLException e) {
+                // Unflushed deltas stay in the journal for the next start
+                e.printStackTrace();
+            }
+        }
+        ProductChangeLog.shared().close();
+        InventoryStats.shared().close();
+        ProductEvents.removeListener(InventoryStats.shared());
+        ColumnarSnapshot.shared().close();
+        ProductEvents.removeListener(ColumnarSnapshot.shared());
+        ProductEvents.removeListener(SearchIndex.shared());
+        ProductEvents.removeListener(LowStockIndex.shared());
+        ProductRepository.shared().close();
+        DatabaseUtil.shutdown();
+    }
+}
@@ -0,0 +1,507 @@
+package Inventory.src.Inventory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Runs blocking request handlers off the container's request threads.
+ *
+ * The request is put into async mode and the handler runs on a virtual
+ * thread (Java 21+; a bounded platform thread pool on older runtimes), so a
+ * request waiting on MySQL no longer holds one of Tomcat's worker threads.
+ * A request that takes longer than the timeout is answered with 503 and a
+ * JSON error, and the handler's thread is interrupted. The handler writes
+ * through a guard shared with the timeout, so only one of them ever writes
+ * the response: anything the handler writes after the timeout is discarded.
+ */
+public class AsyncDispatcher implements AutoCloseable {
+
+    /**
+     * The blocking part of a request
+     */
+    public interface Handler {
+        void handle(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException;
+    }
+
+    /**
+     * Request attribute holding the action set by {@link #whenHandled}
+     */
+    private static final String HANDLED_ACTION = AsyncDispatcher.class.getName() + ".handled";
+
+    private final ExecutorService executor;
+    private final long timeoutMillis;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public AsyncDispatcher(String threadName, long timeoutMillis, int fallbackThreads) {
+        this.executor = newExecutor(threadName, fallbackThreads);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Have the dispatcher that takes this request run the action once its
+     * handler has returned, or once it is clear the handler will not run.
+     * Unlike an {@link AsyncListener}'s onComplete, this waits for a handler
+     * still running after a timeout. The action is given the status the
+     * request was answered with, since by then the container may have
+     * recycled the request and response.
+     */
+    public static void whenHandled(ServletRequest request, IntConsumer action) {
+        request.setAttribute(HANDLED_ACTION, action);
+    }
+
+    /**
+     * @return whether a dispatcher took the request asynchronously, and so
+     *         will run its {@link #whenHandled} action
+     */
+    public static boolean isDispatched(ServletRequest request) {
+        return request.isAsyncStarted() && request.getAttribute(HANDLED_ACTION) == null;
+    }
+
+    /**
+     * Run the handler asynchronously, or on the calling thread if the
+     * request cannot go async (e.g. a filter in the chain does not support it)
+     */
+    public void dispatch(HttpServletRequest request, HttpServletResponse response, Handler handler)
+            throws ServletException, IOException {
+        dispatch(request, response, timeoutMillis, handler);
+    }
+
+    /**
+     * @param timeoutMillis timeout for this request; 0 for none
+     */
+    public void dispatch(HttpServletRequest request, HttpServletResponse response, long timeoutMillis,
+            Handler handler) throws ServletException, IOException {
+        if (!request.isAsyncSupported()) {
+            handler.handle(request, response);
+            return;
+        }
+        AsyncContext context = request.startAsync(request, response);
+        IntConsumer handled = (IntConsumer) request.getAttribute(HANDLED_ACTION);
+        request.removeAttribute(HANDLED_ACTION);
+        context.setTimeout(timeoutMillis);
+        // Finished by whichever of the handler, the timeout or an error gets there first
+        Exchange exchange = new Exchange(context);
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                exchange.fail(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Request timed out");
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                exchange.fail(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Request failed");
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        inFlight.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    if (exchange.start()) {
+                        handler.handle(request, exchange.response);
+                    }
+                } catch (ServletException | IOException | RuntimeException e) {
+                    if (!exchange.isFinished()) {
+                        e.printStackTrace();
+                    }
+                    exchange.fail(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+                } finally {
+                    inFlight.decrementAndGet();
+                    exchange.end();
+                    if (handled != null) {
+                        handled.accept(exchange.getStatus());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            exchange.fail(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server is shutting down");
+            if (handled != null) {
+                handled.accept(exchange.getStatus());
+            }
+        }
+    }
+
+    /**
+     * Requests currently running or waiting in the executor
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A change to the response that may block on the socket
+     */
+    @FunctionalInterface
+    private interface Write {
+        void run() throws IOException;
+    }
+
+    /**
+     * One dispatched request: who finished it, and the thread running its
+     * handler. Finishing, and every write the handler makes, happen under
+     * the exchange's lock, so a timeout never interleaves with the handler.
+     * Writes block on the socket, so the lock is a ReentrantLock: a virtual
+     * thread blocked while holding a monitor would pin its carrier thread.
+     */
+    private static final class Exchange {
+        private final AsyncContext context;
+        final GuardedResponse response;
+        private final ReentrantLock lock = new ReentrantLock();
+        private boolean finished;
+        private int status;
+        private Thread runner;
+
+        Exchange(AsyncContext context) {
+            this.context = context;
+            this.response = new GuardedResponse((HttpServletResponse) context.getResponse(), this);
+        }
+
+        boolean isFinished() {
+            lock.lock();
+            try {
+                return finished;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return the status the request was answered with, once finished
+         */
+        int getStatus() {
+            lock.lock();
+            try {
+                return status;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Called on the handler's thread before it runs
+         *
+         * @return false if the request already timed out while queued
+         */
+        boolean start() {
+            lock.lock();
+            try {
+                runner = Thread.currentThread();
+                return !finished;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Called on the handler's thread when it is done
+         */
+        void end() {
+            lock.lock();
+            try {
+                runner = null;
+                if (!finished) {
+                    finished = true;
+                    status = ((HttpServletResponse) context.getResponse()).getStatus();
+                    context.complete();
+                }
+            } finally {
+                lock.unlock();
+            }
+            // An interrupt from a timeout that raced with the handler's return
+            // must not leak into the next task on a pooled thread
+            Thread.interrupted();
+        }
+
+        void fail(int status, String message) {
+            lock.lock();
+            try {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+                if (runner != null && runner != Thread.currentThread()) {
+                    // Stop a handler blocked on I/O; it can no longer write anyway
+                    runner.interrupt();
+                }
+                try {
+                    HttpServletResponse response = (HttpServletResponse) context.getResponse();
+                    this.status = response.isCommitted() ? response.getStatus() : status;
+                    if (!response.isCommitted()) {
+                        response.reset();
+                        response.setStatus(status);
+                        response.setContentType("application/json");
+                        response.setCharacterEncoding("UTF-8");
+                        response.getWriter().print(ProductJsonCodec.error(message));
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // The client is gone; nothing left to tell it
+                } finally {
+                    context.complete();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Apply the change to the response unless the exchange is finished
+         */
+        void ifUnfinished(Runnable change) {
+            lock.lock();
+            try {
+                if (!finished) {
+                    change.run();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void writeIfUnfinished(Write write) throws IOException {
+            lock.lock();
+            try {
+                if (!finished) {
+                    write.run();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * The response as the handler sees it: status, headers and body only
+     * reach the real response while the exchange is unfinished
+     */
+    private static final class GuardedResponse extends HttpServletResponseWrapper {
+        private final Exchange exchange;
+        private ServletOutputStream stream;
+        private PrintWriter writer;
+
+        GuardedResponse(HttpServletResponse response, Exchange exchange) {
+            super(response);
+            this.exchange = exchange;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            exchange.lock.lock();
+            try {
+                if (stream == null) {
+                    stream = new GuardedOutputStream(super.getOutputStream(), exchange);
+                }
+                return stream;
+            } finally {
+                exchange.lock.unlock();
+            }
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            exchange.lock.lock();
+            try {
+                if (writer == null) {
+                    writer = new PrintWriter(new GuardedWriter(super.getWriter(), exchange));
+                }
+                return writer;
+            } finally {
+                exchange.lock.unlock();
+            }
+        }
+
+        @Override
+        public void setStatus(int sc) {
+            exchange.ifUnfinished(() -> super.setStatus(sc));
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            exchange.ifUnfinished(() -> super.setHeader(name, value));
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            exchange.ifUnfinished(() -> super.addHeader(name, value));
+        }
+
+        @Override
+        public void setDateHeader(String name, long date) {
+            exchange.ifUnfinished(() -> super.setDateHeader(name, date));
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            exchange.ifUnfinished(() -> super.setIntHeader(name, value));
+        }
+
+        @Override
+        public void setContentType(String type) {
+            exchange.ifUnfinished(() -> super.setContentType(type));
+        }
+
+        @Override
+        public void setCharacterEncoding(String charset) {
+            exchange.ifUnfinished(() -> super.setCharacterEncoding(charset));
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            exchange.writeIfUnfinished(() -> super.sendError(sc, msg));
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            exchange.writeIfUnfinished(() -> super.sendError(sc));
+        }
+
+        @Override
+        public void reset() {
+            exchange.ifUnfinished(() -> super.reset());
+        }
+
+        @Override
+        public void resetBuffer() {
+            exchange.ifUnfinished(() -> super.resetBuffer());
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            exchange.writeIfUnfinished(() -> super.flushBuffer());
+        }
+    }
+
+    private static final class GuardedOutputStream extends ServletOutputStream {
+        private final ServletOutputStream out;
+        private final Exchange exchange;
+
+        GuardedOutputStream(ServletOutputStream out, Exchange exchange) {
+            this.out = out;
+            this.exchange = exchange;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            exchange.writeIfUnfinished(() -> out.write(b));
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            exchange.writeIfUnfinished(() -> out.write(b, off, len));
+        }
+
+        @Override
+        public void flush() throws IOException {
+            exchange.writeIfUnfinished(() -> out.flush());
+        }
+
+        @Override
+        public void close() throws IOException {
+            exchange.writeIfUnfinished(() -> out.close());
+        }
+
+        @Override
+        public boolean isReady() {
+            return out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            out.setWriteListener(listener);
+        }
+    }
+
+    private static final class GuardedWriter extends Writer {
+        private final Writer out;
+        private final Exchange exchange;
+
+        GuardedWriter(Writer out, Exchange exchange) {
+            this.out = out;
+            this.exchange = exchange;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            exchange.writeIfUnfinished(() -> out.write(cbuf, off, len));
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            exchange.writeIfUnfinished(() -> out.write(str, off, len));
+        }
+
+        @Override
+        public void flush() throws IOException {
+            exchange.writeIfUnfinished(() -> out.flush());
+        }
+
+        @Override
+        public void close() throws IOException {
+            exchange.writeIfUnfinished(() -> out.close());
+        }
+    }
+
+    /**
+     * A virtual thread per task where the runtime has them, otherwise a
+     * fixed pool of daemon threads
+     */
+    private static ExecutorService newExecutor(String threadName, int fallbackThreads) {
+        try {
+            // Looked up reflectively so the code still compiles for Java 17
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, threadName + "-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(fallbackThreads, r -> {
+                Thread thread = new Thread(r, threadName + "-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
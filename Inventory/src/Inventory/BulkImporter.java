@@ -0,0 +1,362 @@
+package Inventory.src.Inventory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams products from an NDJSON or CSV body into the Product table using
+ * JDBC batches.
+ *
+ * Rows are parsed and validated as they are read, so the body is never held
+ * in memory. Valid rows are inserted batchSize at a time. By default every
+ * batch is committed on its own and a batch the database rejects is retried
+ * row by row, so one bad row only fails itself. In atomic mode the whole
+ * import is a single transaction and any error rolls everything back.
+ */
+public class BulkImporter {
+    static final int DEFAULT_BATCH_SIZE = InventoryConfig.getInt("bulk.batchSize", 1000);
+    static final int MAX_BATCH_SIZE = 10000;
+    // Only the first errors are reported; the rest are counted
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO Product (Products, Category, Name, Brand, Cost, Quantity) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String[] COLUMNS = { "products", "category", "name", "brand", "cost", "quantity" };
+    // Lengths of the text columns as declared in db/schema.sql
+    private static final int[] MAX_LENGTHS = { 255, 100, 255, 100 };
+
+    private final int batchSize;
+    private final boolean atomic;
+
+    private final List<Row> batch = new ArrayList<>();
+    private final StringBuilder created = new StringBuilder();
+    private final StringBuilder errors = new StringBuilder();
+    private int insertedCount;
+    private int errorCount;
+
+    public BulkImporter(int batchSize, boolean atomic) {
+        if (batchSize < 1 || batchSize > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("batchSize must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        this.batchSize = batchSize;
+        this.atomic = atomic;
+    }
+
+    /**
+     * Import every row from the reader
+     *
+     * @param csv true for CSV with a header line, false for one JSON object per line
+     * @return the JSON summary: inserted and failed counts, created IDs by line and per-line errors
+     * @throws IllegalArgumentException in atomic mode, if a row was rejected and the import was rolled back
+     * @throws SQLException if the database failed; outside atomic mode the batches committed
+     *         before it stay, see {@link #summary}
+     */
+    public String importRows(BufferedReader reader, boolean csv) throws IOException, SQLException {
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            conn.setAutoCommit(false);
+            int[] columnOrder = null;
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                if (csv && columnOrder == null) {
+                    columnOrder = parseHeader(line);
+                    continue;
+                }
+                try {
+                    batch.add(csv ? parseCsv(line, columnOrder, lineNumber) : parseJson(line, lineNumber));
+                } catch (IllegalArgumentException e) {
+                    if (atomic) {
+                        conn.rollback();
+                        throw new IllegalArgumentException(
+                                "Import rolled back: line " + lineNumber + ": " + e.getMessage());
+                    }
+                    addError(lineNumber, e.getMessage());
+                }
+                if (batch.size() >= batchSize) {
+                    flush(conn, stmt);
+                }
+            }
+            flush(conn, stmt);
+            if (atomic) {
+                conn.commit();
+            }
+        }
+        if (atomic && insertedCount > 0) {
+            ProductEvents.fireReloaded();
+        }
+        return summary(null);
+    }
+
+    /**
+     * The JSON summary of the rows committed so far
+     *
+     * @param error why the import stopped early, or null
+     */
+    public String summary(String error) {
+        StringBuilder summary = new StringBuilder(64 + created.length() + errors.length());
+        if (error != null) {
+            summary.append("{\"error\": ");
+            ProductJsonCodec.writeString(summary, error);
+            summary.append(", \"inserted\": ");
+        } else {
+            summary.append("{\"inserted\": ");
+        }
+        return summary.append(insertedCount)
+                .append(", \"failed\": ").append(errorCount)
+                .append(", \"created\": [").append(created).append(']')
+                .append(", \"errors\": [").append(errors).append(']')
+                .append(", \"errorsTruncated\": ").append(errorCount > MAX_REPORTED_ERRORS)
+                .append('}').toString();
+    }
+
+    private void flush(Connection conn, PreparedStatement stmt) throws SQLException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            for (Row row : batch) {
+                row.bind(stmt);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            // Outside atomic mode rows only count as created once committed
+            if (!atomic) {
+                conn.commit();
+            }
+            collectKeys(stmt, batch);
+            if (!atomic) {
+                publish(batch);
+            }
+        } catch (BatchUpdateException e) {
+            stmt.clearBatch();
+            conn.rollback();
+            if (atomic) {
+                if (isRejectedRow(e)) {
+                    throw new IllegalArgumentException("Import rolled back: " + e.getMessage(), e);
+                }
+                throw e;
+            }
+            // Find the offending rows by inserting this batch one row at a time
+            insertIndividually(conn, stmt);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private void insertIndividually(Connection conn, PreparedStatement stmt) throws SQLException {
+        for (Row row : batch) {
+            try {
+                row.bind(stmt);
+                stmt.executeUpdate();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                if (!isRejectedRow(e)) {
+                    throw e;
+                }
+                addError(row.line, e.getMessage());
+                continue;
+            }
+            collectKeys(stmt, List.of(row));
+            publish(List.of(row));
+        }
+    }
+
+    /**
+     * Whether the database refused the row's data (SQLSTATE class 22, data
+     * exception, or 23, constraint violation) rather than failing itself
+     */
+    private static boolean isRejectedRow(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && (state.startsWith("22") || state.startsWith("23"));
+    }
+
+    private void collectKeys(PreparedStatement stmt, List<Row> rows) throws SQLException {
+        try (ResultSet keys = stmt.getGeneratedKeys()) {
+            for (Row row : rows) {
+                if (created.length() > 0) {
+                    created.append(", ");
+                }
+                created.append("{\"line\": ").append(row.line).append(", \"id\": ");
+                row.id = keys.next() ? keys.getString(1) : null;
+                created.append(row.id).append('}');
+                insertedCount++;
+            }
+        }
+    }
+
+    private static void publish(List<Row> rows) {
+        for (Row row : rows) {
+            ProductEvents.fireSaved(new Product(row.id, row.products, row.category, row.name, row.brand,
+                    row.cost, row.quantity));
+        }
+    }
+
+    private void addError(int line, String message) {
+        errorCount++;
+        if (errorCount > MAX_REPORTED_ERRORS) {
+            return;
+        }
+        if (errors.length() > 0) {
+            errors.append(", ");
+        }
+        errors.append("{\"line\": ").append(line).append(", \"error\": ");
+        ProductJsonCodec.writeString(errors, message);
+        errors.append('}');
+    }
+
+    private static Row parseJson(String line, int lineNumber) {
+        String[] values = new String[COLUMNS.length];
+        ProductJsonCodec.readObject(line, (key, value, string) -> {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (COLUMNS[i].equals(key)) {
+                    values[i] = value;
+                }
+            }
+        });
+        return Row.validate(values, lineNumber);
+    }
+
+    private static Row parseCsv(String line, int[] columnOrder, int lineNumber) {
+        List<String> fields = splitCsv(line);
+        String[] values = new String[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            int index = columnOrder[i];
+            values[i] = index < fields.size() ? fields.get(index) : null;
+        }
+        return Row.validate(values, lineNumber);
+    }
+
+    /**
+     * Map each expected column to its position in the CSV header
+     */
+    private static int[] parseHeader(String line) {
+        List<String> header = splitCsv(line);
+        int[] order = new int[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            order[i] = -1;
+            for (int j = 0; j < header.size(); j++) {
+                if (header.get(j).trim().equalsIgnoreCase(COLUMNS[i])) {
+                    order[i] = j;
+                }
+            }
+            if (order[i] < 0) {
+                throw new IllegalArgumentException("CSV header is missing column " + COLUMNS[i]);
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Split one CSV line; fields may be quoted, with "" as an escaped quote
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * One validated product waiting to be inserted
+     */
+    private static final class Row {
+        final int line;
+        final String products;
+        final String category;
+        final String name;
+        final String brand;
+        final int cost;
+        final int quantity;
+        String id;
+
+        private Row(int line, String products, String category, String name, String brand, int cost, int quantity) {
+            this.line = line;
+            this.products = products;
+            this.category = category;
+            this.name = name;
+            this.brand = brand;
+            this.cost = cost;
+            this.quantity = quantity;
+        }
+
+        static Row validate(String[] values, int line) {
+            return new Row(line, text(values, 0), text(values, 1), text(values, 2), text(values, 3),
+                    number(values[4], COLUMNS[4]), number(values[5], COLUMNS[5]));
+        }
+
+        void bind(PreparedStatement stmt) throws SQLException {
+            stmt.setString(1, products);
+            stmt.setString(2, category);
+            stmt.setString(3, name);
+            stmt.setString(4, brand);
+            stmt.setInt(5, cost);
+            stmt.setInt(6, quantity);
+        }
+
+        private static String text(String[] values, int column) {
+            String value = values[column] == null ? "" : values[column].trim();
+            if (value.isEmpty()) {
+                throw new IllegalArgumentException(COLUMNS[column] + " is required");
+            }
+            if (value.codePointCount(0, value.length()) > MAX_LENGTHS[column]) {
+                throw new IllegalArgumentException(
+                        COLUMNS[column] + " is longer than " + MAX_LENGTHS[column] + " characters");
+            }
+            return value;
+        }
+
+        private static int number(String value, String column) {
+            if (value == null || value.trim().isEmpty()) {
+                throw new IllegalArgumentException(column + " is required");
+            }
+            int number;
+            try {
+                number = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(column + " must be an integer");
+            }
+            if (number < 0) {
+                throw new IllegalArgumentException(column + " must not be negative");
+            }
+            return number;
+        }
+    }
+}
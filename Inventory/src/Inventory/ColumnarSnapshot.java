@@ -0,0 +1,1026 @@
+package Inventory.src.Inventory;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Column-oriented copy of the Product table in memory, serving the full
+ * listing and filtered listings without querying MySQL (ims.snapshot.enabled).
+ *
+ * Rows are kept in ID order as parallel primitive arrays: ID, cost,
+ * quantity and version as int and long arrays, category and brand as codes
+ * into a dictionary of their distinct values, and name and products as
+ * UTF-8 ranges of one shared byte array. A product costs about 45 bytes
+ * plus its text, against several hundred as a Product with its Strings.
+ *
+ * A filter is a scan over those arrays that compares ints and dictionary
+ * codes and only looks at the name bytes for a name prefix. Listings in ID
+ * order stop scanning once the page is full; other orders keep the best
+ * limit + 1 rows of the whole scan, split across the fork-join pool once
+ * the table has ims.snapshot.parallelThreshold rows. Text comparisons
+ * ignore case, as MySQL's default collation does.
+ *
+ * Built from the database at startup and kept current from committed
+ * writes: new rows are appended, changed text is appended to the byte array
+ * and deleted rows are flagged, until enough space is wasted that the
+ * arrays are compacted. Every ims.snapshot.reloadIntervalMs, and after a
+ * bulk import, the snapshot is rebuilt from the database to pick up rows
+ * changed outside the application. The rebuild runs beside the live
+ * snapshot and replaces it when done; writes committed meanwhile are
+ * applied to both.
+ */
+public class ColumnarSnapshot implements ProductChangeListener {
+    private static final ColumnarSnapshot SHARED = new ColumnarSnapshot(
+            InventoryConfig.getBoolean("snapshot.enabled", false),
+            InventoryConfig.getInt("snapshot.parallelThreshold", 65536),
+            InventoryConfig.getLong("snapshot.reloadIntervalMs", 300000));
+
+    // Rows serialized per read-lock hold when writing the full listing
+    private static final int LIST_CHUNK_ROWS = 1000;
+    // Rows whose ranges are checked before the matches among them are ranked
+    private static final int SCAN_BLOCK = 4096;
+
+    private final boolean enabled;
+    private final int parallelThreshold;
+    private final long reloadIntervalMillis;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Columns columns = new Columns(16);
+    private volatile boolean loaded;
+    private final Rebuild<Columns> rebuild = new Rebuild<>(lock.writeLock());
+    private ScheduledExecutorService reloader;
+
+    public ColumnarSnapshot(boolean enabled, int parallelThreshold, long reloadIntervalMillis) {
+        this.enabled = enabled;
+        this.parallelThreshold = Math.max(1024, parallelThreshold);
+        this.reloadIntervalMillis = reloadIntervalMillis;
+    }
+
+    public static ColumnarSnapshot shared() {
+        return SHARED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * True once the snapshot is enabled and has been loaded, i.e. it can
+     * answer listings in place of the database
+     */
+    public boolean isReady() {
+        return enabled && loaded;
+    }
+
+    /**
+     * Number of products
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return columns.size - columns.deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Load the snapshot and start the periodic reload
+     */
+    public void start() throws SQLException {
+        synchronized (this) {
+            if (reloadIntervalMillis > 0 && reloader == null) {
+                reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "ims-snapshot-reload");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                reloader.scheduleWithFixedDelay(this::reloadQuietly, reloadIntervalMillis,
+                        reloadIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        load();
+    }
+
+    public synchronized void close() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+            reloader = null;
+        }
+    }
+
+    /**
+     * Build new columns from the product store and replace the current ones
+     */
+    public void load() throws SQLException {
+        rebuild.run(() -> {
+            Columns rebuilt = new Columns(Math.max(16, size()));
+            ProductRepository.shared().forEach(rebuilt::put, ProductRepository.LATEST);
+            return rebuilt;
+        }, rebuilt -> {
+            columns = rebuilt;
+            loaded = true;
+        });
+    }
+
+    /**
+     * The page of matching products the query asks for, in its order
+     */
+    public ProductQuery.Page query(ProductQuery query) {
+        lock.readLock().lock();
+        try {
+            Columns c = columns;
+            Filter filter = new Filter(c, query);
+            int wanted = query.getLimit() + 1; // one more tells whether a next page exists
+            int[] rows;
+            if (filter.sort == ProductQuery.SortField.ID) {
+                rows = c.scanInIdOrder(filter, wanted);
+            } else if (c.size >= parallelThreshold) {
+                int chunk = Math.max(parallelThreshold / 4,
+                        c.size / (ForkJoinPool.getCommonPoolParallelism() * 4) + 1);
+                rows = ForkJoinPool.commonPool().invoke(new Scan(c, filter, wanted, 0, c.size, chunk)).sorted();
+            } else {
+                rows = new Scan(c, filter, wanted, 0, c.size, c.size).compute().sorted();
+            }
+
+            int count = Math.min(rows.length, query.getLimit());
+            List<Product> items = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                items.add(c.toProduct(rows[i]));
+            }
+            String nextCursor = null;
+            if (rows.length > count) {
+                int last = rows[count - 1];
+                nextCursor = query.cursorAfter(c.sortValue(filter.sort, last), Integer.toString(c.ids[last]));
+            }
+            return new ProductQuery.Page(items, nextCursor);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Write every product as a JSON array in ID order, handing the text to
+     * the sink in chunks. The read lock is only held while a chunk is
+     * built, so a slow client never holds up writes; each product is
+     * written as it was at some point during the listing.
+     */
+    public void writeAll(Consumer<CharSequence> sink) {
+        StringBuilder chunk = new StringBuilder(256 * LIST_CHUNK_ROWS);
+        chunk.append('[');
+        boolean first = true;
+        long afterId = Long.MIN_VALUE;
+        while (true) {
+            int written = 0;
+            lock.readLock().lock();
+            try {
+                Columns c = columns;
+                int row = afterId == Long.MIN_VALUE ? 0 : c.firstAfter((int) afterId);
+                for (; row < c.size && written < LIST_CHUNK_ROWS; row++) {
+                    if (c.deleted[row]) {
+                        continue;
+                    }
+                    if (!first) {
+                        chunk.append(',');
+                    }
+                    c.writeJson(chunk, row);
+                    first = false;
+                    written++;
+                    afterId = c.ids[row];
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (written < LIST_CHUNK_ROWS) {
+                sink.accept(chunk.append(']'));
+                return;
+            }
+            sink.accept(chunk);
+            chunk.setLength(0);
+        }
+    }
+
+    @Override
+    public void productSaved(Product product) {
+        write(c -> c.put(product));
+    }
+
+    @Override
+    public void quantityChanged(String productId, int quantity, long version) {
+        int id = parseId(productId);
+        boolean known;
+        lock.writeLock().lock();
+        try {
+            int row = columns.find(id);
+            known = !loaded || (row >= 0 && !columns.deleted[row]);
+            if (known) {
+                write(c -> c.updateQuantity(id, quantity, version));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!known) {
+            // Not in the snapshot (inserted outside the application): read the whole row
+            try {
+                Product product = ProductRepository.shared().find(productId, ProductRepository.LATEST);
+                if (product != null) {
+                    productSaved(product);
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void productDeleted(String productId) {
+        int id = parseId(productId);
+        write(c -> c.remove(id));
+    }
+
+    @Override
+    public void productsReloaded() {
+        reloadQuietly();
+    }
+
+    private void reloadQuietly() {
+        try {
+            load();
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void write(Consumer<Columns> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(columns);
+            rebuild.record(change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Product IDs are INT; anything else cannot be in the table
+     */
+    private static int parseId(String productId) {
+        try {
+            return Integer.parseInt(productId);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The filter and cursor of a query, resolved against the dictionaries
+     */
+    private static final class Filter {
+        final int minCost;
+        final int maxCost;
+        final int minQuantity;
+        final int maxQuantity;
+        // Matching dictionary codes, or null for any
+        final boolean[] categories;
+        final boolean[] brands;
+        final byte[] namePrefix;
+        final ProductQuery.SortField sort;
+        final boolean descending;
+        // Sort position of every dictionary code, for the CATEGORY and BRAND orders
+        final int[] ranks;
+
+        final boolean hasCursor;
+        final int cursorId;
+        final int cursorNumber;
+        // Per dictionary code: how its value compares with the cursor value
+        final int[] cursorSigns;
+        final byte[] cursorText;
+
+        Filter(Columns c, ProductQuery query) {
+            minCost = query.getMinCost() == null ? Integer.MIN_VALUE : query.getMinCost();
+            maxCost = query.getMaxCost() == null ? Integer.MAX_VALUE : query.getMaxCost();
+            minQuantity = query.getMinQuantity() == null ? Integer.MIN_VALUE : query.getMinQuantity();
+            maxQuantity = query.getMaxQuantity() == null ? Integer.MAX_VALUE : query.getMaxQuantity();
+            categories = both(query.getCategory() == null ? null : c.categories.matching(query.getCategory()),
+                    query.getCategoryPrefix() == null ? null : c.categories.matchingPrefix(query.getCategoryPrefix()));
+            brands = query.getBrand() == null ? null : c.brands.matching(query.getBrand());
+            namePrefix = query.getNamePrefix() == null ? null : query.getNamePrefix().getBytes(StandardCharsets.UTF_8);
+            sort = query.getSort();
+            descending = query.isDescending();
+            Dictionary sorted = sort == ProductQuery.SortField.CATEGORY ? c.categories
+                    : sort == ProductQuery.SortField.BRAND ? c.brands : null;
+            ranks = sorted == null ? null : sorted.ranks();
+
+            String afterValue = query.getAfterValue();
+            hasCursor = query.getAfterId() != null;
+            cursorId = hasCursor ? Integer.parseInt(query.getAfterId()) : 0;
+            cursorNumber = hasCursor && sort.numeric ? Integer.parseInt(afterValue) : 0;
+            cursorSigns = hasCursor && sorted != null ? sorted.compareAll(afterValue) : null;
+            cursorText = hasCursor && sort == ProductQuery.SortField.NAME
+                    ? afterValue.getBytes(StandardCharsets.UTF_8) : null;
+        }
+
+        /**
+         * Codes matching both filters, or null if neither is set
+         */
+        private static boolean[] both(boolean[] a, boolean[] b) {
+            if (a == null || b == null) {
+                return a == null ? b : a;
+            }
+            for (int code = 0; code < a.length; code++) {
+                a[code] &= b[code];
+            }
+            return a;
+        }
+    }
+
+    /**
+     * The products as parallel arrays indexed by row, in ID order
+     */
+    private static final class Columns {
+        int size;
+        int deletedCount;
+        int[] ids;
+        int[] cost;
+        int[] quantity;
+        long[] version;
+        int[] category;
+        int[] brand;
+        // Name and products as (start, length) in text; a length of -1 is null
+        int[] nameStart;
+        int[] nameLength;
+        int[] productsStart;
+        int[] productsLength;
+        boolean[] deleted;
+        byte[] text;
+        int textSize;
+        // Bytes of text no longer referenced by any row
+        long textGarbage;
+        final Dictionary categories;
+        final Dictionary brands;
+
+        Columns(int capacity) {
+            this(capacity, 32 * capacity, new Dictionary(), new Dictionary());
+        }
+
+        private Columns(int capacity, int textCapacity, Dictionary categories, Dictionary brands) {
+            ids = new int[capacity];
+            cost = new int[capacity];
+            quantity = new int[capacity];
+            version = new long[capacity];
+            category = new int[capacity];
+            brand = new int[capacity];
+            nameStart = new int[capacity];
+            nameLength = new int[capacity];
+            productsStart = new int[capacity];
+            productsLength = new int[capacity];
+            deleted = new boolean[capacity];
+            text = new byte[Math.max(64, textCapacity)];
+            this.categories = categories;
+            this.brands = brands;
+        }
+
+        /**
+         * Row of the ID (possibly a deleted one), or -(insertion point) - 1
+         */
+        int find(int id) {
+            return Arrays.binarySearch(ids, 0, size, id);
+        }
+
+        /**
+         * First row whose ID is greater than the given one
+         */
+        int firstAfter(int id) {
+            int row = find(id);
+            return row >= 0 ? row + 1 : -row - 1;
+        }
+
+        void put(Product product) {
+            int id = parseId(product.getId());
+            if (id < 0) {
+                return;
+            }
+            int row = find(id);
+            if (row >= 0) {
+                if (deleted[row]) {
+                    deleted[row] = false;
+                    deletedCount--;
+                } else if (version[row] > product.getVersion()) {
+                    return; // a newer write was already applied
+                } else {
+                    textGarbage += Math.max(0, nameLength[row]) + Math.max(0, productsLength[row]);
+                }
+            } else {
+                row = -row - 1;
+                insertRow(row);
+                ids[row] = id;
+            }
+            cost[row] = product.getCost();
+            quantity[row] = product.getQuantity();
+            version[row] = product.getVersion();
+            category[row] = categories.code(product.getCategory());
+            brand[row] = brands.code(product.getBrand());
+            nameLength[row] = appendText(product.getName());
+            nameStart[row] = textSize - Math.max(0, nameLength[row]);
+            productsLength[row] = appendText(product.getProducts());
+            productsStart[row] = textSize - Math.max(0, productsLength[row]);
+            compactIfWasteful();
+        }
+
+        void updateQuantity(int id, int newQuantity, long newVersion) {
+            int row = find(id);
+            if (row >= 0 && !deleted[row] && version[row] <= newVersion) {
+                quantity[row] = newQuantity;
+                version[row] = newVersion;
+            }
+        }
+
+        void remove(int id) {
+            int row = find(id);
+            if (row >= 0 && !deleted[row]) {
+                deleted[row] = true;
+                deletedCount++;
+                textGarbage += Math.max(0, nameLength[row]) + Math.max(0, productsLength[row]);
+                compactIfWasteful();
+            }
+        }
+
+        /**
+         * Open a gap at the row; IDs normally only grow, so this is an append
+         */
+        private void insertRow(int row) {
+            if (size == ids.length) {
+                int capacity = size + (size >> 1) + 16;
+                ids = Arrays.copyOf(ids, capacity);
+                cost = Arrays.copyOf(cost, capacity);
+                quantity = Arrays.copyOf(quantity, capacity);
+                version = Arrays.copyOf(version, capacity);
+                category = Arrays.copyOf(category, capacity);
+                brand = Arrays.copyOf(brand, capacity);
+                nameStart = Arrays.copyOf(nameStart, capacity);
+                nameLength = Arrays.copyOf(nameLength, capacity);
+                productsStart = Arrays.copyOf(productsStart, capacity);
+                productsLength = Arrays.copyOf(productsLength, capacity);
+                deleted = Arrays.copyOf(deleted, capacity);
+            }
+            int moved = size - row;
+            if (moved > 0) {
+                System.arraycopy(ids, row, ids, row + 1, moved);
+                System.arraycopy(cost, row, cost, row + 1, moved);
+                System.arraycopy(quantity, row, quantity, row + 1, moved);
+                System.arraycopy(version, row, version, row + 1, moved);
+                System.arraycopy(category, row, category, row + 1, moved);
+                System.arraycopy(brand, row, brand, row + 1, moved);
+                System.arraycopy(nameStart, row, nameStart, row + 1, moved);
+                System.arraycopy(nameLength, row, nameLength, row + 1, moved);
+                System.arraycopy(productsStart, row, productsStart, row + 1, moved);
+                System.arraycopy(productsLength, row, productsLength, row + 1, moved);
+                System.arraycopy(deleted, row, deleted, row + 1, moved);
+            }
+            deleted[row] = false;
+            size++;
+        }
+
+        /**
+         * Append the UTF-8 bytes of the value to text
+         *
+         * @return their length, or -1 for null
+         */
+        private int appendText(String value) {
+            if (value == null) {
+                return -1;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (textSize + bytes.length > text.length) {
+                long capacity = Math.max((long) textSize + bytes.length, text.length + ((long) text.length >> 1));
+                text = Arrays.copyOf(text, (int) Math.min(Integer.MAX_VALUE - 8, capacity));
+            }
+            System.arraycopy(bytes, 0, text, textSize, bytes.length);
+            textSize += bytes.length;
+            return bytes.length;
+        }
+
+        /**
+         * Drop deleted rows and unreferenced text once they take up a
+         * quarter of the rows or half of the text
+         */
+        private void compactIfWasteful() {
+            if ((size < 1024 || deletedCount < size / 4) && (textSize < 65536 || textGarbage < textSize / 2)) {
+                return;
+            }
+            int live = size - deletedCount;
+            Columns compacted = new Columns(live + (live >> 2) + 16,
+                    (int) Math.min(Integer.MAX_VALUE - 8, (textSize - textGarbage) * 5 / 4 + 64), categories, brands);
+            for (int row = 0; row < size; row++) {
+                if (deleted[row]) {
+                    continue;
+                }
+                int to = compacted.size++;
+                compacted.ids[to] = ids[row];
+                compacted.cost[to] = cost[row];
+                compacted.quantity[to] = quantity[row];
+                compacted.version[to] = version[row];
+                compacted.category[to] = category[row];
+                compacted.brand[to] = brand[row];
+                compacted.nameLength[to] = nameLength[row];
+                compacted.nameStart[to] = compacted.copyText(text, nameStart[row], nameLength[row]);
+                compacted.productsLength[to] = productsLength[row];
+                compacted.productsStart[to] = compacted.copyText(text, productsStart[row], productsLength[row]);
+            }
+            size = compacted.size;
+            deletedCount = 0;
+            ids = compacted.ids;
+            cost = compacted.cost;
+            quantity = compacted.quantity;
+            version = compacted.version;
+            category = compacted.category;
+            brand = compacted.brand;
+            nameStart = compacted.nameStart;
+            nameLength = compacted.nameLength;
+            productsStart = compacted.productsStart;
+            productsLength = compacted.productsLength;
+            deleted = compacted.deleted;
+            text = compacted.text;
+            textSize = compacted.textSize;
+            textGarbage = 0;
+        }
+
+        private int copyText(byte[] from, int start, int length) {
+            int at = textSize;
+            if (length > 0) {
+                System.arraycopy(from, start, text, textSize, length);
+                textSize += length;
+            }
+            return at;
+        }
+
+        boolean matches(Filter f, int row) {
+            int rowCost = cost[row];
+            int rowQuantity = quantity[row];
+            // & rather than && so the range checks compile to one branch, not
+            // five that a random mix of rows keeps mispredicting
+            if (!(!deleted[row] & rowCost >= f.minCost & rowCost <= f.maxCost
+                    & rowQuantity >= f.minQuantity & rowQuantity <= f.maxQuantity)) {
+                return false;
+            }
+            if (f.categories != null && !f.categories[category[row]]) {
+                return false;
+            }
+            if (f.brands != null && !f.brands[brand[row]]) {
+                return false;
+            }
+            return f.namePrefix == null || startsWithIgnoreCase(row, f.namePrefix);
+        }
+
+        /**
+         * Offer every matching row of the range past the cursor to top
+         */
+        void scan(Filter f, int from, int to, TopRows top) {
+            // The columns and bounds in locals, so the loop only loads array elements
+            boolean[] deletedColumn = deleted;
+            int[] costColumn = cost;
+            int[] quantityColumn = quantity;
+            int minCost = f.minCost;
+            int maxCost = f.maxCost;
+            int minQuantity = f.minQuantity;
+            int maxQuantity = f.maxQuantity;
+            boolean more = f.categories != null || f.brands != null || f.namePrefix != null || f.hasCursor;
+            int[] candidates = new int[SCAN_BLOCK];
+            for (int block = from; block < to; block += SCAN_BLOCK) {
+                int end = Math.min(to, block + SCAN_BLOCK);
+                // Collect the rows within the ranges without branching on
+                // them: a random mix of matching rows makes every branch a
+                // coin toss the CPU keeps guessing wrong
+                int found = 0;
+                for (int row = block; row < end; row++) {
+                    int rowCost = costColumn[row];
+                    int rowQuantity = quantityColumn[row];
+                    candidates[found] = row;
+                    found += !deletedColumn[row] & rowCost >= minCost & rowCost <= maxCost
+                            & rowQuantity >= minQuantity & rowQuantity <= maxQuantity ? 1 : 0;
+                }
+                for (int i = 0; i < found; i++) {
+                    int row = candidates[i];
+                    if (!more || matches(f, row) && (!f.hasCursor || afterCursor(f, row))) {
+                        top.offer(row);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Up to wanted matching rows past the cursor, walking the ID order
+         * and stopping once they are found
+         */
+        int[] scanInIdOrder(Filter f, int wanted) {
+            int[] rows = new int[Math.min(wanted, 64)];
+            int found = 0;
+            int step = f.descending ? -1 : 1;
+            int row;
+            if (!f.hasCursor) {
+                row = f.descending ? size - 1 : 0;
+            } else {
+                row = firstAfter(f.cursorId);
+                if (f.descending) {
+                    // Last row whose ID is less than the cursor's
+                    row = find(f.cursorId) >= 0 ? row - 2 : row - 1;
+                }
+            }
+            for (; row >= 0 && row < size && found < wanted; row += step) {
+                if (matches(f, row)) {
+                    if (found == rows.length) {
+                        rows = Arrays.copyOf(rows, Math.min(wanted, found * 2));
+                    }
+                    rows[found++] = row;
+                }
+            }
+            return Arrays.copyOf(rows, found);
+        }
+
+        /**
+         * Compare two rows in the query's order, ties broken by ID
+         */
+        int compare(Filter f, int a, int b) {
+            int c;
+            switch (f.sort) {
+                case COST:
+                    c = Integer.compare(cost[a], cost[b]);
+                    break;
+                case QUANTITY:
+                    c = Integer.compare(quantity[a], quantity[b]);
+                    break;
+                case CATEGORY:
+                    c = Integer.compare(f.ranks[category[a]], f.ranks[category[b]]);
+                    break;
+                case BRAND:
+                    c = Integer.compare(f.ranks[brand[a]], f.ranks[brand[b]]);
+                    break;
+                case NAME:
+                    c = compareText(text, nameStart[a], nameLength[a], text, nameStart[b], nameLength[b]);
+                    break;
+                default:
+                    c = 0;
+            }
+            if (c == 0) {
+                c = Integer.compare(ids[a], ids[b]);
+            }
+            return f.descending ? -c : c;
+        }
+
+        /**
+         * True if the row comes after the cursor in the query's order
+         */
+        boolean afterCursor(Filter f, int row) {
+            int c;
+            switch (f.sort) {
+                case COST:
+                    c = Integer.compare(cost[row], f.cursorNumber);
+                    break;
+                case QUANTITY:
+                    c = Integer.compare(quantity[row], f.cursorNumber);
+                    break;
+                case CATEGORY:
+                    c = f.cursorSigns[category[row]];
+                    break;
+                case BRAND:
+                    c = f.cursorSigns[brand[row]];
+                    break;
+                case NAME:
+                    c = compareText(text, nameStart[row], nameLength[row], f.cursorText, 0, f.cursorText.length);
+                    break;
+                default:
+                    c = 0;
+            }
+            if (c == 0) {
+                c = Integer.compare(ids[row], f.cursorId);
+            }
+            return f.descending ? c < 0 : c > 0;
+        }
+
+        /**
+         * The row's value of the sort column, as the cursor records it
+         */
+        String sortValue(ProductQuery.SortField sort, int row) {
+            switch (sort) {
+                case COST:
+                    return Integer.toString(cost[row]);
+                case QUANTITY:
+                    return Integer.toString(quantity[row]);
+                case CATEGORY:
+                    return categories.values[category[row]];
+                case BRAND:
+                    return brands.values[brand[row]];
+                case NAME:
+                    return string(nameStart[row], nameLength[row]);
+                default:
+                    return Integer.toString(ids[row]);
+            }
+        }
+
+        Product toProduct(int row) {
+            Product product = new Product(Integer.toString(ids[row]), string(productsStart[row], productsLength[row]),
+                    categories.values[category[row]], string(nameStart[row], nameLength[row]),
+                    brands.values[brand[row]], cost[row], quantity[row]);
+            product.setVersion(version[row]);
+            return product;
+        }
+
+        void writeJson(StringBuilder sb, int row) {
+            sb.append("{\"id\":\"").append(ids[row]).append("\",\"products\":");
+            ProductJsonCodec.writeString(sb, string(productsStart[row], productsLength[row]));
+            sb.append(",\"category\":");
+            ProductJsonCodec.writeString(sb, categories.values[category[row]]);
+            sb.append(",\"name\":");
+            ProductJsonCodec.writeString(sb, string(nameStart[row], nameLength[row]));
+            sb.append(",\"brand\":");
+            ProductJsonCodec.writeString(sb, brands.values[brand[row]]);
+            sb.append(",\"cost\":").append(cost[row]);
+            sb.append(",\"quantity\":").append(quantity[row]);
+            sb.append(",\"version\":").append(version[row]);
+            sb.append('}');
+        }
+
+        private String string(int start, int length) {
+            return length < 0 ? null : new String(text, start, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Prefix match ignoring case; byte by byte while both sides are
+         * ASCII, through Strings otherwise
+         */
+        private boolean startsWithIgnoreCase(int row, byte[] prefix) {
+            int start = nameStart[row];
+            int length = nameLength[row];
+            if (length < 0) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length; i++) {
+                if (i == length) {
+                    return false;
+                }
+                byte a = text[start + i];
+                byte b = prefix[i];
+                if (a < 0 || b < 0) {
+                    String name = string(start, length);
+                    String p = new String(prefix, StandardCharsets.UTF_8);
+                    return name.regionMatches(true, 0, p, 0, p.length());
+                }
+                if (a != b && lower(a) != lower(b)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Compare two UTF-8 ranges as String.CASE_INSENSITIVE_ORDER would; a
+     * length of -1 is null and sorts first
+     */
+    static int compareText(byte[] a, int aStart, int aLength, byte[] b, int bStart, int bLength) {
+        if (aLength < 0 || bLength < 0) {
+            return Integer.compare(aLength < 0 ? 0 : 1, bLength < 0 ? 0 : 1);
+        }
+        int common = Math.min(aLength, bLength);
+        for (int i = 0; i < common; i++) {
+            byte x = a[aStart + i];
+            byte y = b[bStart + i];
+            if (x == y) {
+                continue;
+            }
+            if (x < 0 || y < 0) {
+                return String.CASE_INSENSITIVE_ORDER.compare(new String(a, aStart, aLength, StandardCharsets.UTF_8),
+                        new String(b, bStart, bLength, StandardCharsets.UTF_8));
+            }
+            int c = lower(x) - lower(y);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(aLength, bLength);
+    }
+
+    private static int lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+
+    /**
+     * Distinct values of a column, each with a code; codes are only added
+     * until the columns are rebuilt
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        String[] values = new String[16];
+        int size;
+        // Sort position of each code, computed when first needed
+        private volatile int[] ranks;
+
+        int code(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                code = size;
+                values[size++] = value;
+                codes.put(value, code);
+                ranks = null;
+            }
+            return code;
+        }
+
+        /**
+         * Codes whose value equals the given one, ignoring case
+         */
+        boolean[] matching(String value) {
+            boolean[] matching = new boolean[size];
+            for (int code = 0; code < size; code++) {
+                matching[code] = values[code] == null ? value == null : values[code].equalsIgnoreCase(value);
+            }
+            return matching;
+        }
+
+        /**
+         * Per code: whether its value starts with the prefix, ignoring case
+         */
+        boolean[] matchingPrefix(String prefix) {
+            boolean[] matching = new boolean[size];
+            for (int code = 0; code < size; code++) {
+                matching[code] = values[code] != null
+                        && values[code].regionMatches(true, 0, prefix, 0, prefix.length());
+            }
+            return matching;
+        }
+
+        /**
+         * Per code: -1, 0 or 1 as its value sorts before, with or after the given one
+         */
+        int[] compareAll(String value) {
+            int[] signs = new int[size];
+            for (int code = 0; code < size; code++) {
+                signs[code] = Integer.signum(compare(values[code], value));
+            }
+            return signs;
+        }
+
+        /**
+         * Sort position of every code; values equal but for case share one
+         */
+        int[] ranks() {
+            int[] computed = ranks;
+            if (computed == null) {
+                Integer[] order = new Integer[size];
+                for (int code = 0; code < size; code++) {
+                    order[code] = code;
+                }
+                Arrays.sort(order, (a, b) -> compare(values[a], values[b]));
+                computed = new int[size];
+                int rank = 0;
+                for (int i = 0; i < size; i++) {
+                    if (i > 0 && compare(values[order[i - 1]], values[order[i]]) != 0) {
+                        rank++;
+                    }
+                    computed[order[i]] = rank;
+                }
+                ranks = computed;
+            }
+            return computed;
+        }
+
+        private static int compare(String a, String b) {
+            if (a == null || b == null) {
+                return Integer.compare(a == null ? 0 : 1, b == null ? 0 : 1);
+            }
+            return String.CASE_INSENSITIVE_ORDER.compare(a, b);
+        }
+    }
+
+    /**
+     * The best rows seen so far in the query's order, as a heap with the
+     * worst kept at the top
+     */
+    private static final class TopRows {
+        private final Columns c;
+        private final Filter f;
+        private final int[] heap;
+        private int size;
+
+        TopRows(Columns c, Filter f, int capacity) {
+            this.c = c;
+            this.f = f;
+            this.heap = new int[capacity];
+        }
+
+        void offer(int row) {
+            if (size < heap.length) {
+                heap[size] = row;
+                siftUp(size++);
+            } else if (c.compare(f, row, heap[0]) < 0) {
+                heap[0] = row;
+                siftDown(0);
+            }
+        }
+
+        void addAll(TopRows other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.heap[i]);
+            }
+        }
+
+        /**
+         * The rows best first
+         */
+        int[] sorted() {
+            int[] rows = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                rows[i] = heap[0];
+                heap[0] = heap[--size];
+                siftDown(0);
+            }
+            return rows;
+        }
+
+        private void siftUp(int i) {
+            int row = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (c.compare(f, row, heap[parent]) <= 0) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = row;
+        }
+
+        private void siftDown(int i) {
+            int row = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && c.compare(f, heap[child + 1], heap[child]) > 0) {
+                    child++;
+                }
+                if (c.compare(f, row, heap[child]) >= 0) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = row;
+        }
+    }
+
+    /**
+     * Scan a range of rows for the best matches past the cursor, splitting
+     * it into chunks run on the fork-join pool
+     */
+    private static final class Scan extends RecursiveTask<TopRows> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Columns c;
+        private final transient Filter f;
+        private final int wanted;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        Scan(Columns c, Filter f, int wanted, int from, int to, int chunk) {
+            this.c = c;
+            this.f = f;
+            this.wanted = wanted;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected TopRows compute() {
+            if (to - from <= chunk) {
+                TopRows top = new TopRows(c, f, wanted);
+                c.scan(f, from, to, top);
+                return top;
+            }
+            int mid = (from + to) >>> 1;
+            Scan left = new Scan(c, f, wanted, from, mid, chunk);
+            left.fork();
+            TopRows right = new Scan(c, f, wanted, mid, to, chunk).compute();
+            TopRows top = left.join();
+            top.addAll(right);
+            return top;
+        }
+    }
+}
@@ -1,40 +1,224 @@
 package Inventory.src.Inventory;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 
 /**
  * Utility class for database operations
+ *
+ * Connections to the primary come from a single bounded {@link ConnectionPool}.
+ * With ims.db.replicas set, read-only handlers borrow from the replicas
+ * instead through {@link #getReadConnection(long)}. Settings are read
+ * through {@link InventoryConfig}, e.g. -Dims.db.url=... or IMS_DB_URL.
  */
 public class DatabaseUtil {
-    // Database connection settings - update with your actual settings
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/IMS";
-    private static final String DB_USER = "root";
-    private static final String DB_PASSWORD = "Opkv@1754"; // Use your actual password
-    
+    // Database connection settings - override with ims.db.* settings
+    private static final String DB_URL = InventoryConfig.getString("db.url", "jdbc:mysql://localhost:3306/IMS");
+    private static final String DB_USER = InventoryConfig.getString("db.user", "root");
+    private static final String DB_PASSWORD = InventoryConfig.getString("db.password", "Opkv@1754"); // Use your actual password
+    private static final String DB_DRIVER = InventoryConfig.getString("db.driver", "com.mysql.cj.jdbc.Driver");
+
+    // Rows fetched per round trip when streaming large result sets
+    public static final int STREAM_FETCH_SIZE = InventoryConfig.getInt("db.fetchSize", 1000);
+
+    // Read replica URLs, comma-separated; empty for none
+    private static final String REPLICA_URLS = InventoryConfig.getString("db.replicas", "");
+
+    private static volatile ConnectionPool pool;
+    private static volatile ReplicaRouter replicas;
+
     static {
         try {
             // Load the JDBC driver
-            Class.forName("com.mysql.cj.jdbc.Driver");
+            Class.forName(DB_DRIVER);
         } catch (ClassNotFoundException e) {
-            throw new RuntimeException("Failed to load MySQL JDBC driver", e);
+            throw new RuntimeException("Failed to load JDBC driver " + DB_DRIVER, e);
         }
     }
-    
+
     /**
      * Get a connection to the database
-     * 
+     *
+     * The connection is borrowed from the pool; close it (try-with-resources)
+     * to hand it back. With ims.metrics.enabled its statements are timed
+     * into {@link Metrics}.
+     *
      * @return Connection object
-     * @throws SQLException if a database error occurs
+     * @throws SQLException if a database error occurs or the pool is exhausted
      */
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        Connection conn = getPool().getConnection();
+        Metrics metrics = Metrics.shared();
+        return metrics.isEnabled() ? JdbcMetrics.wrap(conn, metrics) : conn;
+    }
+
+    /**
+     * Get a connection for a read that may be served by a replica
+     *
+     * @param committedBefore the read must see every write committed before
+     *        this time (milliseconds); 0 if any replica within the lag limit will do
+     * @return a replica connection, or a primary one if no replica is
+     *         configured or caught up far enough
+     */
+    public static Connection getReadConnection(long committedBefore) throws SQLException {
+        ReplicaRouter router = getReplicas();
+        Connection conn = router != null ? router.getConnection(committedBefore) : null;
+        if (conn == null) {
+            return getConnection();
+        }
+        Metrics metrics = Metrics.shared();
+        return metrics.isEnabled() ? JdbcMetrics.wrap(conn, metrics) : conn;
+    }
+
+    /**
+     * Get the replica router, creating the replica pools on first use
+     *
+     * @return the router, or null if ims.db.replicas is empty
+     */
+    public static ReplicaRouter getReplicas() {
+        if (REPLICA_URLS.trim().isEmpty()) {
+            return null;
+        }
+        ReplicaRouter current = replicas;
+        if (current == null) {
+            synchronized (DatabaseUtil.class) {
+                current = replicas;
+                if (current == null) {
+                    List<ConnectionPool> pools = new ArrayList<>();
+                    for (String url : REPLICA_URLS.split(",")) {
+                        if (!url.trim().isEmpty()) {
+                            pools.add(createPool(url.trim()));
+                        }
+                    }
+                    current = new ReplicaRouter(pools,
+                            InventoryConfig.getString("db.replicas.balance", "least-loaded"),
+                            InventoryConfig.getLong("db.replicas.maxLagMs", 1000),
+                            InventoryConfig.getLong("db.replicas.probeIntervalMs", 1000));
+                    replicas = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Get the shared pool, creating it on first use
+     */
+    public static ConnectionPool getPool() {
+        ConnectionPool current = pool;
+        if (current == null) {
+            synchronized (DatabaseUtil.class) {
+                current = pool;
+                if (current == null) {
+                    current = createPool(DB_URL);
+                    pool = current;
+                }
+            }
+        }
+        return current;
     }
-    
+
+    /**
+     * Close the pools and all idle connections
+     */
+    public static synchronized void shutdown() {
+        if (replicas != null) {
+            replicas.close();
+            replicas = null;
+        }
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    private static ConnectionPool createPool(String url) {
+        Properties props = new Properties();
+        props.setProperty("user", DB_USER);
+        props.setProperty("password", DB_PASSWORD);
+        if (url.startsWith("jdbc:mysql:")) {
+            // Prepare statements once per physical connection on the server and
+            // keep them, so pooled connections skip the parse on every request
+            props.setProperty("useServerPrepStmts", "true");
+            props.setProperty("cachePrepStmts", "true");
+            props.setProperty("prepStmtCacheSize", String.valueOf(InventoryConfig.getInt("db.prepStmtCacheSize", 256)));
+            props.setProperty("prepStmtCacheSqlLimit", "2048");
+            props.setProperty("cacheServerConfiguration", "true");
+            props.setProperty("useLocalSessionState", "true");
+            // Honour Statement.setFetchSize() with a server-side cursor, so large
+            // listings are read in chunks instead of buffered whole in the driver
+            props.setProperty("useCursorFetch", "true");
+            // Send JDBC batches as multi-row INSERTs
+            props.setProperty("rewriteBatchedStatements", "true");
+        }
+        return new ConnectionPool(url, props,
+                InventoryConfig.getInt("db.pool.minSize", 2),
+                InventoryConfig.getInt("db.pool.maxSize", 20),
+                InventoryConfig.getLong("db.pool.acquireTimeoutMs", 5000),
+                InventoryConfig.getLong("db.pool.idleTimeoutMs", 300000),
+                InventoryConfig.getLong("db.pool.validationWindowMs", 500),
+                InventoryConfig.getInt("db.pool.validationTimeoutSeconds", 2));
+    }
+
+    /**
+     * Map the current row of a SELECT * FROM Product result
+     */
+    public static Product toProduct(ResultSet rs) throws SQLException {
+        Product product = new Product(rs.getString("ID"), rs.getString("Products"), rs.getString("Category"),
+                rs.getString("Name"), rs.getString("Brand"), rs.getInt("Cost"), rs.getInt("Quantity"));
+        product.setVersion(rs.getLong("Version"));
+        return product;
+    }
+
+    /**
+     * Read the given products with one IN query on the caller's connection
+     *
+     * @return the products found, by ID; missing IDs are absent
+     */
+    public static Map<String, Product> readProducts(Connection conn, Collection<String> ids) throws SQLException {
+        Map<String, Product> products = new HashMap<>();
+        if (ids.isEmpty()) {
+            return products;
+        }
+        // Pad the list to a power of two by repeating the last ID, so all
+        // sizes share a few statements in the server-side statement cache
+        int placeholders = Integer.highestOneBit(ids.size() - 1) << 1;
+        placeholders = Math.max(1, placeholders);
+        StringBuilder sql = new StringBuilder(40 + 3 * placeholders).append("SELECT * FROM Product WHERE ID IN (");
+        for (int i = 0; i < placeholders; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(sql.append(')').toString())) {
+            int index = 1;
+            String last = null;
+            for (String id : ids) {
+                stmt.setString(index++, id);
+                last = id;
+            }
+            while (index <= placeholders) {
+                stmt.setString(index++, last);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Product product = toProduct(rs);
+                    products.put(product.getId(), product);
+                }
+            }
+        }
+        return products;
+    }
+
     /**
      * Close the connection quietly
-     * 
+     *
      * @param conn Connection to close
      */
     public static void closeQuietly(AutoCloseable closeable) {
@@ -0,0 +1,174 @@
+package Inventory.src.Inventory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Streams the product table as CSV or NDJSON.
+ *
+ * GET /products/export.csv and GET /products/export.ndjson accept the same
+ * filter and sort parameters as the GET /products listing (limit is ignored).
+ * Rows go from the database cursor straight to the response in chunks, so
+ * memory use stays flat however many rows are exported. The body is gzipped
+ * when the client accepts it, unless gzip=false is passed. A database error
+ * after rows have been sent aborts the connection instead of ending the
+ * body, so the client sees a failed download rather than a short file.
+ */
+@WebServlet({ "/products/export.csv", "/products/export.ndjson" })
+public class ExportServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    // Flush to the client every this many rows so downloads start immediately
+    private static final int FLUSH_EVERY_ROWS = 1000;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        boolean csv = request.getServletPath().endsWith(".csv");
+        if (!ProductRepository.shared().isDatabase()) {
+            response.setStatus(HttpServletResponse.SC_NOT_IMPLEMENTED);
+            response.setContentType("application/json");
+            response.getWriter().print(ProductJsonCodec.error("Export requires ims.store=mysql"));
+            return;
+        }
+
+        ProductQuery query;
+        try {
+            query = ProductQuery.fromRequest(request);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.setContentType("application/json");
+            response.getWriter().print(ProductJsonCodec.error(e.getMessage()));
+            return;
+        }
+
+        // Served by a replica if one has the client's own writes
+        try (Connection conn = DatabaseUtil.getReadConnection(ReplicaRouter.clientWrittenBy(request));
+             PreparedStatement stmt = conn.prepareStatement(query.toSql(false),
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            query.bind(stmt, false);
+            stmt.setFetchSize(DatabaseUtil.STREAM_FETCH_SIZE);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                response.setCharacterEncoding("UTF-8");
+                response.setContentType(csv ? "text/csv" : "application/x-ndjson");
+                response.setHeader("Content-Disposition",
+                        "attachment; filename=\"products." + (csv ? "csv" : "ndjson") + "\"");
+                response.setHeader("Cache-Control", "no-store");
+
+                OutputStream body = response.getOutputStream();
+                if (acceptsGzip(request)) {
+                    response.setHeader("Content-Encoding", "gzip");
+                    response.addHeader("Vary", "Accept-Encoding");
+                    body = new GZIPOutputStream(body, 8192, true);
+                }
+                Writer out = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), 64 * 1024);
+                if (csv) {
+                    writeCsv(rs, out);
+                } else {
+                    writeNdjson(rs, out);
+                }
+                // Not closed on failure: closing writes the gzip trailer, making a short file look whole
+                out.close();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                response.setContentType("application/json");
+                response.getWriter().print(ProductJsonCodec.error("Database error: " + e.getMessage()));
+            } else {
+                // Rows have been sent: the container drops the connection without the final chunk
+                throw new ServletException("Export failed after rows were sent", e);
+            }
+        }
+    }
+
+    private void writeCsv(ResultSet rs, Writer out) throws SQLException, IOException {
+        out.write("ID,Products,Category,Name,Brand,Cost,Quantity\r\n");
+        StringBuilder line = new StringBuilder(256);
+        int rows = 0;
+        while (rs.next()) {
+            line.setLength(0);
+            line.append(rs.getString("ID")).append(',');
+            appendCsvField(line, rs.getString("Products"));
+            line.append(',');
+            appendCsvField(line, rs.getString("Category"));
+            line.append(',');
+            appendCsvField(line, rs.getString("Name"));
+            line.append(',');
+            appendCsvField(line, rs.getString("Brand"));
+            line.append(',').append(rs.getInt("Cost"));
+            line.append(',').append(rs.getInt("Quantity"));
+            line.append("\r\n");
+            out.append(line);
+            if (++rows % FLUSH_EVERY_ROWS == 0) {
+                out.flush();
+            }
+        }
+    }
+
+    private void writeNdjson(ResultSet rs, Writer out) throws SQLException, IOException {
+        StringBuilder line = new StringBuilder(256);
+        int rows = 0;
+        while (rs.next()) {
+            line.setLength(0);
+            ProductJsonCodec.write(line, rs);
+            line.append('\n');
+            out.append(line);
+            if (++rows % FLUSH_EVERY_ROWS == 0) {
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Append a field, quoting it (RFC 4180) when it contains a separator, quote or line break
+     */
+    private static void appendCsvField(StringBuilder line, String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        if ("false".equalsIgnoreCase(request.getParameter("gzip"))) {
+            return false;
+        }
+        String accept = request.getHeader("Accept-Encoding");
+        return accept != null && accept.toLowerCase().contains("gzip");
+    }
+}
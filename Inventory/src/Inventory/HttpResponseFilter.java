@@ -0,0 +1,768 @@
+package Inventory.src.Inventory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * CORS, preflights, compression and conditional GETs for every response.
+ *
+ * CORS preflights (OPTIONS) are answered here with 204 and never reach a
+ * servlet. Other responses are held in a buffer until the request
+ * completes (for async requests, when the handler calls complete()), which
+ * lets this filter:
+ * <ul>
+ * <li>gzip or deflate text and JSON bodies of at least
+ * ims.http.compression.minBytes when the client accepts it;</li>
+ * <li>send Content-Length instead of a chunked body;</li>
+ * <li>give GET responses an ETag of the body and, under /products, a
+ * Last-Modified of the last product write (never older than
+ * ims.cache.ttlMs, since MySQL may change underneath, and left out while
+ * that write is in the current second), where the servlet did not set its
+ * own, and answer If-None-Match / If-Modified-Since with 304.</li>
+ * </ul>
+ * A body that outgrows ims.http.bufferBytes is streamed on, still
+ * compressed but without Content-Length or ETag. Responses that set their
+ * own ETag (the listing and single products) are only buffered up to
+ * ims.http.compression.minBytes, enough to send small ones uncompressed
+ * with Content-Length, and larger ones are streamed. Exports and the low-stock
+ * event stream, which stream by design, and responses that set their own
+ * Content-Encoding or write without blocking (setWriteListener) are passed
+ * through. Buffers and deflaters are pooled, since request handlers run on
+ * short-lived virtual threads.
+ */
+@WebFilter(filterName = "HttpResponseFilter", urlPatterns = "/*", asyncSupported = true)
+public class HttpResponseFilter implements Filter {
+    private static final boolean COMPRESSION = InventoryConfig.getBoolean("http.compression.enabled", true);
+    private static final int COMPRESSION_MIN_BYTES = InventoryConfig.getInt("http.compression.minBytes", 1024);
+    private static final int COMPRESSION_LEVEL = InventoryConfig.getInt("http.compression.level", 5);
+    private static final int BUFFER_BYTES = InventoryConfig.getInt("http.bufferBytes", 64 * 1024);
+
+    // Buffers up to this size go back to the pool; larger ones are left to the GC
+    private static final int POOLED_BUFFER_BYTES = 64 * 1024;
+    private static final int INITIAL_BUFFER_BYTES = 16 * 1024;
+    private static final BlockingQueue<byte[]> BUFFERS = new ArrayBlockingQueue<>(64);
+    private static final BlockingQueue<Deflater> GZIP_DEFLATERS = new ArrayBlockingQueue<>(32);
+    private static final BlockingQueue<Deflater> ZLIB_DEFLATERS = new ArrayBlockingQueue<>(32);
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    // Streamed by their servlets, which flush as they go
+    private static final String[] STREAMING_PATHS = {
+            "/products/low-stock/stream", "/products/export.csv", "/products/export.ndjson" };
+
+    private static final long STARTED_AT = System.currentTimeMillis();
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+
+        addCorsHeaders(httpResponse);
+        if ("OPTIONS".equals(httpRequest.getMethod())) {
+            httpResponse.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            return;
+        }
+        if ("HEAD".equals(httpRequest.getMethod()) || isStreaming(httpRequest)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        BufferedResponse buffered = new BufferedResponse(httpRequest, httpResponse);
+        FinishingRequest finishing = new FinishingRequest(httpRequest, buffered);
+        try {
+            chain.doFilter(finishing, buffered);
+        } catch (IOException | ServletException | RuntimeException e) {
+            buffered.discard();
+            throw e;
+        }
+        if (!finishing.isAsyncStarted()) {
+            buffered.finish();
+        }
+    }
+
+    /**
+     * Also set again when a response is reset, e.g. to send an error
+     */
+    private static void addCorsHeaders(HttpServletResponse response) {
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        response.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization, If-Match, If-None-Match");
+        response.setHeader("Access-Control-Expose-Headers", "ETag, Retry-After");
+        response.setHeader("Access-Control-Max-Age", "3600");
+    }
+
+    private static boolean isStreaming(HttpServletRequest request) {
+        String path = request.getServletPath() + (request.getPathInfo() != null ? request.getPathInfo() : "");
+        for (String streaming : STREAMING_PATHS) {
+            if (streaming.equals(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hands out an AsyncContext that flushes the buffered response before
+     * completing it
+     */
+    private static final class FinishingRequest extends HttpServletRequestWrapper {
+        private final BufferedResponse response;
+        private AsyncContext context;
+
+        FinishingRequest(HttpServletRequest request, BufferedResponse response) {
+            super(request);
+            this.response = response;
+        }
+
+        @Override
+        public AsyncContext startAsync() {
+            context = new FinishingAsyncContext(super.startAsync(), response);
+            return context;
+        }
+
+        @Override
+        public AsyncContext startAsync(ServletRequest request, ServletResponse response) {
+            context = new FinishingAsyncContext(super.startAsync(request, response), this.response);
+            return context;
+        }
+
+        @Override
+        public AsyncContext getAsyncContext() {
+            return context != null ? context : super.getAsyncContext();
+        }
+    }
+
+    private static final class FinishingAsyncContext implements AsyncContext {
+        private final AsyncContext context;
+        private final BufferedResponse response;
+
+        FinishingAsyncContext(AsyncContext context, BufferedResponse response) {
+            this.context = context;
+            this.response = response;
+        }
+
+        @Override
+        public void complete() {
+            try {
+                response.finish();
+            } catch (IOException e) {
+                // The client is gone; nothing left to send it
+            } finally {
+                context.complete();
+            }
+        }
+
+        @Override
+        public ServletRequest getRequest() {
+            return context.getRequest();
+        }
+
+        @Override
+        public ServletResponse getResponse() {
+            return context.getResponse();
+        }
+
+        @Override
+        public boolean hasOriginalRequestAndResponse() {
+            return context.hasOriginalRequestAndResponse();
+        }
+
+        @Override
+        public void dispatch() {
+            context.dispatch();
+        }
+
+        @Override
+        public void dispatch(String path) {
+            context.dispatch(path);
+        }
+
+        @Override
+        public void dispatch(ServletContext servletContext, String path) {
+            context.dispatch(servletContext, path);
+        }
+
+        @Override
+        public void start(Runnable run) {
+            context.start(run);
+        }
+
+        @Override
+        public void addListener(AsyncListener listener) {
+            context.addListener(listener);
+        }
+
+        @Override
+        public void addListener(AsyncListener listener, ServletRequest request, ServletResponse response) {
+            context.addListener(listener, request, response);
+        }
+
+        @Override
+        public <T extends AsyncListener> T createListener(Class<T> type) throws ServletException {
+            return context.createListener(type);
+        }
+
+        @Override
+        public void setTimeout(long timeout) {
+            context.setTimeout(timeout);
+        }
+
+        @Override
+        public long getTimeout() {
+            return context.getTimeout();
+        }
+    }
+
+    /**
+     * Collects the body, then sends it compressed and with validators
+     */
+    private static final class BufferedResponse extends HttpServletResponseWrapper {
+        private final HttpServletRequest request;
+        private final Body body = new Body();
+        private PrintWriter writer;
+        // Encodes the writer's characters into the body; replaced on reset, dropping what it holds
+        private OutputStreamWriter encoder;
+        private boolean usedStream;
+
+        BufferedResponse(HttpServletRequest request, HttpServletResponse response) {
+            super(response);
+            this.request = request;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() has already been called");
+            }
+            usedStream = true;
+            return body;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (usedStream) {
+                throw new IllegalStateException("getOutputStream() has already been called");
+            }
+            if (writer == null) {
+                // Goes through the current encoder, so a writer the servlet kept still works after a reset
+                writer = new PrintWriter(new Writer() {
+                    @Override
+                    public void write(char[] chars, int off, int len) throws IOException {
+                        if (encoder == null) {
+                            encoder = new OutputStreamWriter(body, getCharacterEncoding());
+                        }
+                        encoder.write(chars, off, len);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        if (encoder != null) {
+                            encoder.flush();
+                        }
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        flush();
+                    }
+                });
+            }
+            return writer;
+        }
+
+        // The length is worked out once the body is complete
+        @Override
+        public void setContentLength(int length) {
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (encoder != null) {
+                encoder.flush();
+            }
+            body.flush();
+        }
+
+        @Override
+        public boolean isCommitted() {
+            return body.mode != Mode.BUFFERING || super.isCommitted();
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            resetBuffer();
+            writer = null;
+            usedStream = false;
+            addCorsHeaders(this);
+        }
+
+        @Override
+        public void resetBuffer() {
+            if (body.mode == Mode.BUFFERING) {
+                encoder = null;
+                body.count = 0;
+            } else {
+                super.resetBuffer();
+            }
+        }
+
+        @Override
+        public void sendError(int status, String message) throws IOException {
+            discard();
+            super.sendError(status, message);
+        }
+
+        @Override
+        public void sendError(int status) throws IOException {
+            discard();
+            super.sendError(status);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            discard();
+            super.sendRedirect(location);
+        }
+
+        /**
+         * Drop whatever was buffered; the container answers instead
+         */
+        void discard() {
+            synchronized (body) {
+                if (body.mode == Mode.BUFFERING) {
+                    body.mode = Mode.DONE;
+                    body.release();
+                }
+            }
+        }
+
+        /**
+         * Send the buffered body, or end the compressed stream
+         */
+        void finish() throws IOException {
+            if (encoder != null) {
+                encoder.flush();
+            }
+            synchronized (body) {
+                try {
+                    if (body.mode == Mode.BUFFERING) {
+                        sendBuffered();
+                    } else if (body.mode == Mode.STREAMING && body.target instanceof Deflating) {
+                        ((Deflating) body.target).finish();
+                    }
+                } finally {
+                    body.mode = Mode.DONE;
+                    body.release();
+                }
+            }
+        }
+
+        private void sendBuffered() throws IOException {
+            HttpServletResponse response = (HttpServletResponse) getResponse();
+            int status = getStatus();
+            if (status == HttpServletResponse.SC_OK && "GET".equals(request.getMethod()) && addValidators()) {
+                setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            if (status == HttpServletResponse.SC_NOT_MODIFIED || status == HttpServletResponse.SC_NO_CONTENT) {
+                return;
+            }
+            String encoding = body.count >= COMPRESSION_MIN_BYTES ? encoding() : null;
+            if (encoding == null) {
+                response.setContentLength(body.count);
+                response.getOutputStream().write(body.buffer, 0, body.count);
+                return;
+            }
+            byte[] compressed = takeBuffer(Math.max(INITIAL_BUFFER_BYTES, body.count / 2));
+            try (Deflating deflating = new Deflating(encoding.equals("gzip"), compressed)) {
+                deflating.write(body.buffer, 0, body.count);
+                deflating.finish();
+                response.setHeader("Content-Encoding", encoding);
+                response.setContentLength(deflating.count);
+                response.getOutputStream().write(deflating.buffer, 0, deflating.count);
+                giveBuffer(deflating.buffer);
+            }
+        }
+
+        /**
+         * Add the ETag and Last-Modified the servlet did not set itself,
+         * unless it forbade storing the response
+         *
+         * @return true if the client's copy is current and 304 should be sent
+         */
+        private boolean addValidators() {
+            String cacheControl = getHeader("Cache-Control");
+            if (cacheControl != null && cacheControl.contains("no-store")) {
+                return false;
+            }
+            String etag = getHeader("ETag");
+            if (etag == null) {
+                CRC32C crc = new CRC32C();
+                crc.update(body.buffer, 0, body.count);
+                Adler32 adler = new Adler32();
+                adler.update(body.buffer, 0, body.count);
+                etag = "\"" + Long.toString(crc.getValue(), 36) + Long.toString(adler.getValue(), 36)
+                        + Integer.toString(body.count, 36) + "\"";
+                setHeader("ETag", etag);
+            }
+            long lastModified = -1;
+            if (!containsHeader("Last-Modified") && request.getServletPath().startsWith("/products")) {
+                ProductCache cache = ProductCache.shared();
+                long now = System.currentTimeMillis();
+                long lastWrite = Math.max(Math.max(cache.lastWriteMillis(), STARTED_AT), now - cache.getTtlMillis());
+                // HTTP dates have whole seconds: another write later in this second would
+                // not change the date, and a client revalidating with it would get a stale 304
+                if (lastWrite / 1000 < now / 1000) {
+                    lastModified = lastWrite / 1000 * 1000;
+                    setDateHeader("Last-Modified", lastModified);
+                }
+            }
+
+            String ifNoneMatch = request.getHeader("If-None-Match");
+            if (ifNoneMatch != null) {
+                return ProductCache.matches(ifNoneMatch, etag);
+            }
+            if (lastModified >= 0) {
+                try {
+                    long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+                    return ifModifiedSince >= lastModified;
+                } catch (IllegalArgumentException e) {
+                    return false; // unparseable date: send the body
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return "gzip" or "deflate" if the body should be compressed, else null
+         */
+        private String encoding() {
+            String contentType = getContentType();
+            if (!COMPRESSION || containsHeader("Content-Encoding") || contentType == null) {
+                return null;
+            }
+            String type = contentType.toLowerCase(Locale.ROOT);
+            if (!type.startsWith("text/") && !type.startsWith("application/json")
+                    && !type.startsWith("application/javascript") && !type.startsWith("application/x-ndjson")
+                    && !type.startsWith("application/xml") && !type.startsWith("image/svg+xml")) {
+                return null;
+            }
+            addHeader("Vary", "Accept-Encoding");
+            String accept = request.getHeader("Accept-Encoding");
+            if (accepts(accept, "gzip")) {
+                return "gzip";
+            }
+            return accepts(accept, "deflate") ? "deflate" : null;
+        }
+
+        private static boolean accepts(String acceptEncoding, String coding) {
+            if (acceptEncoding == null) {
+                return false;
+            }
+            for (String part : acceptEncoding.split(",")) {
+                String[] params = part.trim().toLowerCase(Locale.ROOT).split(";");
+                if (!params[0].trim().equals(coding)) {
+                    continue;
+                }
+                for (int i = 1; i < params.length; i++) {
+                    String param = params[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            return Double.parseDouble(param.substring(2)) > 0;
+                        } catch (NumberFormatException e) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+
+        private enum Mode {
+            BUFFERING, STREAMING, PASS_THROUGH, DONE
+        }
+
+        /**
+         * Buffers up to ims.http.bufferBytes, then streams
+         */
+        private final class Body extends ServletOutputStream {
+            Mode mode = Mode.BUFFERING;
+            byte[] buffer;
+            int count;
+            // Bytes held before streaming starts; decided at the first write
+            int limit = BUFFER_BYTES;
+            OutputStream target;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public synchronized void write(byte[] b, int off, int len) throws IOException {
+                if (mode == Mode.BUFFERING && count == 0) {
+                    if (containsHeader("Content-Encoding")) {
+                        // Already encoded by the servlet: send as written
+                        mode = Mode.PASS_THROUGH;
+                        target = BufferedResponse.super.getOutputStream();
+                    } else {
+                        // With the servlet's own ETag there is no validator to compute
+                        limit = containsHeader("ETag") ? Math.min(COMPRESSION_MIN_BYTES, BUFFER_BYTES) : BUFFER_BYTES;
+                    }
+                }
+                if (mode == Mode.BUFFERING) {
+                    if (count + len <= limit) {
+                        ensureCapacity(count + len);
+                        System.arraycopy(b, off, buffer, count, len);
+                        count += len;
+                        return;
+                    }
+                    startStreaming();
+                }
+                if (mode == Mode.DONE) {
+                    throw new IOException("Response already sent");
+                }
+                target.write(b, off, len);
+            }
+
+            @Override
+            public synchronized void flush() throws IOException {
+                if (mode == Mode.PASS_THROUGH) {
+                    target.flush();
+                }
+            }
+
+            @Override
+            public synchronized boolean isReady() {
+                // Buffered writes never block
+                return mode != Mode.PASS_THROUGH || ((ServletOutputStream) target).isReady();
+            }
+
+            /**
+             * Non-blocking writes go straight to the container's stream,
+             * without buffering or compression
+             */
+            @Override
+            public synchronized void setWriteListener(WriteListener listener) {
+                if (mode == Mode.BUFFERING) {
+                    try {
+                        target = BufferedResponse.super.getOutputStream();
+                        if (count > 0) {
+                            target.write(buffer, 0, count);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    release();
+                    mode = Mode.PASS_THROUGH;
+                }
+                if (mode != Mode.PASS_THROUGH) {
+                    throw new IllegalStateException("The body is already being streamed with blocking writes");
+                }
+                ((ServletOutputStream) target).setWriteListener(listener);
+            }
+
+            private void startStreaming() throws IOException {
+                String encoding = encoding();
+                OutputStream out = BufferedResponse.super.getOutputStream();
+                if (encoding != null) {
+                    setHeader("Content-Encoding", encoding);
+                    target = new Deflating(encoding.equals("gzip"), out);
+                } else {
+                    target = out;
+                }
+                mode = Mode.STREAMING;
+                target.write(buffer, 0, count);
+                release();
+            }
+
+            private void ensureCapacity(int capacity) {
+                if (buffer == null) {
+                    buffer = takeBuffer(capacity);
+                } else if (capacity > buffer.length) {
+                    byte[] grown = Arrays.copyOf(buffer, Math.min(BUFFER_BYTES, Math.max(capacity, buffer.length * 2)));
+                    giveBuffer(buffer);
+                    buffer = grown;
+                }
+            }
+
+            void release() {
+                if (buffer != null) {
+                    giveBuffer(buffer);
+                    buffer = null;
+                }
+                count = 0;
+            }
+        }
+    }
+
+    /**
+     * Deflate with a pooled Deflater, as gzip (RFC 1952) or zlib (RFC 1950,
+     * HTTP's "deflate"), into a growable array or on to another stream
+     */
+    private static final class Deflating extends OutputStream {
+        private final boolean gzip;
+        private final OutputStream out;
+        private Deflater deflater;
+        private final CRC32 crc = new CRC32();
+        private long inputBytes;
+        private byte[] chunk;
+        byte[] buffer;
+        int count;
+
+        Deflating(boolean gzip, byte[] buffer) {
+            this(gzip, null, buffer);
+        }
+
+        Deflating(boolean gzip, OutputStream out) throws IOException {
+            this(gzip, out, takeBuffer(8192));
+            this.chunk = this.buffer;
+        }
+
+        private Deflating(boolean gzip, OutputStream out, byte[] buffer) {
+            this.gzip = gzip;
+            this.out = out;
+            this.buffer = buffer;
+            Deflater pooled = (gzip ? GZIP_DEFLATERS : ZLIB_DEFLATERS).poll();
+            this.deflater = pooled != null ? pooled : new Deflater(COMPRESSION_LEVEL, gzip);
+            if (gzip) {
+                System.arraycopy(GZIP_HEADER, 0, buffer, 0, GZIP_HEADER.length);
+                count = GZIP_HEADER.length;
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            crc.update(b, off, len);
+            inputBytes += len;
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                drain();
+            }
+        }
+
+        void finish() throws IOException {
+            if (deflater == null) {
+                return;
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain();
+            }
+            if (gzip) {
+                ensureRoom(8);
+                int value = (int) crc.getValue();
+                for (int i = 0; i < 4; i++) {
+                    buffer[count++] = (byte) (value >>> (8 * i));
+                }
+                value = (int) inputBytes;
+                for (int i = 0; i < 4; i++) {
+                    buffer[count++] = (byte) (value >>> (8 * i));
+                }
+            }
+            if (out != null) {
+                out.write(buffer, 0, count);
+                count = 0;
+            }
+            close();
+        }
+
+        /**
+         * Return the deflater (and the chunk buffer of a stream) to their pools
+         */
+        @Override
+        public void close() {
+            if (deflater != null) {
+                deflater.reset();
+                if (!(gzip ? GZIP_DEFLATERS : ZLIB_DEFLATERS).offer(deflater)) {
+                    deflater.end();
+                }
+                deflater = null;
+            }
+            if (chunk != null) {
+                giveBuffer(chunk);
+                chunk = null;
+            }
+        }
+
+        private void drain() throws IOException {
+            ensureRoom(1);
+            count += deflater.deflate(buffer, count, buffer.length - count);
+        }
+
+        private void ensureRoom(int bytes) throws IOException {
+            if (buffer.length - count >= bytes) {
+                return;
+            }
+            if (out != null) {
+                out.write(buffer, 0, count);
+                count = 0;
+            } else {
+                byte[] grown = Arrays.copyOf(buffer, buffer.length * 2);
+                giveBuffer(buffer);
+                buffer = grown;
+            }
+        }
+    }
+
+    private static byte[] takeBuffer(int minimum) {
+        if (minimum <= POOLED_BUFFER_BYTES) {
+            byte[] pooled = BUFFERS.poll();
+            if (pooled != null) {
+                if (pooled.length >= minimum) {
+                    return pooled;
+                }
+                BUFFERS.offer(pooled);
+            }
+        }
+        return new byte[Math.max(minimum, INITIAL_BUFFER_BYTES)];
+    }
+
+    private static void giveBuffer(byte[] buffer) {
+        if (buffer.length <= POOLED_BUFFER_BYTES) {
+            BUFFERS.offer(buffer);
+        }
+    }
+}
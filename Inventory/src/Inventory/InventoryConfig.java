@@ -0,0 +1,58 @@
+package Inventory.src.Inventory;
+
+/**
+ * Reads configuration settings for the inventory backend.
+ *
+ * A setting named "db.url" is looked up first as the system property
+ * "ims.db.url" and then as the environment variable "IMS_DB_URL". If neither
+ * is present the supplied default is used.
+ */
+public final class InventoryConfig {
+
+    private InventoryConfig() {
+    }
+
+    /**
+     * Get a string setting
+     *
+     * @param key setting name without the "ims." prefix
+     * @param defaultValue value used when the setting is absent
+     * @return the configured value or the default
+     */
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty("ims." + key);
+        if (value == null) {
+            value = System.getenv("IMS_" + key.toUpperCase().replace('.', '_'));
+        }
+        return (value == null || value.trim().isEmpty()) ? defaultValue : value.trim();
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Setting ims." + key + " must be an integer: " + value, e);
+        }
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Setting ims." + key + " must be a number: " + value, e);
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
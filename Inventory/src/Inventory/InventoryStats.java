@@ -0,0 +1,295 @@
+package Inventory.src.Inventory;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Inventory totals kept up to date as writes commit, served by
+ * GET /products/stats.
+ *
+ * Holds product count, total quantity, stock value (Cost * Quantity) and
+ * low-stock count overall and per category and brand. Computed once from
+ * the database at startup, then every committed write applies the
+ * difference between the product's old and new contribution, so reading
+ * the totals never touches MySQL.
+ *
+ * Every ims.stats.reconcileIntervalMs the totals are recomputed from the
+ * database to correct drift from changes made outside the application.
+ * The recount runs beside the live totals; writes committed meanwhile are
+ * applied to both.
+ */
+public class InventoryStats implements ProductChangeListener {
+    private static final InventoryStats SHARED = new InventoryStats(
+            LowStockIndex.shared().getThreshold(),
+            InventoryConfig.getLong("stats.reconcileIntervalMs", 300000));
+
+    private final int lowStockThreshold;
+    private final long reconcileIntervalMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Rebuild<Totals> recount = new Rebuild<>(lock);
+    private Totals totals = new Totals();
+    private String cachedJson;
+    private Instant reconciledAt;
+    private long lastDrift;
+    private ScheduledExecutorService reconciler;
+
+    public InventoryStats(int lowStockThreshold, long reconcileIntervalMillis) {
+        this.lowStockThreshold = lowStockThreshold;
+        this.reconcileIntervalMillis = reconcileIntervalMillis;
+    }
+
+    public static InventoryStats shared() {
+        return SHARED;
+    }
+
+    /**
+     * Compute the totals and start the periodic reconciliation
+     */
+    public void start() throws SQLException {
+        synchronized (this) {
+            if (reconcileIntervalMillis > 0 && reconciler == null) {
+                reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "ims-stats-reconcile");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                reconciler.scheduleWithFixedDelay(this::reconcileQuietly, reconcileIntervalMillis,
+                        reconcileIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        reconcile();
+    }
+
+    public synchronized void close() {
+        if (reconciler != null) {
+            reconciler.shutdownNow();
+            reconciler = null;
+        }
+    }
+
+    /**
+     * Recount everything from the product store and replace the current totals
+     */
+    public void reconcile() throws SQLException {
+        recount.run(() -> {
+            Totals recounted = new Totals();
+            ProductRepository.shared().forEach(product -> recounted.put(product.getId(),
+                    new Contribution(product.getCategory(), product.getBrand(), product.getCost(),
+                            product.getQuantity(), product.getVersion())), ProductRepository.LATEST);
+            return recounted;
+        }, recounted -> {
+            // How far the maintained totals had drifted from the table
+            lastDrift = reconciledAt == null ? 0 : Math.abs(totals.all.products - recounted.all.products)
+                    + Math.abs(totals.all.quantity - recounted.all.quantity)
+                    + Math.abs(totals.all.stockValue - recounted.all.stockValue);
+            totals = recounted;
+            reconciledAt = Instant.now();
+            cachedJson = null;
+        });
+    }
+
+    /**
+     * {"products", "quantity", "stockValue", "lowStock", "lowStockThreshold",
+     * "categories": [...], "brands": [...], "reconciledAt", "drift"}
+     */
+    public String toJson() {
+        lock.lock();
+        try {
+            if (cachedJson == null) {
+                StringBuilder sb = new StringBuilder(1024);
+                sb.append('{');
+                totals.all.write(sb);
+                sb.append(",\"lowStockThreshold\":").append(lowStockThreshold);
+                sb.append(",\"categories\":");
+                writeGroups(sb, "category", totals.categories);
+                sb.append(",\"brands\":");
+                writeGroups(sb, "brand", totals.brands);
+                sb.append(",\"reconciledAt\":");
+                ProductJsonCodec.writeString(sb, reconciledAt == null ? null : reconciledAt.toString());
+                sb.append(",\"drift\":").append(lastDrift);
+                cachedJson = sb.append('}').toString();
+            }
+            return cachedJson;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void productSaved(Product product) {
+        Contribution contribution = new Contribution(product.getCategory(), product.getBrand(),
+                product.getCost(), product.getQuantity(), product.getVersion());
+        write(totals -> totals.put(product.getId(), contribution));
+    }
+
+    @Override
+    public void quantityChanged(String productId, int quantity, long version) {
+        boolean known;
+        lock.lock();
+        try {
+            known = totals.contributions.containsKey(productId);
+            if (known) {
+                write(totals -> totals.updateQuantity(productId, quantity, version));
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (!known) {
+            // Not counted yet (inserted outside the application): read the whole row
+            try {
+                Product product = ProductRepository.shared().find(productId, ProductRepository.LATEST);
+                if (product != null) {
+                    productSaved(product);
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void productDeleted(String productId) {
+        write(totals -> totals.remove(productId));
+    }
+
+    @Override
+    public void productsReloaded() {
+        reconcileQuietly();
+    }
+
+    private void write(Consumer<Totals> change) {
+        lock.lock();
+        try {
+            change.accept(totals);
+            recount.record(change);
+            cachedJson = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void writeGroups(StringBuilder sb, String key, Map<String, Group> groups) {
+        sb.append('[');
+        boolean first = true;
+        for (Map.Entry<String, Group> entry : new TreeMap<>(groups).entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append("{\"").append(key).append("\":");
+            ProductJsonCodec.writeString(sb, entry.getKey());
+            sb.append(',');
+            entry.getValue().write(sb);
+            sb.append('}');
+        }
+        sb.append(']');
+    }
+
+    /**
+     * What one product adds to the totals
+     */
+    private static final class Contribution {
+        final String category;
+        final String brand;
+        final int cost;
+        final int quantity;
+        final long version;
+
+        Contribution(String category, String brand, int cost, int quantity, long version) {
+            this.category = category == null ? "" : category;
+            this.brand = brand == null ? "" : brand;
+            this.cost = cost;
+            this.quantity = quantity;
+            this.version = version;
+        }
+    }
+
+    private static final class Group {
+        long products;
+        long quantity;
+        long stockValue;
+        long lowStock;
+
+        void add(Contribution contribution, int sign, int lowStockThreshold) {
+            products += sign;
+            quantity += (long) sign * contribution.quantity;
+            stockValue += (long) sign * contribution.cost * contribution.quantity;
+            if (contribution.quantity < lowStockThreshold) {
+                lowStock += sign;
+            }
+        }
+
+        void write(StringBuilder sb) {
+            sb.append("\"products\":").append(products)
+                    .append(",\"quantity\":").append(quantity)
+                    .append(",\"stockValue\":").append(stockValue)
+                    .append(",\"lowStock\":").append(lowStock);
+        }
+    }
+
+    /**
+     * The totals and the contribution of every product they include
+     */
+    private final class Totals {
+        final Map<String, Contribution> contributions = new HashMap<>();
+        final Group all = new Group();
+        final Map<String, Group> categories = new HashMap<>();
+        final Map<String, Group> brands = new HashMap<>();
+
+        void put(String productId, Contribution contribution) {
+            Contribution previous = contributions.get(productId);
+            if (previous != null) {
+                if (previous.version > contribution.version) {
+                    return; // a newer write was already applied
+                }
+                apply(previous, -1);
+            }
+            contributions.put(productId, contribution);
+            apply(contribution, 1);
+        }
+
+        void updateQuantity(String productId, int quantity, long version) {
+            Contribution previous = contributions.get(productId);
+            if (previous != null) {
+                put(productId, new Contribution(previous.category, previous.brand, previous.cost, quantity, version));
+            }
+        }
+
+        void remove(String productId) {
+            Contribution previous = contributions.remove(productId);
+            if (previous != null) {
+                apply(previous, -1);
+            }
+        }
+
+        private void apply(Contribution contribution, int sign) {
+            all.add(contribution, sign, lowStockThreshold);
+            apply(categories, contribution.category, contribution, sign);
+            apply(brands, contribution.brand, contribution, sign);
+        }
+
+        private void apply(Map<String, Group> groups, String key, Contribution contribution, int sign) {
+            Group group = groups.computeIfAbsent(key, k -> new Group());
+            group.add(contribution, sign, lowStockThreshold);
+            if (group.products == 0) {
+                groups.remove(key);
+            }
+        }
+    }
+}
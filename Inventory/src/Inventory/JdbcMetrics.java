@@ -0,0 +1,187 @@
+package Inventory.src.Inventory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * JDBC wrappers that time statements into {@link Metrics}.
+ *
+ * A wrapped connection hands out statements that record how long each
+ * execute call takes, and result sets that add up the time spent in next()
+ * (the driver fetching rows) until they are exhausted or closed. Every other
+ * call is passed straight through.
+ */
+final class JdbcMetrics {
+    private static final ClassLoader LOADER = JdbcMetrics.class.getClassLoader();
+
+    private JdbcMetrics() {
+    }
+
+    static Connection wrap(Connection connection, Metrics metrics) {
+        return (Connection) Proxy.newProxyInstance(LOADER, new Class<?>[] { Connection.class },
+                new ConnectionHandler(connection, metrics));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+        private final Metrics metrics;
+
+        ConnectionHandler(Connection connection, Metrics metrics) {
+            this.connection = connection;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "prepareStatement":
+                case "prepareCall":
+                    Object prepared = JdbcMetrics.invoke(connection, method, args);
+                    Class<?> type = prepared instanceof CallableStatement ? CallableStatement.class : PreparedStatement.class;
+                    return Proxy.newProxyInstance(LOADER, new Class<?>[] { type },
+                            new StatementHandler((Statement) prepared, metrics.statement((String) args[0]), metrics));
+                case "createStatement":
+                    return Proxy.newProxyInstance(LOADER, new Class<?>[] { Statement.class },
+                            new StatementHandler((Statement) JdbcMetrics.invoke(connection, method, args), null, metrics));
+                default:
+                    return JdbcMetrics.invoke(connection, method, args);
+            }
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        // Known when prepared; plain statements get it from the SQL passed to execute
+        private final Metrics.StatementStats prepared;
+        private final Metrics metrics;
+
+        StatementHandler(Statement statement, Metrics.StatementStats prepared, Metrics metrics) {
+            this.statement = statement;
+            this.prepared = prepared;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                switch (name) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "getResultSet":
+                        return wrapResultSet((ResultSet) JdbcMetrics.invoke(statement, method, args), stats(null));
+                    default:
+                        return JdbcMetrics.invoke(statement, method, args);
+                }
+            }
+            Metrics.StatementStats stats = stats(args != null && args.length > 0 && args[0] instanceof String
+                    ? (String) args[0] : null);
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = JdbcMetrics.invoke(statement, method, args);
+            } catch (SQLException e) {
+                stats.recordError();
+                throw e;
+            } finally {
+                stats.recordExecute(System.nanoTime() - start);
+            }
+            return result instanceof ResultSet ? wrapResultSet((ResultSet) result, stats) : result;
+        }
+
+        private Metrics.StatementStats stats(String sql) {
+            if (prepared != null) {
+                return prepared;
+            }
+            return metrics.statement(sql == null ? Metrics.OTHER : sql);
+        }
+    }
+
+    private static ResultSet wrapResultSet(ResultSet resultSet, Metrics.StatementStats stats) {
+        if (resultSet == null) {
+            return null;
+        }
+        return (ResultSet) Proxy.newProxyInstance(LOADER, new Class<?>[] { ResultSet.class },
+                new ResultSetHandler(resultSet, stats));
+    }
+
+    private static final class ResultSetHandler implements InvocationHandler {
+        private static final Method NEXT;
+
+        static {
+            try {
+                NEXT = ResultSet.class.getMethod("next");
+            } catch (NoSuchMethodException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final ResultSet resultSet;
+        private final Metrics.StatementStats stats;
+        private long fetchNanos;
+        private long rows;
+        private boolean recorded;
+
+        ResultSetHandler(ResultSet resultSet, Metrics.StatementStats stats) {
+            this.resultSet = resultSet;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            // next() is called once per row, so it is checked before anything else
+            if (method.equals(NEXT)) {
+                long start = System.nanoTime();
+                boolean more = resultSet.next();
+                fetchNanos += System.nanoTime() - start;
+                if (more) {
+                    rows++;
+                } else {
+                    record();
+                }
+                return more;
+            }
+            switch (method.getName()) {
+                case "close":
+                    record();
+                    resultSet.close();
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return JdbcMetrics.invoke(resultSet, method, args);
+            }
+        }
+
+        private void record() {
+            if (!recorded) {
+                recorded = true;
+                stats.recordFetch(fetchNanos, rows);
+            }
+        }
+    }
+}
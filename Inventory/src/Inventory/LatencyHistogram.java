@@ -0,0 +1,124 @@
+package Inventory.src.Inventory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram for latency samples in nanoseconds.
+ *
+ * Values below 16 get their own bucket, above that every power of two is
+ * split into 8 linear sub-buckets, so any recorded value is reported within
+ * 12.5% of its true size. Recording is a couple of shifts and one atomic
+ * increment, which keeps it cheap enough for per-request use.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = 16;
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - 4) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record one sample
+     *
+     * @param nanos the observed value in nanoseconds, negative values count as zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry until we either win or someone recorded a larger value
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSumNanos() {
+        return sum.get();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Estimate the value at the given percentile
+     *
+     * @param percentile a value between 0 and 100
+     * @return the upper bound of the bucket containing that percentile, in nanoseconds
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+        rank = Math.max(1, rank);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Number of buckets; use with {@link #getBucketCount(int)} and
+     * {@link #bucketUpperBound(int)} to export the distribution.
+     */
+    public int size() {
+        return BUCKET_COUNT;
+    }
+
+    public long getBucketCount(int index) {
+        return buckets.get(index);
+    }
+
+    /**
+     * Largest value (inclusive) that falls into the given bucket
+     */
+    public static long bucketUpperBound(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + 4;
+        int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+        long lower = (1L << exponent) + ((long) subBucket << (exponent - SUB_BUCKET_BITS));
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - 4) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Summary with count, mean, max and common percentiles converted to the given unit
+     */
+    public String toJson(TimeUnit unit) {
+        return "{\"count\": " + getCount()
+                + ", \"mean\": " + (getCount() == 0 ? 0 : unit.convert(getSumNanos() / getCount(), TimeUnit.NANOSECONDS))
+                + ", \"p50\": " + unit.convert(getValueAtPercentile(50), TimeUnit.NANOSECONDS)
+                + ", \"p90\": " + unit.convert(getValueAtPercentile(90), TimeUnit.NANOSECONDS)
+                + ", \"p99\": " + unit.convert(getValueAtPercentile(99), TimeUnit.NANOSECONDS)
+                + ", \"p999\": " + unit.convert(getValueAtPercentile(99.9), TimeUnit.NANOSECONDS)
+                + ", \"max\": " + unit.convert(getMaxNanos(), TimeUnit.NANOSECONDS)
+                + "}";
+    }
+}
@@ -0,0 +1,903 @@
+package Inventory.src.Inventory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded product store: an append-only log in memory-mapped segment files
+ * plus an in-memory hash index from product ID to the product's latest
+ * record, so a read is a hash lookup and a decode from mapped memory.
+ *
+ * Every insert, update and delete appends one record to the active segment
+ * (ims.store.segmentBytes, mapped whole; a full segment is sealed and a new
+ * one opened). A record is [length][CRC32][type, ID, version, cost,
+ * quantity, products, category, name, brand]; a delete appends a tombstone
+ * with just the ID and version. With ims.store.sync a write returns only once
+ * its record is forced to disk; concurrent writers share one force, as in
+ * {@link QuantityJournal}.
+ *
+ * Startup replays every segment. For each ID the record with the highest
+ * version wins, so the order of the files does not matter. A segment ends at
+ * its first record with a bad length or checksum: a crash mid-write tears
+ * only records that were never acknowledged.
+ *
+ * Every ims.store.compactIntervalMs, once superseded records make up half of
+ * the log, the sealed segments are copied without them into new segments
+ * and deleted. A crash in between leaves both copies, which replay resolves
+ * by version. Tombstones are always copied, so an older copy of a deleted
+ * product can never come back, and they keep deleted IDs from being reused.
+ */
+public class LogProductRepository implements ProductRepository {
+    private static final String PREFIX = "products-";
+    private static final String SUFFIX = ".log";
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    // Length and checksum before each record's payload
+    private static final int HEADER = 8;
+    // Type, ID and version, at the start of every payload
+    private static final int KEY_BYTES = 1 + 4 + 8;
+    private static final long MISSING = -1;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean sync;
+    private final long compactIntervalMillis;
+
+    // Exclusive for appends and index changes; shared for reads
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object syncLock = new Object();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final IdIndex index = new IdIndex();
+    // By slot, the upper half of a record location; null once compacted away
+    private Segment[] segments = new Segment[16];
+    private int slots;
+    private Segment active;
+    private long lastSegmentNumber;
+    private int nextId = 1;
+    // Record bytes in all segments, in the records the index points to, and in tombstones
+    private long totalBytes;
+    private long liveBytes;
+    private long tombstoneBytes;
+    private long appended;
+    private volatile long durable;
+    private boolean closed;
+    private ScheduledExecutorService compactor;
+
+    public LogProductRepository(Path directory, int segmentBytes, boolean sync, long compactIntervalMillis) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.sync = sync;
+        this.compactIntervalMillis = compactIntervalMillis;
+    }
+
+    /**
+     * One mapped segment file
+     */
+    private static final class Segment {
+        final Path file;
+        final int slot;
+        final MappedByteBuffer buffer;
+        // Bytes of valid records; appends go here
+        int end;
+
+        Segment(Path file, int slot, MappedByteBuffer buffer) {
+            this.file = file;
+            this.slot = slot;
+            this.buffer = buffer;
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Replay the existing segments into the index and open a new active segment
+     */
+    public void open() throws IOException {
+        lock.writeLock().lock();
+        try {
+            Files.createDirectories(directory);
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+                for (Path file : stream) {
+                    files.add(file);
+                }
+            }
+            files.sort(null);
+            for (Path file : files) {
+                lastSegmentNumber = Math.max(lastSegmentNumber, segmentNumber(file));
+                if (Files.size(file) > 0) {
+                    replay(map(file, (int) Math.min(Files.size(file), Integer.MAX_VALUE)));
+                }
+            }
+
+            // Tombstones were indexed only to outrank older copies of their product
+            List<Integer> deleted = new ArrayList<>();
+            index.forEach((id, location) -> {
+                int size = recordSize(location);
+                if (type(location) == DELETE) {
+                    deleted.add(id);
+                    tombstoneBytes += size;
+                } else {
+                    liveBytes += size;
+                }
+            });
+            for (int id : deleted) {
+                index.remove(id);
+            }
+            active = newSegment();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void replay(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        CRC32 crc = new CRC32();
+        int position = 0;
+        while (position + HEADER + KEY_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length < KEY_BYTES || length > buffer.capacity() - position - HEADER) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.duplicate().position(position + HEADER).limit(position + HEADER + length));
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+            int id = buffer.getInt(position + HEADER + 1);
+            long version = buffer.getLong(position + HEADER + 5);
+            long current = index.get(id);
+            if (current == MISSING || version(current) < version) {
+                index.put(id, location(segment.slot, position));
+            }
+            nextId = Math.max(nextId, id + 1);
+            position += HEADER + length;
+        }
+        segment.end = position;
+        totalBytes += position;
+    }
+
+    @Override
+    public boolean isDatabase() {
+        return false;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (compactIntervalMillis > 0 && compactor == null) {
+            compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "ims-store-compact");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(this::compactIfWorthwhile, compactIntervalMillis,
+                    compactIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (compactor != null) {
+                compactor.shutdownNow();
+                compactor = null;
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            if (!closed) {
+                closed = true;
+                active.buffer.force();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Product find(String id, long committedBefore) throws SQLException {
+        int key = parseId(id);
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            long location = key > 0 ? index.get(key) : MISSING;
+            return location == MISSING ? null : decode(location);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Product> findAll(Collection<String> ids, long committedBefore) throws SQLException {
+        Map<String, Product> products = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            for (String id : ids) {
+                int key = parseId(id);
+                long location = key > 0 ? index.get(key) : MISSING;
+                if (location != MISSING) {
+                    products.put(id, decode(location));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return products;
+    }
+
+    /**
+     * Products as they were when the call started; the lock is held only
+     * while the index is copied, not while the action runs
+     */
+    @Override
+    public void forEach(Consumer<Product> action, long committedBefore) throws SQLException {
+        Snapshot snapshot = snapshot();
+        for (int i = 0; i < snapshot.size; i++) {
+            action.accept(snapshot.product(i));
+        }
+    }
+
+    /**
+     * A scan of every product: in ID order it stops at the end of the page,
+     * otherwise it sorts the matches
+     */
+    @Override
+    public ProductQuery.Page query(ProductQuery query, long committedBefore) throws SQLException {
+        Snapshot snapshot = snapshot();
+        int wanted = query.getLimit() + 1; // one more tells whether a next page exists
+        List<Product> matches = new ArrayList<>();
+        if (query.getSort() == ProductQuery.SortField.ID) {
+            for (int i = 0; i < snapshot.size && matches.size() < wanted; i++) {
+                Product product = snapshot.product(query.isDescending() ? snapshot.size - 1 - i : i);
+                if (query.matches(product)) {
+                    matches.add(product);
+                }
+            }
+        } else {
+            for (int i = 0; i < snapshot.size; i++) {
+                Product product = snapshot.product(i);
+                if (query.matches(product)) {
+                    matches.add(product);
+                }
+            }
+            matches.sort(query.order());
+        }
+
+        int count = Math.min(matches.size(), query.getLimit());
+        String nextCursor = matches.size() > count ? query.cursorAfter(matches.get(count - 1)) : null;
+        return new ProductQuery.Page(new ArrayList<>(matches.subList(0, count)), nextCursor);
+    }
+
+    @Override
+    public Product insert(Product product) throws SQLException {
+        long record;
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            product.setId(Integer.toString(nextId));
+            product.setVersion(0);
+            long location = append(encode(PUT, nextId, product));
+            index.put(nextId, location);
+            liveBytes += recordSize(location);
+            nextId++;
+            record = appended;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        sync(record);
+        return product;
+    }
+
+    @Override
+    public Product update(String id, ProductJsonCodec.Fields fields) throws SQLException {
+        int key = parseId(id);
+        Product changes = fields.getProduct();
+        Product product;
+        long record;
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            long location = key > 0 ? index.get(key) : MISSING;
+            if (location == MISSING) {
+                return null;
+            }
+            product = decode(location);
+            if (fields.has(ProductJsonCodec.PRODUCTS)) {
+                product.setProducts(changes.getProducts());
+            }
+            if (fields.has(ProductJsonCodec.CATEGORY)) {
+                product.setCategory(changes.getCategory());
+            }
+            if (fields.has(ProductJsonCodec.NAME)) {
+                product.setName(changes.getName());
+            }
+            if (fields.has(ProductJsonCodec.BRAND)) {
+                product.setBrand(changes.getBrand());
+            }
+            if (fields.has(ProductJsonCodec.COST)) {
+                product.setCost(changes.getCost());
+            }
+            if (fields.has(ProductJsonCodec.QUANTITY)) {
+                product.setQuantity(changes.getQuantity());
+            }
+            product.setVersion(product.getVersion() + 1);
+            replace(key, location, append(encode(PUT, key, product)));
+            record = appended;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        sync(record);
+        return product;
+    }
+
+    @Override
+    public boolean delete(String id) throws SQLException {
+        int key = parseId(id);
+        long record;
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            long location = key > 0 ? index.get(key) : MISSING;
+            if (location == MISSING) {
+                return false;
+            }
+            long tombstone = append(encode(DELETE, key, null, version(location) + 1));
+            index.remove(key);
+            liveBytes -= recordSize(location);
+            tombstoneBytes += recordSize(tombstone);
+            record = appended;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        sync(record);
+        return true;
+    }
+
+    @Override
+    public Adjustment adjust(String id, int delta, Long expectedVersion) throws SQLException {
+        int key = parseId(id);
+        Product product;
+        long record;
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            long location = key > 0 ? index.get(key) : MISSING;
+            if (location == MISSING) {
+                return new Adjustment(Adjustment.Outcome.NOT_FOUND, 0, 0);
+            }
+            product = decode(location);
+            if (expectedVersion != null && product.getVersion() != expectedVersion) {
+                return new Adjustment(Adjustment.Outcome.MODIFIED, product.getQuantity(), product.getVersion());
+            }
+            long quantity = (long) product.getQuantity() + delta;
+            if (quantity < 0 || quantity > Integer.MAX_VALUE) {
+                return new Adjustment(Adjustment.Outcome.INSUFFICIENT_STOCK, product.getQuantity(),
+                        product.getVersion());
+            }
+            product.setQuantity((int) quantity);
+            product.setVersion(product.getVersion() + 1);
+            replace(key, location, append(encode(PUT, key, product)));
+            record = appended;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        sync(record);
+        return new Adjustment(Adjustment.Outcome.APPLIED, product.getQuantity(), product.getVersion());
+    }
+
+    /**
+     * Copy the sealed segments without superseded records, if those make up
+     * at least half of the log
+     */
+    private void compactIfWorthwhile() {
+        long garbage;
+        long kept;
+        lock.readLock().lock();
+        try {
+            garbage = totalBytes - liveBytes - tombstoneBytes;
+            kept = liveBytes + tombstoneBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (garbage > 0 && garbage >= kept) {
+            try {
+                compact();
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Copy every sealed segment's current records and tombstones into new
+     * segments, point the index at the copies and delete the old files.
+     * Writes continue meanwhile; a product written during the copy keeps its
+     * newer record.
+     */
+    public void compact() throws IOException {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Segment> inputs = new ArrayList<>();
+            lock.writeLock().lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                if (active.end > 0) {
+                    seal();
+                }
+                for (int slot = 0; slot < slots; slot++) {
+                    if (segments[slot] != null && segments[slot] != active) {
+                        inputs.add(segments[slot]);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (inputs.isEmpty()) {
+                return;
+            }
+
+            // (id, old location, new location) of every copied product record
+            LongList moves = new LongList();
+            List<Segment> outputs = new ArrayList<>();
+            Segment output = null;
+            for (Segment input : inputs) {
+                int position = 0;
+                while (position < input.end) {
+                    int size = HEADER + input.buffer.getInt(position);
+                    long location = location(input.slot, position);
+                    int id = input.buffer.getInt(position + HEADER + 1);
+                    boolean tombstone = input.buffer.get(position + HEADER) == DELETE;
+                    boolean current;
+                    lock.readLock().lock();
+                    try {
+                        current = tombstone || index.get(id) == location;
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                    if (current) {
+                        if (output == null || output.end + size > output.buffer.capacity()) {
+                            if (output != null) {
+                                output.buffer.force();
+                            }
+                            lock.writeLock().lock();
+                            try {
+                                output = newSegment();
+                            } finally {
+                                lock.writeLock().unlock();
+                            }
+                            outputs.add(output);
+                        }
+                        output.buffer.put(output.end, input.buffer, position, size);
+                        if (!tombstone) {
+                            moves.add(id);
+                            moves.add(location);
+                            moves.add(location(output.slot, output.end));
+                        }
+                        output.end += size;
+                    }
+                    position += size;
+                }
+            }
+            if (output != null) {
+                output.buffer.force();
+            }
+
+            lock.writeLock().lock();
+            try {
+                for (int i = 0; i < moves.size; i += 3) {
+                    int id = (int) moves.values[i];
+                    if (index.get(id) == moves.values[i + 1]) {
+                        index.put(id, moves.values[i + 2]);
+                    }
+                }
+                for (Segment input : inputs) {
+                    totalBytes -= input.end;
+                    segments[input.slot] = null;
+                }
+                for (Segment copy : outputs) {
+                    totalBytes += copy.end;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            // Readers still holding a location keep the mapping alive after the file is gone
+            for (Segment input : inputs) {
+                Files.deleteIfExists(input.file);
+            }
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    /**
+     * Copy of the index in ID order, read without the lock
+     */
+    private final class Snapshot {
+        final int size;
+        final int[] ids;
+        final long[] locations;
+        final Segment[] segments;
+
+        Snapshot(int size, int[] ids, long[] locations, Segment[] segments) {
+            this.size = size;
+            this.ids = ids;
+            this.locations = locations;
+            this.segments = segments;
+        }
+
+        Product product(int i) {
+            long location = locations[i];
+            return decode(segments[(int) (location >>> 32)].buffer, (int) location);
+        }
+    }
+
+    private Snapshot snapshot() throws SQLException {
+        int[] ids;
+        long[] locations;
+        Segment[] current;
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            int size = index.size();
+            ids = new int[size];
+            locations = new long[size];
+            int[] count = { 0 };
+            index.forEach((id, location) -> {
+                ids[count[0]] = id;
+                locations[count[0]++] = location;
+            });
+            current = segments.clone();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Sort by ID: (id << 32 | position) sorts as the ID does
+        long[] order = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            order[i] = ((long) ids[i] << 32) | i;
+        }
+        Arrays.sort(order);
+        int[] sortedIds = new int[ids.length];
+        long[] sortedLocations = new long[ids.length];
+        for (int i = 0; i < order.length; i++) {
+            int from = (int) order[i];
+            sortedIds[i] = ids[from];
+            sortedLocations[i] = locations[from];
+        }
+        return new Snapshot(ids.length, sortedIds, sortedLocations, current);
+    }
+
+    /**
+     * Append one encoded record to the active segment, opening a new one if
+     * it does not fit; call with the write lock held
+     *
+     * @return the record's location
+     */
+    private long append(byte[] record) throws SQLException {
+        if (record.length > segmentBytes) {
+            throw new SQLException("Product record of " + record.length + " bytes exceeds ims.store.segmentBytes");
+        }
+        try {
+            if (active.end + record.length > active.buffer.capacity()) {
+                seal();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new SQLException("Cannot open a new segment in " + directory, e);
+        }
+        long location = location(active.slot, active.end);
+        active.buffer.put(active.end, record);
+        active.end += record.length;
+        totalBytes += record.length;
+        appended++;
+        return location;
+    }
+
+    /**
+     * Point the index at a product's new record; call with the write lock held
+     */
+    private void replace(int id, long oldLocation, long newLocation) {
+        index.put(id, newLocation);
+        liveBytes += recordSize(newLocation) - recordSize(oldLocation);
+    }
+
+    /**
+     * Force the active segment and start a new one; call with the write lock held
+     */
+    private void seal() throws IOException {
+        active.buffer.force();
+        durable = appended;
+        active = newSegment();
+    }
+
+    /**
+     * Return once the given record is on disk
+     */
+    private void sync(long record) throws SQLException {
+        if (!sync || durable >= record) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (durable >= record) {
+                return;
+            }
+            long target;
+            Segment current;
+            lock.readLock().lock();
+            try {
+                target = appended;
+                current = active;
+            } finally {
+                lock.readLock().unlock();
+            }
+            try {
+                current.buffer.force();
+            } catch (UncheckedIOException e) {
+                throw new SQLException("Cannot write to " + current.file, e);
+            }
+            durable = Math.max(durable, target);
+        }
+    }
+
+    private Segment newSegment() throws IOException {
+        lastSegmentNumber++;
+        Path file = directory.resolve(String.format("%s%012d%s", PREFIX, lastSegmentNumber, SUFFIX));
+        return map(file, segmentBytes);
+    }
+
+    private Segment map(Path file, int size) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // The mapping outlives the channel
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        if (slots == segments.length) {
+            segments = Arrays.copyOf(segments, slots * 2);
+        }
+        Segment segment = new Segment(file, slots, buffer);
+        segments[slots++] = segment;
+        return segment;
+    }
+
+    private void checkOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("The product store is closed");
+        }
+    }
+
+    private static byte[] encode(byte type, int id, Product product) {
+        return encode(type, id, product, product.getVersion());
+    }
+
+    private static byte[] encode(byte type, int id, Product product, long version) {
+        byte[][] text = type == PUT
+                ? new byte[][] { utf8(product.getProducts()), utf8(product.getCategory()),
+                        utf8(product.getName()), utf8(product.getBrand()) }
+                : new byte[0][];
+        int length = KEY_BYTES + (type == PUT ? 8 : 0);
+        for (byte[] value : text) {
+            length += 4 + (value == null ? 0 : value.length);
+        }
+        ByteBuffer record = ByteBuffer.allocate(HEADER + length);
+        record.putInt(length).putInt(0).put(type).putInt(id).putLong(version);
+        if (type == PUT) {
+            record.putInt(product.getCost()).putInt(product.getQuantity());
+            for (byte[] value : text) {
+                record.putInt(value == null ? -1 : value.length);
+                if (value != null) {
+                    record.put(value);
+                }
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER, length);
+        record.putInt(4, (int) crc.getValue());
+        return record.array();
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Product decode(long location) {
+        return decode(segments[(int) (location >>> 32)].buffer, (int) location);
+    }
+
+    private static Product decode(ByteBuffer buffer, int position) {
+        int at = position + HEADER + 1;
+        int id = buffer.getInt(at);
+        long version = buffer.getLong(at + 4);
+        int cost = buffer.getInt(at + 12);
+        int quantity = buffer.getInt(at + 16);
+        at += 20;
+        String[] text = new String[4];
+        for (int i = 0; i < text.length; i++) {
+            int length = buffer.getInt(at);
+            at += 4;
+            if (length >= 0) {
+                byte[] bytes = new byte[length];
+                buffer.get(at, bytes);
+                text[i] = new String(bytes, StandardCharsets.UTF_8);
+                at += length;
+            }
+        }
+        Product product = new Product(Integer.toString(id), text[0], text[1], text[2], text[3], cost, quantity);
+        product.setVersion(version);
+        return product;
+    }
+
+    private byte type(long location) {
+        return segments[(int) (location >>> 32)].buffer.get((int) location + HEADER);
+    }
+
+    private long version(long location) {
+        return segments[(int) (location >>> 32)].buffer.getLong((int) location + HEADER + 5);
+    }
+
+    private int recordSize(long location) {
+        return HEADER + segments[(int) (location >>> 32)].buffer.getInt((int) location);
+    }
+
+    private static long location(int slot, int position) {
+        return ((long) slot << 32) | position;
+    }
+
+    /**
+     * @return the numeric ID, or -1 if the string cannot be a product ID
+     */
+    private static int parseId(String id) {
+        try {
+            return Integer.parseInt(id);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Growable array of longs
+     */
+    private static final class LongList {
+        long[] values = new long[1024];
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * Open-addressing hash map from positive int ID to record location,
+     * without boxing either
+     */
+    static final class IdIndex {
+        interface Entry {
+            void accept(int id, long location);
+        }
+
+        private int[] keys = new int[1024]; // 0 marks an empty slot
+        private long[] values = new long[1024];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        long get(int id) {
+            int mask = keys.length - 1;
+            for (int i = slot(id, mask); keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == id) {
+                    return values[i];
+                }
+            }
+            return MISSING;
+        }
+
+        void put(int id, long location) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int i = slot(id, mask);
+            while (keys[i] != 0 && keys[i] != id) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == 0) {
+                keys[i] = id;
+                size++;
+            }
+            values[i] = location;
+        }
+
+        void remove(int id) {
+            int mask = keys.length - 1;
+            int i = slot(id, mask);
+            while (keys[i] != id) {
+                if (keys[i] == 0) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = 0;
+            size--;
+            // Shift later entries of the probe run back into the gap
+            for (int j = (i + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+                int home = slot(keys[j], mask);
+                boolean reachable = i <= j ? (home > i && home <= j) : (home > i || home <= j);
+                if (!reachable) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    keys[j] = 0;
+                    i = j;
+                }
+            }
+        }
+
+        void forEach(Entry action) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    action.accept(keys[i], values[i]);
+                }
+            }
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new long[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int slot(int id, int mask) {
+            int h = id * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+    }
+}
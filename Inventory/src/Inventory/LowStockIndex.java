@@ -0,0 +1,201 @@
+package Inventory.src.Inventory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-memory set of products whose quantity is below the low-stock threshold.
+ *
+ * Loaded once from the product store at startup and then kept current
+ * from committed writes, so low-stock queries never hit the store. Subscribers are told when a product enters or
+ * leaves the set, or changes while inside it.
+ */
+public class LowStockIndex implements ProductChangeListener {
+    private static final LowStockIndex SHARED = new LowStockIndex(InventoryConfig.getInt("lowStock.threshold", 5));
+
+    /**
+     * Receives low-stock transitions
+     */
+    public interface Subscriber {
+        /**
+         * @param type "enter", "update" or "exit"
+         * @param product the product after the change; for deletions its last known state
+         */
+        void lowStockChanged(String type, Product product);
+    }
+
+    private final int threshold;
+    private final Map<String, Product> lowStock = new ConcurrentHashMap<>();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    // Rows being read outside the lock by quantityChanged, guarded by this
+    private final Map<String, Lookup> lookups = new HashMap<>();
+
+    public LowStockIndex(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public static LowStockIndex shared() {
+        return SHARED;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * Current low-stock products ordered by ID
+     */
+    public List<Product> snapshot() {
+        List<Product> products = new ArrayList<>(lowStock.values());
+        products.sort(Comparator.comparing(Product::getId, LowStockIndex::compareIds));
+        return products;
+    }
+
+    /**
+     * Replace the contents with what is in the store, notifying
+     * subscribers of any difference
+     */
+    public synchronized void load() throws SQLException {
+        Map<String, Product> loaded = new HashMap<>();
+        ProductRepository.shared().forEach(product -> {
+            if (product.getQuantity() < threshold) {
+                loaded.put(product.getId(), product);
+            }
+        }, ProductRepository.LATEST);
+        for (String id : new ArrayList<>(lowStock.keySet())) {
+            if (!loaded.containsKey(id)) {
+                productDeleted(id);
+            }
+        }
+        for (Product product : loaded.values()) {
+            productSaved(product);
+        }
+    }
+
+    @Override
+    public synchronized void productSaved(Product product) {
+        seen(product.getId(), product.getVersion());
+        Product indexed = lowStock.get(product.getId());
+        if (indexed != null && indexed.getVersion() > product.getVersion()) {
+            return; // a newer write was already applied
+        }
+        if (product.getQuantity() < threshold) {
+            Product previous = lowStock.put(product.getId(), product);
+            if (previous == null) {
+                publish("enter", product);
+            } else if (previous.getQuantity() != product.getQuantity()) {
+                publish("update", product);
+            }
+        } else if (lowStock.remove(product.getId()) != null) {
+            publish("exit", product);
+        }
+    }
+
+    @Override
+    public void quantityChanged(String productId, int quantity, long version) {
+        Lookup lookup;
+        synchronized (this) {
+            Product indexed = lowStock.get(productId);
+            if (indexed != null) {
+                Product adjusted = new Product(productId, indexed.getProducts(), indexed.getCategory(),
+                        indexed.getName(), indexed.getBrand(), indexed.getCost(), quantity);
+                adjusted.setVersion(version);
+                productSaved(adjusted);
+                return;
+            }
+            seen(productId, version);
+            if (quantity >= threshold) {
+                return;
+            }
+            lookup = lookups.computeIfAbsent(productId, id -> new Lookup());
+            lookup.readers++;
+            lookup.newest = Math.max(lookup.newest, version);
+        }
+
+        // Entering the set: only now is the rest of the row needed. It is read
+        // outside the lock so a slow query does not hold up every other write
+        Product product = null;
+        try {
+            product = ProductRepository.shared().find(productId, ProductRepository.LATEST);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        synchronized (this) {
+            if (--lookup.readers == 0) {
+                lookups.remove(productId);
+            }
+            // A change seen meanwhile is newer than the row read; its own event
+            // already put the product where it belongs
+            if (product != null && product.getVersion() >= lookup.newest) {
+                productSaved(product);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void productDeleted(String productId) {
+        seen(productId, Long.MAX_VALUE);
+        Product removed = lowStock.remove(productId);
+        if (removed != null) {
+            publish("exit", removed);
+        }
+    }
+
+    @Override
+    public void productsReloaded() {
+        try {
+            load();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Record a change of a product whose row is being read by quantityChanged
+     */
+    private void seen(String productId, long version) {
+        Lookup lookup = lookups.get(productId);
+        if (lookup != null) {
+            lookup.newest = Math.max(lookup.newest, version);
+        }
+    }
+
+    private void publish(String type, Product product) {
+        for (Subscriber subscriber : subscribers) {
+            try {
+                subscriber.lowStockChanged(type, product);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static int compareIds(String a, String b) {
+        if (a.length() != b.length()) {
+            return Integer.compare(a.length(), b.length());
+        }
+        return a.compareTo(b);
+    }
+
+    /**
+     * The newest version seen for a product while its row is being read
+     */
+    private static final class Lookup {
+        long newest;
+        int readers;
+    }
+}
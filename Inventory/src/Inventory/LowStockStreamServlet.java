@@ -0,0 +1,209 @@
+package Inventory.src.Inventory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Server-Sent Events stream of low-stock changes.
+ *
+ * GET /products/low-stock/stream first sends a "snapshot" event with every
+ * product currently below the threshold, then "enter", "update" and "exit"
+ * events as writes move products in and out of the {@link LowStockIndex}.
+ * A comment line is sent every 25 seconds to keep proxies from closing the
+ * connection and to notice clients that went away.
+ *
+ * Events are queued per client and written with non-blocking output, so a
+ * client that stops reading never holds up the others; one whose queue
+ * grows past ims.sse.maxQueuedBytes is disconnected, and its EventSource
+ * reconnects and starts again from a snapshot.
+ */
+@WebServlet(urlPatterns = "/products/low-stock/stream", asyncSupported = true)
+public class LowStockStreamServlet extends HttpServlet implements LowStockIndex.Subscriber {
+    private static final long serialVersionUID = 1L;
+    private static final long HEARTBEAT_SECONDS = 25;
+    private static final int MAX_QUEUED_BYTES = InventoryConfig.getInt("sse.maxQueuedBytes", 1024 * 1024);
+
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    // Events are queued from one thread, so every client gets them in the same order
+    private transient ScheduledExecutorService sender;
+
+    @Override
+    public void init() throws ServletException {
+        sender = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ims-low-stock-sse");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sender.scheduleAtFixedRate(() -> broadcast(": heartbeat\n\n"), HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+        LowStockIndex.shared().subscribe(this);
+    }
+
+    @Override
+    public void destroy() {
+        LowStockIndex.shared().unsubscribe(this);
+        sender.shutdownNow();
+        for (Client client : clients) {
+            client.close();
+        }
+        clients.clear();
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("X-Accel-Buffering", "no");
+
+        AsyncContext context = request.startAsync();
+        context.setTimeout(0);
+        Client client = new Client(context, response.getOutputStream());
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                clients.remove(client);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                client.close();
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                client.close();
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        response.getOutputStream().setWriteListener(client);
+
+        // Built on the sender thread, so every change is either in the
+        // snapshot or in an event queued after it
+        sender.execute(() -> {
+            StringBuilder snapshot = new StringBuilder("retry: 5000\nevent: snapshot\ndata: ");
+            ProductJsonCodec.writeArray(snapshot, LowStockIndex.shared().snapshot());
+            snapshot.append("\n\n");
+            if (client.send(snapshot.toString())) {
+                clients.add(client);
+            }
+        });
+    }
+
+    @Override
+    public void lowStockChanged(String type, Product product) {
+        StringBuilder event = new StringBuilder(256).append("event: ").append(type).append("\ndata: ");
+        ProductJsonCodec.write(event, product);
+        event.append("\n\n");
+        broadcast(event.toString());
+    }
+
+    private void broadcast(String message) {
+        sender.execute(() -> {
+            for (Client client : clients) {
+                if (!client.send(message)) {
+                    clients.remove(client);
+                }
+            }
+        });
+    }
+
+    /**
+     * One connected dashboard: the events not yet written to it, drained
+     * whenever the container says its connection can take more
+     */
+    private final class Client implements WriteListener {
+        private final AsyncContext context;
+        private final ServletOutputStream out;
+        private final Deque<byte[]> queue = new ArrayDeque<>();
+        private int queuedBytes;
+        private boolean closed;
+
+        Client(AsyncContext context, ServletOutputStream out) {
+            this.context = context;
+            this.out = out;
+        }
+
+        /**
+         * Queue the message and write what the connection takes without blocking
+         *
+         * @return false if the client is gone or fell too far behind
+         */
+        synchronized boolean send(String message) {
+            if (closed) {
+                return false;
+            }
+            byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+            if (queuedBytes > 0 && queuedBytes + bytes.length > MAX_QUEUED_BYTES) {
+                close();
+                return false;
+            }
+            queue.add(bytes);
+            queuedBytes += bytes.length;
+            drain();
+            return !closed;
+        }
+
+        @Override
+        public synchronized void onWritePossible() {
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            close();
+        }
+
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.clear();
+            queuedBytes = 0;
+            clients.remove(this);
+            try {
+                context.complete();
+            } catch (IllegalStateException e) {
+                // Already completed by the container
+            }
+        }
+
+        private void drain() {
+            try {
+                while (!closed && !queue.isEmpty() && out.isReady()) {
+                    byte[] bytes = queue.poll();
+                    queuedBytes -= bytes.length;
+                    out.write(bytes);
+                }
+                // Push the container's buffer to the socket; if it cannot take it all
+                // now, onWritePossible follows once it can
+                if (!closed && out.isReady()) {
+                    out.flush();
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+            }
+        }
+    }
+}
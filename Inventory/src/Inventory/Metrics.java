@@ -0,0 +1,361 @@
+package Inventory.src.Inventory;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Request and SQL counters and histograms, exported in the Prometheus text
+ * format at /metrics.
+ *
+ * Recording is a map lookup, a few LongAdder increments and
+ * {@link LatencyHistogram#record(long)}, all lock-free, so it stays on in
+ * production. Routes and statements are normalized (ids become {id},
+ * literals and IN lists become ?) and each is capped at ims.metrics.maxSeries
+ * distinct entries; anything beyond that is counted as "other".
+ */
+public final class Metrics {
+    private static final Metrics SHARED = new Metrics(
+            InventoryConfig.getBoolean("metrics.enabled", true),
+            InventoryConfig.getInt("metrics.maxSeries", 500));
+
+    static final String OTHER = "other";
+
+    // Histogram bucket bounds exported as "le": seconds for latencies, bytes for sizes
+    private static final long[] LATENCY_BOUNDS_NANOS = {
+            100_000L, 250_000L, 500_000L, 1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L,
+            50_000_000L, 100_000_000L, 250_000_000L, 500_000_000L, 1_000_000_000L, 2_500_000_000L,
+            5_000_000_000L, 10_000_000_000L };
+    private static final long[] SIZE_BOUNDS_BYTES = {
+            128, 512, 2_048, 8_192, 32_768, 131_072, 524_288, 2_097_152, 8_388_608, 33_554_432 };
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern ROW_LIST = Pattern.compile("(\\(\\?(?:, \\?)*\\))(?:\\s*,\\s*\\(\\?(?:, \\?)*\\))+");
+
+    private final boolean enabled;
+    private final int maxSeries;
+    // Method, then route
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, RequestStats>> requests = new ConcurrentHashMap<>();
+    private final AtomicInteger requestSeries = new AtomicInteger();
+    // Keyed by the SQL as written, so repeated statements skip normalizing
+    private final ConcurrentHashMap<String, StatementStats> statementsBySql = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, StatementStats> statements = new ConcurrentHashMap<>();
+
+    Metrics(boolean enabled, int maxSeries) {
+        this.enabled = enabled;
+        this.maxSeries = maxSeries;
+    }
+
+    public static Metrics shared() {
+        return SHARED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Counters for one route and method, created on first use
+     *
+     * @param route the normalized path, see {@link #route(String, String)}
+     */
+    public RequestStats request(String method, String route) {
+        ConcurrentHashMap<String, RequestStats> routes = requests.get(method);
+        if (routes == null) {
+            routes = requests.computeIfAbsent(method, m -> new ConcurrentHashMap<>());
+        }
+        RequestStats stats = routes.get(route);
+        if (stats != null) {
+            return stats;
+        }
+        if (requestSeries.get() >= maxSeries) {
+            route = OTHER;
+        }
+        return routes.computeIfAbsent(route, r -> {
+            requestSeries.incrementAndGet();
+            return new RequestStats(method, r);
+        });
+    }
+
+    /**
+     * Counters for one SQL statement, created on first use
+     */
+    public StatementStats statement(String sql) {
+        StatementStats stats = statementsBySql.get(sql);
+        if (stats != null) {
+            return stats;
+        }
+        String normalized = normalizeSql(sql);
+        stats = statements.get(normalized);
+        if (stats == null) {
+            if (statements.size() >= maxSeries) {
+                normalized = OTHER;
+            }
+            stats = statements.computeIfAbsent(normalized, StatementStats::new);
+        }
+        // Dynamic SQL (e.g. IN lists) has many spellings of one statement; stop caching them at the cap
+        if (statementsBySql.size() < maxSeries * 4) {
+            statementsBySql.putIfAbsent(sql, stats);
+        }
+        return stats;
+    }
+
+    /**
+     * The request path with numeric segments replaced by {id}, e.g.
+     * /products/{id}/adjust
+     */
+    public static String route(String servletPath, String pathInfo) {
+        if (pathInfo == null) {
+            return servletPath == null || servletPath.isEmpty() ? "/" : servletPath;
+        }
+        // Ids only occur in the path info, so the servlet path is copied as is
+        StringBuilder sb = null;
+        int segmentStart = 1;
+        for (int i = 1; i <= pathInfo.length(); i++) {
+            if (i < pathInfo.length() && pathInfo.charAt(i) != '/') {
+                continue;
+            }
+            if (i > segmentStart && isNumeric(pathInfo, segmentStart, i)) {
+                if (sb == null) {
+                    sb = new StringBuilder(servletPath.length() + pathInfo.length() + 4)
+                            .append(servletPath).append(pathInfo, 0, segmentStart);
+                }
+                sb.append("{id}");
+            } else if (sb != null) {
+                sb.append(pathInfo, segmentStart, i);
+            }
+            if (sb != null && i < pathInfo.length()) {
+                sb.append('/');
+            }
+            segmentStart = i + 1;
+        }
+        return sb == null ? servletPath + pathInfo : sb.toString();
+    }
+
+    private static boolean isNumeric(String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String normalizeSql(String sql) {
+        String normalized = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        normalized = STRING_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = PARAMETER_LIST.matcher(normalized).replaceAll("(?, ...)");
+        normalized = ROW_LIST.matcher(normalized).replaceAll("$1, ...");
+        return normalized;
+    }
+
+    /**
+     * Per route and method: requests by status class, latency and response size
+     */
+    public static final class RequestStats {
+        final String method;
+        final String route;
+        // 1xx..5xx; index 0 counts requests that threw before setting a status
+        final LongAdder[] byStatusClass = new LongAdder[6];
+        final LatencyHistogram latency = new LatencyHistogram();
+        // LatencyHistogram buckets any non-negative value; here bytes
+        final LatencyHistogram responseBytes = new LatencyHistogram();
+
+        RequestStats(String method, String route) {
+            this.method = method;
+            this.route = route;
+            for (int i = 0; i < byStatusClass.length; i++) {
+                byStatusClass[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * @param status the response status, or 0 if the request failed with an exception
+         * @param bytes response body size, or -1 if unknown
+         */
+        public void record(int status, long nanos, long bytes) {
+            int statusClass = status / 100;
+            byStatusClass[statusClass >= 1 && statusClass <= 5 ? statusClass : 0].increment();
+            latency.record(nanos);
+            if (bytes >= 0) {
+                responseBytes.record(bytes);
+            }
+        }
+    }
+
+    /**
+     * Per SQL statement: execution time, time spent fetching rows, rows and errors
+     */
+    public static final class StatementStats {
+        final String sql;
+        final LatencyHistogram execute = new LatencyHistogram();
+        final LatencyHistogram fetch = new LatencyHistogram();
+        final LongAdder rows = new LongAdder();
+        final LongAdder errors = new LongAdder();
+
+        StatementStats(String sql) {
+            this.sql = sql;
+        }
+
+        public void recordExecute(long nanos) {
+            execute.record(nanos);
+        }
+
+        public void recordFetch(long nanos, long rowCount) {
+            fetch.record(nanos);
+            rows.add(rowCount);
+        }
+
+        public void recordError() {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Everything recorded so far, in the Prometheus text exposition format 0.0.4
+     */
+    public String toPrometheus(ConnectionPool pool) {
+        StringBuilder sb = new StringBuilder(16 * 1024);
+        // Sorted, so series keep their order between scrapes
+        Map<String, RequestStats> sortedRequests = new TreeMap<>();
+        requests.forEach((method, routes) -> routes.forEach((route, stats) -> sortedRequests.put(route + ' ' + method, stats)));
+        Map<String, StatementStats> sortedStatements = new TreeMap<>(statements);
+
+        header(sb, "ims_http_requests_total", "counter", "Requests handled, by route, method and status class");
+        for (RequestStats stats : sortedRequests.values()) {
+            for (int i = 0; i < stats.byStatusClass.length; i++) {
+                long count = stats.byStatusClass[i].sum();
+                if (count > 0) {
+                    sb.append("ims_http_requests_total{");
+                    requestLabels(sb, stats);
+                    sb.append(",status=\"").append(i == 0 ? "error" : i + "xx").append("\"} ").append(count).append('\n');
+                }
+            }
+        }
+        header(sb, "ims_http_request_duration_seconds", "histogram", "Time from the request reaching the application to the response being complete");
+        for (RequestStats stats : sortedRequests.values()) {
+            StringBuilder labels = new StringBuilder();
+            requestLabels(labels, stats);
+            histogram(sb, "ims_http_request_duration_seconds", labels, stats.latency, LATENCY_BOUNDS_NANOS, 9);
+        }
+        header(sb, "ims_http_response_size_bytes", "histogram", "Response body size (characters for text responses)");
+        for (RequestStats stats : sortedRequests.values()) {
+            StringBuilder labels = new StringBuilder();
+            requestLabels(labels, stats);
+            histogram(sb, "ims_http_response_size_bytes", labels, stats.responseBytes, SIZE_BOUNDS_BYTES, 0);
+        }
+
+        header(sb, "ims_sql_execute_seconds", "histogram", "Statement execution time, by normalized statement");
+        for (StatementStats stats : sortedStatements.values()) {
+            histogram(sb, "ims_sql_execute_seconds", statementLabel(stats), stats.execute, LATENCY_BOUNDS_NANOS, 9);
+        }
+        header(sb, "ims_sql_fetch_seconds", "histogram", "Time spent reading each result set, by normalized statement");
+        for (StatementStats stats : sortedStatements.values()) {
+            if (stats.fetch.getCount() > 0) {
+                histogram(sb, "ims_sql_fetch_seconds", statementLabel(stats), stats.fetch, LATENCY_BOUNDS_NANOS, 9);
+            }
+        }
+        header(sb, "ims_sql_rows_fetched_total", "counter", "Rows read from result sets, by normalized statement");
+        for (StatementStats stats : sortedStatements.values()) {
+            if (stats.fetch.getCount() > 0) {
+                sb.append("ims_sql_rows_fetched_total{").append(statementLabel(stats)).append("} ")
+                        .append(stats.rows.sum()).append('\n');
+            }
+        }
+        header(sb, "ims_sql_errors_total", "counter", "Statements that failed with an SQLException, by normalized statement");
+        for (StatementStats stats : sortedStatements.values()) {
+            sb.append("ims_sql_errors_total{").append(statementLabel(stats)).append("} ")
+                    .append(stats.errors.sum()).append('\n');
+        }
+
+        if (pool != null) {
+            header(sb, "ims_db_connection_acquire_seconds", "histogram", "Time to borrow a connection from the pool");
+            histogram(sb, "ims_db_connection_acquire_seconds", new StringBuilder(), pool.getAcquireTimeHistogram(),
+                    LATENCY_BOUNDS_NANOS, 9);
+            header(sb, "ims_db_connection_acquire_timeouts_total", "counter", "Borrows that timed out");
+            sb.append("ims_db_connection_acquire_timeouts_total ").append(pool.getAcquireTimeoutCount()).append('\n');
+            header(sb, "ims_db_connections", "gauge", "Pooled connections by state");
+            sb.append("ims_db_connections{state=\"active\"} ").append(pool.getActiveCount()).append('\n');
+            sb.append("ims_db_connections{state=\"idle\"} ").append(pool.getIdleCount()).append('\n');
+            header(sb, "ims_db_connection_waiters", "gauge", "Threads waiting for a connection");
+            sb.append("ims_db_connection_waiters ").append(pool.getWaiterCount()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void requestLabels(StringBuilder sb, RequestStats stats) {
+        sb.append("route=");
+        labelValue(sb, stats.route);
+        sb.append(",method=");
+        labelValue(sb, stats.method);
+    }
+
+    private static StringBuilder statementLabel(StatementStats stats) {
+        StringBuilder sb = new StringBuilder(stats.sql.length() + 16).append("statement=");
+        labelValue(sb, stats.sql);
+        return sb;
+    }
+
+    private static void labelValue(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                sb.append('\\').append(c);
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Cumulative buckets at the given bounds; each of the histogram's own
+     * buckets is counted under the first bound at or above its upper edge
+     *
+     * @param decimals power of ten the recorded values are divided by, e.g. 9 for nanoseconds to seconds
+     */
+    private static void histogram(StringBuilder sb, String name, CharSequence labels, LatencyHistogram histogram,
+            long[] bounds, int decimals) {
+        String separator = labels.length() == 0 ? "" : ",";
+        long cumulative = 0;
+        int bucket = 0;
+        for (long bound : bounds) {
+            while (bucket < histogram.size() && LatencyHistogram.bucketUpperBound(bucket) <= bound) {
+                cumulative += histogram.getBucketCount(bucket++);
+            }
+            sb.append(name).append("_bucket{").append(labels).append(separator).append("le=\"")
+                    .append(format(bound, decimals)).append("\"} ").append(cumulative).append('\n');
+        }
+        while (bucket < histogram.size()) {
+            cumulative += histogram.getBucketCount(bucket++);
+        }
+        String braces = labels.length() == 0 ? "" : "{" + labels + "}";
+        sb.append(name).append("_bucket{").append(labels).append(separator).append("le=\"+Inf\"} ")
+                .append(cumulative).append('\n');
+        sb.append(name).append("_sum").append(braces).append(' ')
+                .append(format(histogram.getSumNanos(), decimals)).append('\n');
+        // The bucket total rather than getCount(), so _count always equals the +Inf bucket
+        sb.append(name).append("_count").append(braces).append(' ').append(cumulative).append('\n');
+    }
+
+    private static String format(long value, int decimals) {
+        return BigDecimal.valueOf(value, decimals).stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,183 @@
+package Inventory.src.Inventory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Records the count, latency, status and response size of every request
+ * into {@link Metrics}.
+ *
+ * Requests that go async (ProductServlet, the SSE stream) are recorded when
+ * the async context completes, so their latency covers the whole request
+ * and not just the hand-off to the worker thread.
+ */
+@WebFilter(filterName = "MetricsFilter", urlPatterns = "/*", asyncSupported = true)
+public class MetricsFilter implements Filter {
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        Metrics metrics = Metrics.shared();
+        if (!metrics.isEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        long start = System.nanoTime();
+        CountingResponse counting = new CountingResponse((HttpServletResponse) response);
+        boolean failed = true;
+        try {
+            chain.doFilter(request, counting);
+            failed = false;
+        } finally {
+            Metrics.RequestStats stats = metrics.request(httpRequest.getMethod(),
+                    Metrics.route(httpRequest.getServletPath(), httpRequest.getPathInfo()));
+            if (!failed && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        stats.record(counting.getStatus(), System.nanoTime() - start, counting.getBodySize());
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                stats.record(failed ? 0 : counting.getStatus(), System.nanoTime() - start, counting.getBodySize());
+            }
+        }
+    }
+
+    /**
+     * Counts what is written to the body, as characters through the writer
+     * or bytes through the output stream
+     */
+    private static final class CountingResponse extends HttpServletResponseWrapper {
+        private long size;
+        private PrintWriter writer;
+        private ServletOutputStream stream;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        long getBodySize() {
+            return size;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                PrintWriter target = super.getWriter();
+                writer = new PrintWriter(new Writer() {
+                    @Override
+                    public void write(int c) {
+                        size++;
+                        target.write(c);
+                    }
+
+                    @Override
+                    public void write(char[] buffer, int offset, int length) {
+                        size += length;
+                        target.write(buffer, offset, length);
+                    }
+
+                    @Override
+                    public void write(String s, int offset, int length) {
+                        size += length;
+                        target.write(s, offset, length);
+                    }
+
+                    @Override
+                    public Writer append(CharSequence s, int start, int end) {
+                        size += end - start;
+                        target.append(s, start, end);
+                        return this;
+                    }
+
+                    @Override
+                    public void flush() {
+                        target.flush();
+                    }
+
+                    @Override
+                    public void close() {
+                        target.close();
+                    }
+                }) {
+                    @Override
+                    public boolean checkError() {
+                        // The container's writer records a gone client, e.g. for the SSE stream
+                        return super.checkError() || target.checkError();
+                    }
+                };
+            }
+            return writer;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (stream == null) {
+                ServletOutputStream target = super.getOutputStream();
+                stream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        size++;
+                        target.write(b);
+                    }
+
+                    @Override
+                    public void write(byte[] buffer, int offset, int length) throws IOException {
+                        size += length;
+                        target.write(buffer, offset, length);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        target.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        target.close();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return target.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        target.setWriteListener(listener);
+                    }
+                };
+            }
+            return stream;
+        }
+    }
+}
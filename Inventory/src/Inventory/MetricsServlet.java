@@ -0,0 +1,26 @@
+package Inventory.src.Inventory;
+
+import java.io.IOException;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Serves request, SQL and connection pool metrics in the Prometheus text format
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        response.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        response.setHeader("Cache-Control", "no-store");
+        // Asking for the pool would open one; the embedded store has none
+        ConnectionPool pool = ProductRepository.shared().isDatabase() ? DatabaseUtil.getPool() : null;
+        response.getWriter().print(Metrics.shared().toPrometheus(pool));
+    }
+}
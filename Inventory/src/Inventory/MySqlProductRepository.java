@@ -0,0 +1,241 @@
+package Inventory.src.Inventory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Products in the MySQL Product table, through the {@link DatabaseUtil} pools.
+ *
+ * Reads that may miss the caller's latest writes go to a read replica when
+ * one has caught up far enough (see {@link ReplicaRouter}); everything else
+ * uses the primary.
+ */
+public class MySqlProductRepository implements ProductRepository {
+    // Stock adjustments return (version << 32) + quantity through LAST_INSERT_ID
+    private static final long ADJUST_VERSION_SHIFT = 1L << 32;
+
+    private static final String[] COLUMNS = { "Products", "Category", "Name", "Brand", "Cost", "Quantity" };
+
+    @Override
+    public boolean isDatabase() {
+        return true;
+    }
+
+    @Override
+    public void start() {
+        // The pools start on first use
+    }
+
+    @Override
+    public void close() {
+        // DatabaseUtil.shutdown() closes the pools
+    }
+
+    @Override
+    public Product find(String id, long committedBefore) throws SQLException {
+        try (Connection conn = readConnection(committedBefore)) {
+            return readProduct(conn, id);
+        }
+    }
+
+    @Override
+    public Map<String, Product> findAll(Collection<String> ids, long committedBefore) throws SQLException {
+        try (Connection conn = readConnection(committedBefore)) {
+            return DatabaseUtil.readProducts(conn, ids);
+        }
+    }
+
+    /**
+     * Rows are fetched in chunks of ims.db.fetchSize, so memory use does not
+     * grow with the table
+     */
+    @Override
+    public void forEach(Consumer<Product> action, long committedBefore) throws SQLException {
+        try (Connection conn = readConnection(committedBefore);
+             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM Product ORDER BY ID ASC",
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(DatabaseUtil.STREAM_FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(DatabaseUtil.toProduct(rs));
+                }
+            }
+        }
+    }
+
+    @Override
+    public ProductQuery.Page query(ProductQuery query, long committedBefore) throws SQLException {
+        try (Connection conn = readConnection(committedBefore);
+             PreparedStatement stmt = conn.prepareStatement(query.toSql(true))) {
+            query.bind(stmt, true);
+
+            List<Product> items = new ArrayList<>(Math.min(query.getLimit(), 64));
+            String nextCursor = null;
+            try (ResultSet rs = stmt.executeQuery()) {
+                String lastCursor = null;
+                while (rs.next()) {
+                    if (items.size() == query.getLimit()) {
+                        // One row past the page: there is more to fetch
+                        nextCursor = lastCursor;
+                        break;
+                    }
+                    items.add(DatabaseUtil.toProduct(rs));
+                    if (items.size() == query.getLimit()) {
+                        lastCursor = query.cursorAfter(rs);
+                    }
+                }
+            }
+            return new ProductQuery.Page(items, nextCursor);
+        }
+    }
+
+    @Override
+    public Product insert(Product product) throws SQLException {
+        // MySQL generates the ID
+        String sql = "INSERT INTO Product (Products, Category, Name, Brand, Cost, Quantity) VALUES (?, ?, ?, ?, ?, ?)";
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, product.getProducts());
+            stmt.setString(2, product.getCategory());
+            stmt.setString(3, product.getName());
+            stmt.setString(4, product.getBrand());
+            stmt.setInt(5, product.getCost());
+            stmt.setInt(6, product.getQuantity());
+
+            if (stmt.executeUpdate() == 0) {
+                throw new SQLException("Failed to insert product");
+            }
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    product.setId(generatedKeys.getString(1));
+                }
+            }
+            product.setVersion(0);
+            return product;
+        }
+    }
+
+    @Override
+    public Product update(String id, ProductJsonCodec.Fields fields) throws SQLException {
+        Product changes = fields.getProduct();
+        // Every update moves the row to a new version
+        StringBuilder sql = new StringBuilder("UPDATE Product SET ");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (fields.has(1 << i)) {
+                sql.append(COLUMNS[i]).append(" = ?, ");
+            }
+        }
+        sql.append("Version = Version + 1 WHERE ID = ?");
+
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                int paramIndex = 1;
+                if (fields.has(ProductJsonCodec.PRODUCTS)) {
+                    stmt.setString(paramIndex++, changes.getProducts());
+                }
+                if (fields.has(ProductJsonCodec.CATEGORY)) {
+                    stmt.setString(paramIndex++, changes.getCategory());
+                }
+                if (fields.has(ProductJsonCodec.NAME)) {
+                    stmt.setString(paramIndex++, changes.getName());
+                }
+                if (fields.has(ProductJsonCodec.BRAND)) {
+                    stmt.setString(paramIndex++, changes.getBrand());
+                }
+                if (fields.has(ProductJsonCodec.COST)) {
+                    stmt.setInt(paramIndex++, changes.getCost());
+                }
+                if (fields.has(ProductJsonCodec.QUANTITY)) {
+                    stmt.setInt(paramIndex++, changes.getQuantity());
+                }
+                stmt.setString(paramIndex, id);
+
+                if (stmt.executeUpdate() == 0) {
+                    return null;
+                }
+            }
+            // Read the updated row back on the same connection
+            return readProduct(conn, id);
+        }
+    }
+
+    @Override
+    public boolean delete(String id) throws SQLException {
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("DELETE FROM Product WHERE ID = ?")) {
+            stmt.setString(1, id);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * One conditional UPDATE, so concurrent adjustments never overwrite each
+     * other. The new quantity and version are packed into
+     * LAST_INSERT_ID(expr), which MySQL returns with the update result, so no
+     * second query is needed. MySQL evaluates SET assignments left to right,
+     * so Quantity in the Version expression is already the adjusted value.
+     */
+    @Override
+    public Adjustment adjust(String id, int delta, Long expectedVersion) throws SQLException {
+        String sql = "UPDATE Product SET Quantity = Quantity + ?,"
+                + " Version = FLOOR(LAST_INSERT_ID((Version + 1) * " + ADJUST_VERSION_SHIFT + " + Quantity) / "
+                + ADJUST_VERSION_SHIFT + ")"
+                + " WHERE ID = ? AND Quantity + ? >= 0" + (expectedVersion != null ? " AND Version = ?" : "");
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                stmt.setInt(1, delta);
+                stmt.setString(2, id);
+                stmt.setInt(3, delta);
+                if (expectedVersion != null) {
+                    stmt.setLong(4, expectedVersion);
+                }
+                if (stmt.executeUpdate() == 0) {
+                    // Not applied: find out why (this path is rare)
+                    Product current = readProduct(conn, id);
+                    if (current == null) {
+                        return new Adjustment(Adjustment.Outcome.NOT_FOUND, 0, 0);
+                    }
+                    Adjustment.Outcome outcome = expectedVersion != null && current.getVersion() != expectedVersion
+                            ? Adjustment.Outcome.MODIFIED : Adjustment.Outcome.INSUFFICIENT_STOCK;
+                    return new Adjustment(outcome, current.getQuantity(), current.getVersion());
+                }
+                long packed;
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    packed = keys.next() ? keys.getLong(1) : 0;
+                }
+                if (packed >= ADJUST_VERSION_SHIFT) {
+                    return new Adjustment(Adjustment.Outcome.APPLIED, (int) (packed % ADJUST_VERSION_SHIFT),
+                            packed / ADJUST_VERSION_SHIFT);
+                }
+                // Driver did not report LAST_INSERT_ID (not MySQL): read it back
+                Product adjusted = readProduct(conn, id);
+                return new Adjustment(Adjustment.Outcome.APPLIED, adjusted.getQuantity(), adjusted.getVersion());
+            }
+        }
+    }
+
+    private static Connection readConnection(long committedBefore) throws SQLException {
+        return committedBefore == LATEST ? DatabaseUtil.getConnection() : DatabaseUtil.getReadConnection(committedBefore);
+    }
+
+    /**
+     * Read one product on the caller's connection, so a caller never holds
+     * two pooled connections at once
+     */
+    private static Product readProduct(Connection conn, String id) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT * FROM Product WHERE ID = ?")) {
+            stmt.setString(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? DatabaseUtil.toProduct(rs) : null;
+            }
+        }
+    }
+}
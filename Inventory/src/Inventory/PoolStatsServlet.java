@@ -0,0 +1,37 @@
+package Inventory.src.Inventory;
+
+import java.io.IOException;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Reports connection pool counters (active, idle, waiters, acquire times),
+ * with read replicas configured each replica's lag and pool as "replicas",
+ * and the admission limit and shed requests as "admission". With
+ * ims.store=log there is no pool and only "admission" is reported.
+ */
+@WebServlet("/pool-stats")
+public class PoolStatsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        response.setContentType("application/json");
+        response.setHeader("Cache-Control", "no-store");
+        String admission = "\"admission\": " + AdmissionLimiter.shared().statsJson() + "}";
+        if (!ProductRepository.shared().isDatabase()) {
+            response.getWriter().print("{" + admission);
+            return;
+        }
+        String stats = DatabaseUtil.getPool().statsJson();
+        ReplicaRouter replicas = DatabaseUtil.getReplicas();
+        if (replicas != null) {
+            stats = stats.substring(0, stats.length() - 1) + ", \"replicas\": " + replicas.statsJson() + "}";
+        }
+        response.getWriter().print(stats.substring(0, stats.length() - 1) + ", " + admission);
+    }
+}
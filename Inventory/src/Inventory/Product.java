@@ -10,6 +10,8 @@ public class Product {
     private String brand;
     private int cost;
     private int quantity;
+    // Incremented by every update; used for optimistic concurrency (If-Match)
+    private long version;
     
     // Default constructor
     public Product() {
@@ -83,9 +85,17 @@ public class Product {
         this.quantity = quantity;
     }
     
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
     @Override
     public String toString() {
         return "Product [id=" + id + ", products=" + products + ", category=" + category + ", name=" + name + ", brand="
-                + brand + ", cost=" + cost + ", quantity=" + quantity + "]";
+                + brand + ", cost=" + cost + ", quantity=" + quantity + ", version=" + version + "]";
     }
 }
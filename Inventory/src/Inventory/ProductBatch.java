@@ -0,0 +1,385 @@
+package Inventory.src.Inventory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Applies a list of product updates and deletes in one transaction, for
+ * POST /products/batch.
+ *
+ * The body has one operation per line (NDJSON):
+ * {"op": "update", "id": "12", "quantity": 40} with any of the product
+ * fields, or {"op": "delete", "id": "13"}. Either may carry "version", which
+ * makes it fail with 412 if the product has moved past that version, like
+ * If-Match on a single request.
+ *
+ * Consecutive operations with the same statement (a stock take sets the
+ * quantity on every line) are sent as one JDBC batch, and every product
+ * touched is read back with one IN query. Each operation gets its own
+ * result. By default the operations that succeeded are committed and the
+ * others reported; in atomic mode any failure rolls back the whole batch.
+ */
+public class ProductBatch {
+    static final int MAX_OPERATIONS = InventoryConfig.getInt("batch.maxOperations", 5000);
+
+    private static final String[] COLUMNS = { "Products", "Category", "Name", "Brand", "Cost", "Quantity" };
+
+    private final boolean atomic;
+    private final List<Operation> operations = new ArrayList<>();
+    private boolean committed;
+
+    public ProductBatch(boolean atomic) {
+        this.atomic = atomic;
+    }
+
+    /**
+     * Read and apply every operation in the body
+     *
+     * @return the JSON summary: whether the batch was committed, counts, and
+     *         a result per operation in body order
+     * @throws IllegalArgumentException if the body holds more than
+     *         ims.batch.maxOperations operations
+     */
+    public String apply(BufferedReader reader) throws IOException, SQLException {
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            if (operations.size() == MAX_OPERATIONS) {
+                throw new IllegalArgumentException("A batch holds at most " + MAX_OPERATIONS + " operations");
+            }
+            operations.add(Operation.parse(line, lineNumber));
+        }
+
+        if (!atomic || failedCount() == 0) {
+            execute();
+        }
+        if (committed) {
+            publish();
+        } else {
+            for (Operation op : operations) {
+                if (op.status == HttpServletResponse.SC_OK) {
+                    op.fail(HttpServletResponse.SC_CONFLICT, "Rolled back: another operation in the batch failed");
+                }
+            }
+        }
+        return summary();
+    }
+
+    /**
+     * False if the batch was atomic and rolled back
+     */
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    private void execute() throws SQLException {
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                // Consecutive operations with the same statement run as one batch
+                List<Operation> group = new ArrayList<>();
+                for (Operation op : operations) {
+                    if (op.status != 0) {
+                        continue;
+                    }
+                    if (!group.isEmpty() && !group.get(0).sql.equals(op.sql)) {
+                        run(conn, group);
+                        group.clear();
+                    }
+                    group.add(op);
+                }
+                run(conn, group);
+                readBack(conn);
+
+                if (atomic && failedCount() > 0) {
+                    conn.rollback();
+                } else {
+                    conn.commit();
+                    committed = true;
+                }
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private void run(Connection conn, List<Operation> group) throws SQLException {
+        if (group.isEmpty()) {
+            return;
+        }
+        Savepoint beforeGroup = conn.setSavepoint();
+        try (PreparedStatement stmt = conn.prepareStatement(group.get(0).sql)) {
+            try {
+                for (Operation op : group) {
+                    op.bind(stmt);
+                    stmt.addBatch();
+                }
+                int[] counts = stmt.executeBatch();
+                for (int i = 0; i < group.size(); i++) {
+                    group.get(i).matched(counts[i]);
+                }
+            } catch (BatchUpdateException e) {
+                // Undo what the batch did and find the failing operations one at a time
+                stmt.clearBatch();
+                conn.rollback(beforeGroup);
+                for (Operation op : group) {
+                    try {
+                        op.bind(stmt);
+                        op.matched(stmt.executeUpdate());
+                    } catch (SQLException rejected) {
+                        op.fail(HttpServletResponse.SC_BAD_REQUEST, rejected.getMessage());
+                    }
+                }
+            }
+        } finally {
+            conn.releaseSavepoint(beforeGroup);
+        }
+    }
+
+    /**
+     * Read every product the batch touched, to return it and to tell a
+     * missing product (404) from a version mismatch (412)
+     */
+    private void readBack(Connection conn) throws SQLException {
+        Set<String> ids = new LinkedHashSet<>();
+        for (Operation op : operations) {
+            if (op.sql != null && op.status != HttpServletResponse.SC_BAD_REQUEST) {
+                ids.add(op.id);
+            }
+        }
+        Map<String, Product> products = DatabaseUtil.readProducts(conn, ids);
+        for (Operation op : operations) {
+            if (op.sql == null || op.status == HttpServletResponse.SC_BAD_REQUEST) {
+                continue;
+            }
+            Product product = products.get(op.id);
+            if (op.status == HttpServletResponse.SC_OK) {
+                op.result = op.delete ? null : product;
+            } else if (product == null) {
+                op.fail(HttpServletResponse.SC_NOT_FOUND, "Product not found");
+            } else {
+                op.fail(HttpServletResponse.SC_PRECONDITION_FAILED, "Product is at version " + product.getVersion());
+            }
+        }
+    }
+
+    /**
+     * Tell the in-memory indexes about the final state of every product
+     * the committed batch changed
+     */
+    private void publish() {
+        Map<String, Product> changed = new LinkedHashMap<>();
+        for (Operation op : operations) {
+            if (op.status == HttpServletResponse.SC_OK) {
+                changed.put(op.id, op.result);
+            }
+        }
+        for (Map.Entry<String, Product> entry : changed.entrySet()) {
+            if (entry.getValue() == null) {
+                ProductEvents.fireDeleted(entry.getKey());
+            } else {
+                ProductEvents.fireSaved(entry.getValue());
+            }
+        }
+    }
+
+    private int failedCount() {
+        int failed = 0;
+        for (Operation op : operations) {
+            if (op.status != 0 && op.status != HttpServletResponse.SC_OK) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    private String summary() {
+        int updated = 0;
+        int deleted = 0;
+        StringBuilder results = new StringBuilder(64 + 256 * operations.size());
+        for (Operation op : operations) {
+            if (op.status == HttpServletResponse.SC_OK) {
+                if (op.delete) {
+                    deleted++;
+                } else {
+                    updated++;
+                }
+            }
+            if (results.length() > 0) {
+                results.append(',');
+            }
+            results.append("{\"line\":").append(op.line).append(",\"id\":");
+            ProductJsonCodec.writeString(results, op.id);
+            results.append(",\"op\":\"").append(op.delete ? "delete" : "update").append('"');
+            results.append(",\"status\":").append(op.status);
+            if (op.error != null) {
+                results.append(",\"error\":");
+                ProductJsonCodec.writeString(results, op.error);
+            } else if (op.result != null) {
+                results.append(",\"product\":");
+                ProductJsonCodec.write(results, op.result);
+            }
+            results.append('}');
+        }
+        return "{\"committed\":" + committed
+                + ",\"updated\":" + updated
+                + ",\"deleted\":" + deleted
+                + ",\"failed\":" + failedCount()
+                + ",\"results\":[" + results + "]}";
+    }
+
+    /**
+     * One line of the body and what became of it
+     */
+    private static final class Operation {
+        final int line;
+        String id;
+        boolean delete;
+        Long expectedVersion;
+        ProductJsonCodec.Fields fields;
+        // The statement to run; null if the line was rejected before running
+        String sql;
+        // 0 until known; 200 once applied
+        int status;
+        String error;
+        Product result;
+
+        private Operation(int line) {
+            this.line = line;
+        }
+
+        static Operation parse(String line, int lineNumber) {
+            Operation op = new Operation(lineNumber);
+            String[] kind = new String[1];
+            try {
+                op.fields = ProductJsonCodec.readProduct(new StringReader(line), (key, value, string) -> {
+                    switch (key) {
+                        case "op":
+                            kind[0] = value;
+                            break;
+                        case "id":
+                            op.id = value;
+                            break;
+                        case "version":
+                            try {
+                                op.expectedVersion = Long.valueOf(string ? "" : String.valueOf(value));
+                            } catch (NumberFormatException e) {
+                                throw new IllegalArgumentException("version must be an integer");
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                });
+            } catch (IllegalArgumentException | IOException e) {
+                op.fail(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+                return op;
+            }
+
+            int fieldCount = Integer.bitCount(fieldMask(op.fields));
+            String id = ProductJsonCodec.canonicalId(op.id);
+            if (id == null) {
+                op.fail(HttpServletResponse.SC_BAD_REQUEST, "id must be a product ID");
+            } else if ("delete".equals(kind[0])) {
+                op.delete = true;
+            } else if (!"update".equals(kind[0])) {
+                op.fail(HttpServletResponse.SC_BAD_REQUEST, "op must be update or delete");
+            } else if (fieldCount == 0) {
+                op.fail(HttpServletResponse.SC_BAD_REQUEST, "No fields to update");
+            } else if (op.fields.getProduct().getCost() < 0 || op.fields.getProduct().getQuantity() < 0) {
+                op.fail(HttpServletResponse.SC_BAD_REQUEST, "cost and quantity must not be negative");
+            }
+            if (op.status == 0) {
+                op.id = id;
+                op.sql = op.buildSql();
+            }
+            return op;
+        }
+
+        private static int fieldMask(ProductJsonCodec.Fields fields) {
+            int mask = 0;
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (fields.has(1 << i)) {
+                    mask |= 1 << i;
+                }
+            }
+            return mask;
+        }
+
+        private String buildSql() {
+            StringBuilder sql = new StringBuilder(delete ? "DELETE FROM Product" : "UPDATE Product SET ");
+            if (!delete) {
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    if (fields.has(1 << i)) {
+                        sql.append(COLUMNS[i]).append(" = ?, ");
+                    }
+                }
+                sql.append("Version = Version + 1");
+            }
+            sql.append(" WHERE ID = ?");
+            if (expectedVersion != null) {
+                sql.append(" AND Version = ?");
+            }
+            return sql.toString();
+        }
+
+        void bind(PreparedStatement stmt) throws SQLException {
+            Product values = fields.getProduct();
+            int index = 1;
+            if (!delete) {
+                String[] text = { values.getProducts(), values.getCategory(), values.getName(), values.getBrand() };
+                for (int i = 0; i < text.length; i++) {
+                    if (fields.has(1 << i)) {
+                        stmt.setString(index++, text[i]);
+                    }
+                }
+                if (fields.has(ProductJsonCodec.COST)) {
+                    stmt.setInt(index++, values.getCost());
+                }
+                if (fields.has(ProductJsonCodec.QUANTITY)) {
+                    stmt.setInt(index++, values.getQuantity());
+                }
+            }
+            stmt.setString(index++, id);
+            if (expectedVersion != null) {
+                stmt.setLong(index, expectedVersion);
+            }
+        }
+
+        /**
+         * Record the update count; no matching row is sorted out by readBack
+         */
+        void matched(int count) {
+            if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                status = HttpServletResponse.SC_OK;
+            }
+        }
+
+        void fail(int status, String error) {
+            this.status = status;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package Inventory.src.Inventory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process read-through cache for serialized product responses.
+ *
+ * Every write through the API bumps a global version. A cached view remembers
+ * the version it was read at and is only stored if no write happened while it
+ * was being read. The full listing is a single entry that is served while the
+ * version is unchanged; single products live in a bounded LRU map and are
+ * dropped when that product is written. Both expire after the TTL, which
+ * bounds staleness for changes made outside the API.
+ *
+ * The listing's ETag is derived from the global version (plus a per-start
+ * epoch so tags from a previous run never match); a single product's ETag is
+ * its row version, the same value If-Match takes on writes. Either lets
+ * If-None-Match be answered without touching the database or re-serializing
+ * anything.
+ */
+public class ProductCache implements ProductChangeListener {
+    private static final ProductCache SHARED = new ProductCache(
+            InventoryConfig.getBoolean("cache.enabled", true),
+            InventoryConfig.getInt("cache.maxEntries", 10000),
+            InventoryConfig.getLong("cache.ttlMs", 60000));
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong();
+    private volatile long lastWriteMillis;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private volatile CachedView listView;
+    private final Map<String, CachedView> byId;
+
+    public ProductCache(boolean enabled, int maxEntries, long ttlMillis) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.byId = new LinkedHashMap<String, CachedView>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedView> eldest) {
+                return size() > ProductCache.this.maxEntries;
+            }
+        };
+    }
+
+    public static ProductCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Current write version; read it before querying and pass it to the put methods
+     */
+    public long currentVersion() {
+        return version.get();
+    }
+
+    /**
+     * How long a cached view may lag behind writes made outside the API
+     */
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    /**
+     * Time of the last write through the API; read it after currentVersion()
+     * so it covers every write that version includes
+     */
+    public long lastWriteMillis() {
+        return lastWriteMillis;
+    }
+
+    /**
+     * Cached full listing, or null if there is none or it is stale
+     */
+    public CachedView getList() {
+        CachedView view = listView;
+        if (view != null && !isFresh(view)) {
+            // Expired by TTL: treat the table as changed so old ETags stop matching
+            expire(view);
+            view = null;
+        }
+        count(view);
+        return view;
+    }
+
+    /**
+     * Remember the serialized listing read at the given version
+     *
+     * @param body the JSON body, or null if it was too large to keep
+     * @return the view, whose ETag should be sent with the response
+     */
+    public CachedView putList(String body, long readVersion) {
+        CachedView view = new CachedView(body, readVersion, listEtag(readVersion), System.currentTimeMillis());
+        if (enabled && readVersion == version.get()) {
+            listView = view;
+        }
+        return view;
+    }
+
+    /**
+     * ETag of the listing read at the given version, for responses that are
+     * streamed before they can be stored
+     */
+    public String listEtag(long readVersion) {
+        return etag("all", readVersion);
+    }
+
+    /**
+     * Cached single product, or null if there is none or it is stale
+     */
+    public CachedView get(String productId) {
+        CachedView view = null;
+        if (enabled) {
+            synchronized (byId) {
+                view = byId.get(productId);
+                if (view != null && isExpired(view)) {
+                    byId.remove(productId);
+                    view = null;
+                }
+            }
+        }
+        count(view);
+        return view;
+    }
+
+    /**
+     * Remember a single product read at the given global version
+     *
+     * @return the view, whose ETag (the product's row version) should be sent with the response
+     */
+    public CachedView put(Product product, String body, long readVersion) {
+        CachedView view = new CachedView(body, readVersion, "\"" + product.getVersion() + "\"",
+                System.currentTimeMillis());
+        if (enabled) {
+            synchronized (byId) {
+                if (readVersion == version.get()) {
+                    byId.put(product.getId(), view);
+                }
+            }
+        }
+        return view;
+    }
+
+    /**
+     * Called after a product was inserted, updated or deleted
+     *
+     * @param productId the changed product, or null if unknown or several changed
+     */
+    public void invalidate(String productId) {
+        synchronized (byId) {
+            lastWriteMillis = System.currentTimeMillis();
+            version.incrementAndGet();
+            listView = null;
+            if (productId == null) {
+                byId.clear();
+            } else {
+                byId.remove(productId);
+            }
+        }
+    }
+
+    @Override
+    public void productSaved(Product product) {
+        invalidate(product.getId());
+    }
+
+    @Override
+    public void quantityChanged(String productId, int quantity, long version) {
+        invalidate(productId);
+    }
+
+    @Override
+    public void productDeleted(String productId) {
+        invalidate(productId);
+    }
+
+    @Override
+    public void productsReloaded() {
+        invalidate(null);
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * True if an If-None-Match header value matches the given ETag
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isFresh(CachedView view) {
+        return view.version == version.get() && !isExpired(view);
+    }
+
+    private boolean isExpired(CachedView view) {
+        return System.currentTimeMillis() - view.createdAt >= ttlMillis;
+    }
+
+    private void expire(CachedView view) {
+        synchronized (byId) {
+            if (listView == view) {
+                version.incrementAndGet();
+                listView = null;
+            }
+        }
+    }
+
+    private void count(CachedView view) {
+        if (view != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+    }
+
+    private String etag(String key, long readVersion) {
+        return "\"" + epoch + "-" + key + "-" + readVersion + "\"";
+    }
+
+    /**
+     * A serialized response body together with the version it was read at
+     */
+    public static final class CachedView {
+        private final String body;
+        private final long version;
+        private final String etag;
+        private final long createdAt;
+
+        CachedView(String body, long version, String etag, long createdAt) {
+            this.body = body;
+            this.version = version;
+            this.etag = etag;
+            this.createdAt = createdAt;
+        }
+
+        /**
+         * The JSON body, or null when only the ETag is being tracked
+         */
+        public String getBody() {
+            return body;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package Inventory.src.Inventory;
+
+/**
+ * Notified after a product write has been committed
+ */
+public interface ProductChangeListener {
+
+    /**
+     * A product was inserted or updated
+     *
+     * @param product the product as stored after the write
+     */
+    void productSaved(Product product);
+
+    /**
+     * Only the quantity of a product changed (a stock adjustment); the rest
+     * of the row was not read
+     *
+     * @param quantity the quantity after the adjustment
+     * @param version the product version after the adjustment
+     */
+    void quantityChanged(String productId, int quantity, long version);
+
+    /**
+     * A product was deleted
+     */
+    void productDeleted(String productId);
+
+    /**
+     * Many products changed at once (e.g. an atomic bulk import) and the
+     * individual rows are not available; rebuild any derived state from the
+     * database
+     */
+    void productsReloaded();
+}
@@ -0,0 +1,199 @@
+package Inventory.src.Inventory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the ProductChange log, which MySQL triggers append to on every
+ * insert, update and delete of a product, for GET /products?since=version.
+ *
+ * Every change gets the next Seq. A client remembers the version of its
+ * last sync and asks for what changed after it: inserted and updated
+ * products come back in full, deleted ones as tombstone IDs, together with
+ * the version to ask from next time.
+ *
+ * A Seq is assigned when the change is made, not when it commits, so a
+ * change can become visible after one with a higher Seq. The returned
+ * version therefore never moves past a change younger than
+ * ims.sync.settleMs, which must exceed the longest write transaction.
+ * Younger changes are still returned, and are returned again by the next
+ * sync; applying a product twice does no harm.
+ *
+ * Every ims.sync.compactIntervalMs the entries superseded by a newer one
+ * for the same product are deleted, leaving about one row per product
+ * (deleted products keep theirs as the tombstone).
+ */
+public class ProductChangeLog {
+    private static final ProductChangeLog SHARED = new ProductChangeLog(
+            InventoryConfig.getLong("sync.settleMs", 5000),
+            InventoryConfig.getInt("sync.maxChanges", 1000),
+            InventoryConfig.getLong("sync.compactIntervalMs", 600000));
+
+    private final long settleMillis;
+    private final int maxChanges;
+    private final long compactIntervalMillis;
+    private ScheduledExecutorService compactor;
+
+    public ProductChangeLog(long settleMillis, int maxChanges, long compactIntervalMillis) {
+        this.settleMillis = settleMillis;
+        this.maxChanges = maxChanges;
+        this.compactIntervalMillis = compactIntervalMillis;
+    }
+
+    public static ProductChangeLog shared() {
+        return SHARED;
+    }
+
+    /**
+     * What changed after a version
+     */
+    public static final class Delta {
+        private final List<Product> items;
+        private final List<String> deleted;
+        private final long version;
+        private final boolean more;
+
+        Delta(List<Product> items, List<String> deleted, long version, boolean more) {
+            this.items = items;
+            this.deleted = deleted;
+            this.version = version;
+            this.more = more;
+        }
+
+        /**
+         * Products inserted or updated, in the order they last changed
+         */
+        public List<Product> getItems() {
+            return items;
+        }
+
+        /**
+         * IDs of deleted products
+         */
+        public List<String> getDeleted() {
+            return deleted;
+        }
+
+        /**
+         * Version to pass as since on the next sync
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * True if more than ims.sync.maxChanges changes were pending; sync
+         * again from getVersion() straight away for the rest. Never set when
+         * the version could not move past unsettled changes, since syncing
+         * again at once would only return the same page
+         */
+        public boolean hasMore() {
+            return more;
+        }
+    }
+
+    /**
+     * Start the periodic compaction
+     */
+    public synchronized void start() {
+        if (compactIntervalMillis > 0 && compactor == null) {
+            compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "ims-change-log-compact");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(this::compactQuietly, compactIntervalMillis,
+                    compactIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void close() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+            compactor = null;
+        }
+    }
+
+    /**
+     * Products changed after the given version; 0 returns every product
+     */
+    public Delta since(long since) throws SQLException {
+        String sql = "SELECT c.Seq, c.ProductID, c.Deleted, c.ChangedAt, CURRENT_TIMESTAMP(3) AS Now, p.* "
+                + "FROM ProductChange c LEFT JOIN Product p ON p.ID = c.ProductID "
+                + "WHERE c.Seq > ? ORDER BY c.Seq LIMIT ?";
+        // Latest state per product in the order of its last change; null for deleted
+        Map<String, Product> changed = new LinkedHashMap<>();
+        long version = since;
+        boolean settled = true;
+        boolean more = false;
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, since);
+            stmt.setInt(2, maxChanges + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                int count = 0;
+                while (rs.next()) {
+                    if (++count > maxChanges) {
+                        more = true;
+                        break;
+                    }
+                    String productId = rs.getString("ProductID");
+                    boolean deleted = rs.getBoolean("Deleted") || rs.getString("ID") == null;
+                    changed.remove(productId);
+                    changed.put(productId, deleted ? null : DatabaseUtil.toProduct(rs));
+
+                    Timestamp changedAt = rs.getTimestamp("ChangedAt");
+                    Timestamp now = rs.getTimestamp("Now");
+                    settled = settled && changedAt.getTime() <= now.getTime() - settleMillis;
+                    if (settled) {
+                        version = rs.getLong("Seq");
+                    }
+                }
+            }
+        }
+
+        List<Product> items = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+        for (Map.Entry<String, Product> entry : changed.entrySet()) {
+            if (entry.getValue() != null) {
+                items.add(entry.getValue());
+            } else if (since > 0) {
+                // A client starting from nothing has nothing to delete
+                deleted.add(entry.getKey());
+            }
+        }
+        return new Delta(items, deleted, version, more && version > since);
+    }
+
+    /**
+     * Delete the entries superseded by a newer one for the same product
+     *
+     * @return the number of entries deleted
+     */
+    public int compact() throws SQLException {
+        try (Connection conn = DatabaseUtil.getConnection();
+             Statement stmt = conn.createStatement()) {
+            return stmt.executeUpdate("DELETE c FROM ProductChange c JOIN ProductChange newer "
+                    + "ON newer.ProductID = c.ProductID AND newer.Seq > c.Seq");
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
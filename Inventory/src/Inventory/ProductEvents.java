@@ -0,0 +1,67 @@
+package Inventory.src.Inventory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Fans out committed product writes to everything that keeps derived state
+ * (response cache, low-stock index, ...).
+ *
+ * Write paths call the fire methods after their transaction commits. A
+ * listener that throws is logged and does not stop the others.
+ */
+public final class ProductEvents {
+    private static final List<ProductChangeListener> LISTENERS =
+            new CopyOnWriteArrayList<>(List.of(ProductCache.shared()));
+
+    private ProductEvents() {
+    }
+
+    public static void addListener(ProductChangeListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(ProductChangeListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    public static void fireSaved(Product product) {
+        for (ProductChangeListener listener : LISTENERS) {
+            try {
+                listener.productSaved(product);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public static void fireQuantityChanged(String productId, int quantity, long version) {
+        for (ProductChangeListener listener : LISTENERS) {
+            try {
+                listener.quantityChanged(productId, quantity, version);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public static void fireDeleted(String productId) {
+        for (ProductChangeListener listener : LISTENERS) {
+            try {
+                listener.productDeleted(productId);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public static void fireReloaded() {
+        for (ProductChangeListener listener : LISTENERS) {
+            try {
+                listener.productsReloaded();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
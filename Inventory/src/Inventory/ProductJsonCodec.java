@@ -0,0 +1,460 @@
+package Inventory.src.Inventory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * JSON encoding and decoding of products, used by every endpoint.
+ *
+ * Products are written field by field straight from a {@link Product} or a
+ * {@link ResultSet} row into a caller-supplied StringBuilder, which
+ * listings reuse for every row, so no intermediate objects are built.
+ * Request bodies are parsed in one pass into a {@link Product}; only flat
+ * objects (string, number, boolean and null values) are accepted.
+ *
+ * Every product has the same shape everywhere:
+ * {"id":"1","products":"...","category":"...","name":"...","brand":"...","cost":90,"quantity":2,"version":0}
+ */
+public final class ProductJsonCodec {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Bits of {@link Fields#has(int)} */
+    public static final int PRODUCTS = 1;
+    public static final int CATEGORY = 1 << 1;
+    public static final int NAME = 1 << 2;
+    public static final int BRAND = 1 << 3;
+    public static final int COST = 1 << 4;
+    public static final int QUANTITY = 1 << 5;
+    public static final int ALL_FIELDS = PRODUCTS | CATEGORY | NAME | BRAND | COST | QUANTITY;
+
+    private ProductJsonCodec() {
+    }
+
+    public static void write(StringBuilder sb, Product product) {
+        sb.append("{\"id\":");
+        writeString(sb, product.getId());
+        sb.append(",\"products\":");
+        writeString(sb, product.getProducts());
+        sb.append(",\"category\":");
+        writeString(sb, product.getCategory());
+        sb.append(",\"name\":");
+        writeString(sb, product.getName());
+        sb.append(",\"brand\":");
+        writeString(sb, product.getBrand());
+        sb.append(",\"cost\":").append(product.getCost());
+        sb.append(",\"quantity\":").append(product.getQuantity());
+        sb.append(",\"version\":").append(product.getVersion());
+        sb.append('}');
+    }
+
+    /**
+     * Write the current row of a Product query
+     */
+    public static void write(StringBuilder sb, ResultSet rs) throws SQLException {
+        sb.append("{\"id\":");
+        writeString(sb, rs.getString("ID"));
+        sb.append(",\"products\":");
+        writeString(sb, rs.getString("Products"));
+        sb.append(",\"category\":");
+        writeString(sb, rs.getString("Category"));
+        sb.append(",\"name\":");
+        writeString(sb, rs.getString("Name"));
+        sb.append(",\"brand\":");
+        writeString(sb, rs.getString("Brand"));
+        sb.append(",\"cost\":").append(rs.getInt("Cost"));
+        sb.append(",\"quantity\":").append(rs.getInt("Quantity"));
+        sb.append(",\"version\":").append(rs.getLong("Version"));
+        sb.append('}');
+    }
+
+    public static void writeArray(StringBuilder sb, List<Product> products) {
+        sb.append('[');
+        for (int i = 0; i < products.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            write(sb, products.get(i));
+        }
+        sb.append(']');
+    }
+
+    public static String toJson(Product product) {
+        StringBuilder sb = new StringBuilder(256);
+        write(sb, product);
+        return sb.toString();
+    }
+
+    /**
+     * Write a quoted, escaped JSON string, or null
+     */
+    public static void writeString(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            // Copy the run of plain characters before this one in one call
+            sb.append(value, start, i);
+            start = i + 1;
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    sb.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+            }
+        }
+        sb.append(value, start, length).append('"');
+    }
+
+    /**
+     * The product ID in text as the store writes it ("05" becomes "5"), so
+     * caches and indexes keyed on the ID string see one key per product
+     *
+     * @return null if text is not a product ID
+     */
+    public static String canonicalId(String text) {
+        if (text == null || !text.matches("\\d{1,10}")) {
+            return null;
+        }
+        try {
+            return Integer.toString(Integer.parseInt(text));
+        } catch (NumberFormatException e) {
+            return null; // beyond the INT column
+        }
+    }
+
+    /**
+     * {"error": message}
+     */
+    public static String error(String message) {
+        StringBuilder sb = new StringBuilder(64).append("{\"error\": ");
+        writeString(sb, message == null ? "Internal error" : message);
+        return sb.append('}').toString();
+    }
+
+    /**
+     * A product parsed from a request body, with the fields it contained
+     */
+    public static final class Fields {
+        private final Product product = new Product();
+        private int present;
+
+        public Product getProduct() {
+            return product;
+        }
+
+        /**
+         * @param fields one or more of the field bits, e.g. COST | QUANTITY
+         * @return true if the body contained all of them
+         */
+        public boolean has(int fields) {
+            return (present & fields) == fields;
+        }
+
+        /**
+         * @return true if the body contained at least one of the fields
+         */
+        public boolean hasAny(int fields) {
+            return (present & fields) != 0;
+        }
+
+        /**
+         * @throws IllegalArgumentException naming the first missing field
+         */
+        public Fields require(int fields) {
+            String[] names = { "products", "category", "name", "brand", "cost", "quantity" };
+            for (int i = 0; i < names.length; i++) {
+                if ((fields & (1 << i)) != 0 && !has(1 << i)) {
+                    throw new IllegalArgumentException(names[i] + " is required");
+                }
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Parse a product body. Unknown keys are ignored; cost and quantity may
+     * be numbers (fractions are truncated) or numeric strings.
+     *
+     * @throws IllegalArgumentException if the body is not a flat JSON object
+     *         or a field has the wrong type
+     */
+    public static Fields readProduct(Reader reader) throws IOException {
+        return readProduct(reader, (key, value, string) -> { });
+    }
+
+    /**
+     * Parse a product body that has other members too, handing those to
+     * the handler
+     */
+    public static Fields readProduct(Reader reader, MemberHandler others) throws IOException {
+        Fields fields = new Fields();
+        Product product = fields.product;
+        readObject(reader, (key, value, string) -> {
+            switch (key) {
+                case "products": product.setProducts(text(key, value, string)); fields.present |= PRODUCTS; break;
+                case "category": product.setCategory(text(key, value, string)); fields.present |= CATEGORY; break;
+                case "name": product.setName(text(key, value, string)); fields.present |= NAME; break;
+                case "brand": product.setBrand(text(key, value, string)); fields.present |= BRAND; break;
+                case "cost": product.setCost(integer(key, value)); fields.present |= COST; break;
+                case "quantity": product.setQuantity(integer(key, value)); fields.present |= QUANTITY; break;
+                default: others.member(key, value, string); break;
+            }
+        });
+        return fields;
+    }
+
+    /**
+     * Parse a body and return one integer member of it
+     *
+     * @throws IllegalArgumentException if the member is missing or not an integer
+     */
+    public static long readLong(Reader reader, String name) throws IOException {
+        long[] result = new long[1];
+        boolean[] found = new boolean[1];
+        readObject(reader, (key, value, string) -> {
+            if (key.equals(name)) {
+                if (value == null || string) {
+                    throw new IllegalArgumentException(name + " must be an integer");
+                }
+                try {
+                    result[0] = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(name + " must be an integer");
+                }
+                found[0] = true;
+            }
+        });
+        if (!found[0]) {
+            throw new IllegalArgumentException(name + " is required");
+        }
+        return result[0];
+    }
+
+    /**
+     * Receives the members of a flat object as they are parsed
+     */
+    public interface MemberHandler {
+        /**
+         * @param value the string contents, the number/true/false literal, or null for JSON null
+         * @param string true if the value was a JSON string
+         */
+        void member(String key, String value, boolean string);
+    }
+
+    /**
+     * Parse one flat JSON object (e.g. a line of NDJSON) from a string
+     */
+    public static void readObject(String json, MemberHandler handler) {
+        try {
+            readObject(new StringReader(json), handler);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Parse one flat JSON object, handing each member to the handler
+     *
+     * @throws IllegalArgumentException on malformed input or nested values
+     */
+    public static void readObject(Reader reader, MemberHandler handler) throws IOException {
+        Parser parser = new Parser(reader);
+        parser.expect('{');
+        int c = parser.nextNonSpace();
+        if (c == '}') {
+            parser.expectEnd();
+            return;
+        }
+        while (true) {
+            if (c != '"') {
+                throw parser.error("Expected a member name");
+            }
+            String key = parser.readString();
+            parser.expect(':');
+            c = parser.nextNonSpace();
+            if (c == '"') {
+                handler.member(key, parser.readString(), true);
+            } else if (c == '{' || c == '[') {
+                throw parser.error("Nested value for " + key + " is not supported");
+            } else {
+                String literal = parser.readLiteral(c);
+                handler.member(key, literal.equals("null") ? null : literal, false);
+            }
+            c = parser.nextNonSpace();
+            if (c == '}') {
+                parser.expectEnd();
+                return;
+            }
+            if (c != ',') {
+                throw parser.error("Expected , or }");
+            }
+            c = parser.nextNonSpace();
+        }
+    }
+
+    private static String text(String key, String value, boolean string) {
+        if (value != null && !string) {
+            throw new IllegalArgumentException(key + " must be a string");
+        }
+        return value;
+    }
+
+    private static int integer(String key, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException(key + " must be a number");
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            try {
+                double number = Double.parseDouble(value);
+                if (number < Integer.MIN_VALUE || number > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException(key + " is out of range");
+                }
+                return (int) number;
+            } catch (NumberFormatException notNumber) {
+                throw new IllegalArgumentException(key + " must be a number");
+            }
+        }
+    }
+
+    /**
+     * Character-level reader over the body
+     */
+    private static final class Parser {
+        private final Reader reader;
+        private final char[] buffer = new char[128];
+        private final StringBuilder token = new StringBuilder(32);
+        private int position;
+        private int limit;
+        private int pushedBack = -2;
+        private long offset;
+
+        Parser(Reader reader) {
+            this.reader = reader;
+        }
+
+        int next() throws IOException {
+            if (pushedBack != -2) {
+                int c = pushedBack;
+                pushedBack = -2;
+                return c;
+            }
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            offset++;
+            return buffer[position++];
+        }
+
+        int nextNonSpace() throws IOException {
+            int c;
+            do {
+                c = next();
+            } while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+            return c;
+        }
+
+        void expect(char expected) throws IOException {
+            if (nextNonSpace() != expected) {
+                throw error("Expected " + expected);
+            }
+        }
+
+        void expectEnd() throws IOException {
+            if (nextNonSpace() != -1) {
+                throw error("Unexpected content after the object");
+            }
+        }
+
+        /**
+         * Read the rest of a string whose opening quote was consumed
+         */
+        String readString() throws IOException {
+            token.setLength(0);
+            while (true) {
+                int c = next();
+                if (c == '"') {
+                    return token.toString();
+                }
+                if (c == -1) {
+                    throw error("Unterminated string");
+                }
+                if (c != '\\') {
+                    token.append((char) c);
+                    continue;
+                }
+                c = next();
+                switch (c) {
+                    case '"': token.append('"'); break;
+                    case '\\': token.append('\\'); break;
+                    case '/': token.append('/'); break;
+                    case 'b': token.append('\b'); break;
+                    case 'f': token.append('\f'); break;
+                    case 'n': token.append('\n'); break;
+                    case 'r': token.append('\r'); break;
+                    case 't': token.append('\t'); break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(next(), 16);
+                            if (digit < 0) {
+                                throw error("Invalid \\u escape");
+                            }
+                            code = code * 16 + digit;
+                        }
+                        token.append((char) code);
+                        break;
+                    default:
+                        throw error("Invalid escape");
+                }
+            }
+        }
+
+        /**
+         * Read a number, true, false or null starting with c
+         */
+        String readLiteral(int c) throws IOException {
+            token.setLength(0);
+            while (c != -1 && c != ',' && c != '}' && c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                token.append((char) c);
+                c = next();
+            }
+            pushedBack = c;
+            String literal = token.toString();
+            if (literal.isEmpty()) {
+                throw error("Expected a value");
+            }
+            char first = literal.charAt(0);
+            if (!(first == '-' || (first >= '0' && first <= '9')
+                    || literal.equals("true") || literal.equals("false") || literal.equals("null"))) {
+                throw error("Invalid value " + literal);
+            }
+            return literal;
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid JSON at character " + offset + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package Inventory.src.Inventory;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Filter, sort and keyset-pagination parameters for product listings.
+ *
+ * Supported request parameters:
+ * category, brand (exact match), categoryPrefix, name (prefix match),
+ * minCost, maxCost, minQuantity, maxQuantity, sort (id, name, brand,
+ * category, cost, quantity), order (asc, desc), limit and after (the
+ * nextCursor of the previous page).
+ *
+ * Pages are addressed by the last (sort value, ID) seen rather than by an
+ * offset, so every page is an index range scan no matter how deep it is.
+ */
+public class ProductQuery {
+    private static final int DEFAULT_LIMIT = InventoryConfig.getInt("query.defaultLimit", 100);
+    static final int MAX_LIMIT = InventoryConfig.getInt("query.maxLimit", 1000);
+
+    private static final String[] PARAMETERS = { "category", "categoryPrefix", "brand", "name", "minCost",
+            "maxCost", "minQuantity", "maxQuantity", "sort", "order", "limit", "after" };
+
+    private String category;
+    private String categoryPrefix;
+    private String brand;
+    private String namePrefix;
+    private Integer minCost;
+    private Integer maxCost;
+    private Integer minQuantity;
+    private Integer maxQuantity;
+    private SortField sort = SortField.ID;
+    private boolean descending;
+    private int limit = DEFAULT_LIMIT;
+    private String afterValue;
+    private String afterId;
+
+    /**
+     * Sortable columns; each has an index on (column, ID)
+     */
+    enum SortField {
+        ID("ID", true),
+        NAME("Name", false),
+        BRAND("Brand", false),
+        CATEGORY("Category", false),
+        COST("Cost", true),
+        QUANTITY("Quantity", true);
+
+        final String column;
+        final boolean numeric;
+
+        SortField(String column, boolean numeric) {
+            this.column = column;
+            this.numeric = numeric;
+        }
+    }
+
+    /**
+     * One page of a listing
+     */
+    public static final class Page {
+        private final List<Product> items;
+        private final String nextCursor;
+
+        Page(List<Product> items, String nextCursor) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<Product> getItems() {
+            return items;
+        }
+
+        /**
+         * Cursor for the following page, or null on the last page
+         */
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    /**
+     * True if the request uses any listing parameter, i.e. asks for a page
+     * rather than the plain full listing
+     */
+    public static boolean isRequested(HttpServletRequest request) {
+        for (String name : PARAMETERS) {
+            if (request.getParameter(name) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse the listing parameters of a request
+     *
+     * @throws IllegalArgumentException if a parameter is malformed
+     */
+    public static ProductQuery fromRequest(HttpServletRequest request) {
+        ProductQuery query = new ProductQuery();
+        query.category = text(request, "category");
+        query.categoryPrefix = text(request, "categoryPrefix");
+        query.brand = text(request, "brand");
+        query.namePrefix = text(request, "name");
+        query.minCost = number(request, "minCost");
+        query.maxCost = number(request, "maxCost");
+        query.minQuantity = number(request, "minQuantity");
+        query.maxQuantity = number(request, "maxQuantity");
+
+        String sort = text(request, "sort");
+        if (sort != null) {
+            try {
+                query.sort = SortField.valueOf(sort.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown sort field: " + sort);
+            }
+        }
+        String order = text(request, "order");
+        if (order != null && !order.equalsIgnoreCase("asc") && !order.equalsIgnoreCase("desc")) {
+            throw new IllegalArgumentException("order must be asc or desc");
+        }
+        query.descending = "desc".equalsIgnoreCase(order);
+
+        Integer limit = number(request, "limit");
+        if (limit != null) {
+            if (limit < 1 || limit > MAX_LIMIT) {
+                throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+            }
+            query.limit = limit;
+        }
+
+        String after = text(request, "after");
+        if (after != null) {
+            query.decodeCursor(after);
+        }
+        return query;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * SELECT statement for the matching rows
+     *
+     * @param paged if true, fetch only limit + 1 rows so the caller can tell
+     *        whether another page follows; otherwise return every match
+     */
+    public String toSql(boolean paged) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM Product");
+        List<String> conditions = conditions();
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        String direction = descending ? " DESC" : " ASC";
+        sql.append(" ORDER BY ");
+        if (sort != SortField.ID) {
+            sql.append(sort.column).append(direction).append(", ");
+        }
+        sql.append("ID").append(direction);
+        if (paged) {
+            sql.append(" LIMIT ?");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Bind the parameters of {@link #toSql(boolean)}
+     */
+    public void bind(PreparedStatement stmt, boolean paged) throws SQLException {
+        int index = bindFilters(stmt, 1);
+        if (paged) {
+            stmt.setInt(index, limit + 1);
+        }
+    }
+
+    /**
+     * Cursor pointing after the given row, to be passed back as "after"
+     */
+    public String cursorAfter(ResultSet rs) throws SQLException {
+        return cursorAfter(rs.getString(sort.column), rs.getString("ID"));
+    }
+
+    /**
+     * Cursor pointing after the row with the given sort value and ID: the
+     * sort field, the value's length and the value, then the ID, so a value
+     * may contain any character
+     */
+    public String cursorAfter(String sortValue, String id) {
+        String value = sortValue == null ? "" : sortValue;
+        String raw = sort.name() + ":" + value.length() + ":" + value + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * True if the product passes the filters and lies after the cursor.
+     * Text compares ignoring case, as MySQL's default collation does.
+     */
+    boolean matches(Product product) {
+        if ((category != null && !category.equalsIgnoreCase(product.getCategory()))
+                || (categoryPrefix != null && !startsWithIgnoreCase(product.getCategory(), categoryPrefix))
+                || (brand != null && !brand.equalsIgnoreCase(product.getBrand()))
+                || (namePrefix != null && !startsWithIgnoreCase(product.getName(), namePrefix))
+                || (minCost != null && product.getCost() < minCost)
+                || (maxCost != null && product.getCost() > maxCost)
+                || (minQuantity != null && product.getQuantity() < minQuantity)
+                || (maxQuantity != null && product.getQuantity() > maxQuantity)) {
+            return false;
+        }
+        if (afterId == null) {
+            return true;
+        }
+        int c = sort == SortField.ID ? 0 : compareSortValues(sortValue(product), afterValue);
+        if (c == 0) {
+            c = Integer.compare(Integer.parseInt(product.getId()), Integer.parseInt(afterId));
+        }
+        return descending ? c < 0 : c > 0;
+    }
+
+    /**
+     * The order the query asks for, ties broken by ID
+     */
+    Comparator<Product> order() {
+        Comparator<Product> byId = Comparator.comparingInt(p -> Integer.parseInt(p.getId()));
+        Comparator<Product> order = sort == SortField.ID ? byId
+                : Comparator.<Product, String>comparing(this::sortValue, this::compareSortValues).thenComparing(byId);
+        return descending ? order.reversed() : order;
+    }
+
+    /**
+     * Cursor pointing after the given product
+     */
+    String cursorAfter(Product product) {
+        return cursorAfter(sortValue(product), product.getId());
+    }
+
+    private String sortValue(Product product) {
+        switch (sort) {
+            case NAME: return product.getName();
+            case BRAND: return product.getBrand();
+            case CATEGORY: return product.getCategory();
+            case COST: return Integer.toString(product.getCost());
+            case QUANTITY: return Integer.toString(product.getQuantity());
+            default: return product.getId();
+        }
+    }
+
+    private int compareSortValues(String a, String b) {
+        if (a == null || b == null) {
+            return Integer.compare(a == null ? 0 : 1, b == null ? 0 : 1);
+        }
+        return sort.numeric ? Integer.compare(Integer.parseInt(a), Integer.parseInt(b))
+                : String.CASE_INSENSITIVE_ORDER.compare(a, b);
+    }
+
+    // The parsed parameters, for evaluating the query in memory (ColumnarSnapshot)
+
+    String getCategory() {
+        return category;
+    }
+
+    String getCategoryPrefix() {
+        return categoryPrefix;
+    }
+
+    String getBrand() {
+        return brand;
+    }
+
+    String getNamePrefix() {
+        return namePrefix;
+    }
+
+    Integer getMinCost() {
+        return minCost;
+    }
+
+    Integer getMaxCost() {
+        return maxCost;
+    }
+
+    Integer getMinQuantity() {
+        return minQuantity;
+    }
+
+    Integer getMaxQuantity() {
+        return maxQuantity;
+    }
+
+    SortField getSort() {
+        return sort;
+    }
+
+    boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * Sort value of the cursor row, or null without a cursor
+     */
+    String getAfterValue() {
+        return afterValue;
+    }
+
+    String getAfterId() {
+        return afterId;
+    }
+
+    private List<String> conditions() {
+        List<String> conditions = new ArrayList<>();
+        if (category != null) {
+            conditions.add("Category = ?");
+        }
+        if (categoryPrefix != null) {
+            conditions.add("Category LIKE ?");
+        }
+        if (brand != null) {
+            conditions.add("Brand = ?");
+        }
+        if (namePrefix != null) {
+            conditions.add("Name LIKE ?");
+        }
+        if (minCost != null) {
+            conditions.add("Cost >= ?");
+        }
+        if (maxCost != null) {
+            conditions.add("Cost <= ?");
+        }
+        if (minQuantity != null) {
+            conditions.add("Quantity >= ?");
+        }
+        if (maxQuantity != null) {
+            conditions.add("Quantity <= ?");
+        }
+        if (afterId != null) {
+            String op = descending ? "<" : ">";
+            if (sort == SortField.ID) {
+                conditions.add("ID " + op + " ?");
+            } else {
+                conditions.add("(" + sort.column + " " + op + " ? OR (" + sort.column + " = ? AND ID " + op + " ?))");
+            }
+        }
+        return conditions;
+    }
+
+    private int bindFilters(PreparedStatement stmt, int index) throws SQLException {
+        if (category != null) {
+            stmt.setString(index++, category);
+        }
+        if (categoryPrefix != null) {
+            stmt.setString(index++, escapeLike(categoryPrefix) + "%");
+        }
+        if (brand != null) {
+            stmt.setString(index++, brand);
+        }
+        if (namePrefix != null) {
+            stmt.setString(index++, escapeLike(namePrefix) + "%");
+        }
+        if (minCost != null) {
+            stmt.setInt(index++, minCost);
+        }
+        if (maxCost != null) {
+            stmt.setInt(index++, maxCost);
+        }
+        if (minQuantity != null) {
+            stmt.setInt(index++, minQuantity);
+        }
+        if (maxQuantity != null) {
+            stmt.setInt(index++, maxQuantity);
+        }
+        if (afterId != null) {
+            if (sort != SortField.ID) {
+                bindSortValue(stmt, index++);
+                bindSortValue(stmt, index++);
+            }
+            stmt.setInt(index++, Integer.parseInt(afterId));
+        }
+        return index;
+    }
+
+    private void bindSortValue(PreparedStatement stmt, int index) throws SQLException {
+        if (sort.numeric) {
+            stmt.setInt(index, Integer.parseInt(afterValue));
+        } else {
+            stmt.setString(index, afterValue);
+        }
+    }
+
+    private void decodeCursor(String cursor) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        int sortEnd = raw.indexOf(':');
+        if (sortEnd < 0 || !raw.substring(0, sortEnd).equals(sort.name())) {
+            throw new IllegalArgumentException("Cursor does not match the requested sort order");
+        }
+        try {
+            // substring rejects a missing separator or a length past the end
+            int lengthEnd = raw.indexOf(':', sortEnd + 1);
+            int valueStart = lengthEnd + 1;
+            int valueEnd = valueStart + Integer.parseInt(raw.substring(sortEnd + 1, lengthEnd));
+            String value = raw.substring(valueStart, valueEnd);
+            String id = raw.substring(valueEnd);
+            Integer.parseInt(id);
+            if (sort.numeric) {
+                Integer.parseInt(value);
+            }
+            afterValue = value;
+            afterId = id;
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private static boolean startsWithIgnoreCase(String value, String prefix) {
+        return value != null && value.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static String text(HttpServletRequest request, String name) {
+        String value = request.getParameter(name);
+        return (value == null || value.trim().isEmpty()) ? null : value.trim();
+    }
+
+    private static Integer number(HttpServletRequest request, String name) {
+        String value = text(request, name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package Inventory.src.Inventory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+
+/**
+ * Creates the store selected by ims.store
+ */
+final class ProductRepositories {
+    private static final String STORE = InventoryConfig.getString("store", "mysql");
+
+    private static volatile ProductRepository shared;
+
+    private ProductRepositories() {
+    }
+
+    static ProductRepository shared() {
+        ProductRepository current = shared;
+        if (current == null) {
+            synchronized (ProductRepositories.class) {
+                current = shared;
+                if (current == null) {
+                    current = create();
+                    shared = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static ProductRepository create() {
+        switch (STORE) {
+            case "mysql":
+                return new MySqlProductRepository();
+            case "log":
+                LogProductRepository log = new LogProductRepository(
+                        Paths.get(InventoryConfig.getString("store.dir",
+                                Paths.get(System.getProperty("java.io.tmpdir"), "ims-store").toString())),
+                        InventoryConfig.getInt("store.segmentBytes", 64 * 1024 * 1024),
+                        InventoryConfig.getBoolean("store.sync", true),
+                        InventoryConfig.getLong("store.compactIntervalMs", 600000));
+                try {
+                    log.open();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot open the product log in " + log.getDirectory(), e);
+                }
+                return log;
+            default:
+                throw new IllegalStateException("ims.store must be mysql or log, not " + STORE);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package Inventory.src.Inventory;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Where products are stored.
+ *
+ * ims.store selects the implementation: "mysql" (the default,
+ * {@link MySqlProductRepository}) or "log", the embedded
+ * {@link LogProductRepository} for single-node deployments without a
+ * database server. Features built on MySQL itself (delta sync, batches,
+ * bulk import, export, write-behind, read replicas) need "mysql"; see
+ * {@link #isDatabase()}.
+ *
+ * Reads take the time by which the caller's own writes were committed,
+ * which the MySQL store uses to pick a read replica that has them: 0 if
+ * any copy will do, {@link #LATEST} to read from the primary. Writes do not
+ * fire {@link ProductEvents}; callers do once the write has returned.
+ * Both stores report failures as SQLException, so callers handle them in
+ * one place.
+ */
+public interface ProductRepository {
+
+    /**
+     * committedBefore for reads that must see every write, such as index rebuilds
+     */
+    long LATEST = Long.MAX_VALUE;
+
+    /**
+     * The configured store, opened on first use
+     */
+    static ProductRepository shared() {
+        return ProductRepositories.shared();
+    }
+
+    /**
+     * True for the MySQL store, which the database-only features need
+     */
+    boolean isDatabase();
+
+    /**
+     * Start background work such as compaction
+     */
+    void start();
+
+    /**
+     * Stop background work and release files; the store is not used again
+     */
+    void close();
+
+    /**
+     * @return the product, or null if there is no such product
+     */
+    Product find(String id, long committedBefore) throws SQLException;
+
+    /**
+     * @return the products found, by ID; missing IDs are absent
+     */
+    Map<String, Product> findAll(Collection<String> ids, long committedBefore) throws SQLException;
+
+    /**
+     * Hand every product to the action in ID order, without holding them
+     * all in memory
+     */
+    void forEach(Consumer<Product> action, long committedBefore) throws SQLException;
+
+    /**
+     * The page of matching products the query asks for, in its order
+     */
+    ProductQuery.Page query(ProductQuery query, long committedBefore) throws SQLException;
+
+    /**
+     * Store a new product, assigning its ID
+     *
+     * @return the product as stored, with ID and version
+     */
+    Product insert(Product product) throws SQLException;
+
+    /**
+     * Change the fields present in the request body and move the product to
+     * the next version
+     *
+     * @return the product as stored, or null if there is no such product
+     */
+    Product update(String id, ProductJsonCodec.Fields fields) throws SQLException;
+
+    /**
+     * @return false if there was no such product
+     */
+    boolean delete(String id) throws SQLException;
+
+    /**
+     * Add a signed delta to the quantity unless stock would go below zero or,
+     * with an expected version, the product has moved past it
+     */
+    Adjustment adjust(String id, int delta, Long expectedVersion) throws SQLException;
+
+    /**
+     * Outcome of {@link #adjust}: the quantity and version after the
+     * adjustment, or the current ones if it was refused
+     */
+    final class Adjustment {
+        public enum Outcome { APPLIED, NOT_FOUND, MODIFIED, INSUFFICIENT_STOCK }
+
+        private final Outcome outcome;
+        private final int quantity;
+        private final long version;
+
+        public Adjustment(Outcome outcome, int quantity, long version) {
+            this.outcome = outcome;
+            this.quantity = quantity;
+            this.version = version;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+}
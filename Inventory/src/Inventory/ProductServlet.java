@@ -1,16 +1,14 @@
 package Inventory.src.Inventory;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import jakarta.servlet.ServletException;
@@ -19,26 +17,51 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import java.sql.Statement;
-
-@WebServlet("/products/*")
+@WebServlet(urlPatterns = "/products/*", asyncSupported = true)
 public class ProductServlet extends HttpServlet {
     private static final long serialVersionUID = 1L;
-    
-    // Database connection settings - update with your actual settings
-    private String dbUrl = "jdbc:mysql://localhost:3306/IMS";
-    private String dbUser = "root";
-    private String dbPassword = "Opkv@1754"; // Use your actual password
+
+    // Requests running longer than this are answered with 503
+    private static final long REQUEST_TIMEOUT_MS = InventoryConfig.getLong("async.requestTimeoutMs", 30000);
+    // Worker threads when virtual threads are not available (Java < 21)
+    private static final int FALLBACK_THREADS = InventoryConfig.getInt("async.fallbackThreads", 200);
+
+    // Listings longer than this are streamed every time instead of cached
+    private static final int LIST_CACHE_MAX_CHARS = InventoryConfig.getInt("cache.listMaxChars", 4 * 1024 * 1024);
+
+    // Runs the JDBC work off Tomcat's request threads
+    private transient AsyncDispatcher dispatcher;
+
+    @Override
+    public void init() throws ServletException {
+        dispatcher = new AsyncDispatcher("ims-products", REQUEST_TIMEOUT_MS, FALLBACK_THREADS);
+    }
+
+    @Override
+    public void destroy() {
+        dispatcher.close();
+    }
+
+    /**
+     * Hand every request to the dispatcher, so slow queries never keep other
+     * requests waiting for a thread. CORS preflights are answered by
+     * {@link HttpResponseFilter} and never get here. Bulk imports and batches
+     * run as long as the upload takes.
+     */
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())
+                && DatabaseUtil.getReplicas() != null) {
+            // Read this client's next requests from the primary until the replicas have its write
+            ReplicaRouter.rememberWrite(request, response);
+        }
+        long timeout = "/bulk".equals(request.getPathInfo()) || "/batch".equals(request.getPathInfo())
+                ? 0 : REQUEST_TIMEOUT_MS;
+        dispatcher.dispatch(request, response, timeout, super::service);
+    }
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-        enableCors(response);  // Enable CORS
         response.setContentType("application/json");
         
         String pathInfo = request.getPathInfo();
@@ -46,147 +69,580 @@ public class ProductServlet extends HttpServlet {
         PrintWriter out = response.getWriter();
         
         try {
-            Class.forName("com.mysql.cj.jdbc.Driver");  // Load the MySQL JDBC driver
-            
-            if (pathInfo != null && pathInfo.length() > 1) {
-                String productId = pathInfo.substring(1);  // Extract product ID
-                getProductById(out, productId, response);
+            // Full-text search over the in-memory index
+            if ("/search".equals(pathInfo)) {
+                searchProducts(request, out, response);
+            }
+            // Totals maintained in memory, see InventoryStats
+            else if ("/stats".equals(pathInfo)) {
+                response.setHeader("Cache-Control", "no-cache");
+                out.print(InventoryStats.shared().toJson());
+            }
+            else if (pathInfo != null && pathInfo.length() > 1) {
+                String productId = ProductJsonCodec.canonicalId(pathInfo.substring(1));
+                if (productId == null) {
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    out.print(ProductJsonCodec.error("Invalid product ID"));
+                    return;
+                }
+                getProductById(request, out, productId, response);
             } 
+            // Several products by ID in one query
+            else if (request.getParameter("ids") != null) {
+                getProductsByIds(request, out, response);
+            }
+            // Delta sync: what changed after the client's last version
+            else if (request.getParameter("since") != null) {
+                getChangesSince(request, out, response);
+            }
             // Check if action is 'low-stock'
             else if ("low-stock".equals(action)) {
                 getLowStockProducts(out, response);
             }
+            // Filtered, sorted or paged listing
+            else if (ProductQuery.isRequested(request)) {
+                getProductPage(request, out, response);
+            }
             // Default: Fetch all products
             else {
-                getAllProducts(out, response);
+                getAllProducts(request, out, response);
             }
-        } catch (ClassNotFoundException e) {
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            out.print("{\"error\": \"Database driver not found\"}");
-            e.printStackTrace();
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            out.print("{\"error\": \"" + e.getMessage() + "\"}");
+            out.print(ProductJsonCodec.error(e.getMessage()));
             e.printStackTrace();
         }
     }
     
     
-    private void getAllProducts(PrintWriter out, HttpServletResponse response) {
-        try (Connection conn = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
-            String sql = "SELECT * FROM Product ORDER BY ID ASC";
-            try (PreparedStatement stmt = conn.prepareStatement(sql);
-                 ResultSet rs = stmt.executeQuery()) {
-                
-                JSONArray jsonArray = new JSONArray();
-                
-                while (rs.next()) {
-                    JSONObject jsonObject = new JSONObject();
-                    jsonObject.put("id", rs.getString("ID"));
-                    jsonObject.put("products", rs.getString("Products"));
-                    jsonObject.put("category", rs.getString("Category"));
-                    jsonObject.put("name", rs.getString("Name"));
-                    jsonObject.put("brand", rs.getString("Brand"));
-                    jsonObject.put("cost", rs.getInt("Cost"));
-                    jsonObject.put("quantity", rs.getInt("Quantity"));
-                    jsonArray.put(jsonObject);
+    /**
+     * Stream the full listing as a JSON array
+     *
+     * Products are read from the store (from MySQL in chunks of
+     * ims.db.fetchSize) and written to the response as they arrive, so memory
+     * use does not grow with the table; with the columnar snapshot loaded
+     * they are written from memory in the same way. Listings up to
+     * ims.cache.listMaxChars are also kept in the cache; larger ones only
+     * keep their ETag.
+     */
+    private void getAllProducts(HttpServletRequest request, PrintWriter out, HttpServletResponse response) {
+        ProductCache cache = ProductCache.shared();
+        ProductCache.CachedView cached = cache.getList();
+        if (cached != null) {
+            if (notModified(request, response, cached)) {
+                return;
+            }
+            if (cached.getBody() != null) {
+                out.print(cached.getBody());
+                return;
+            }
+        }
+        
+        long readVersion = cache.currentVersion();
+        response.setHeader("ETag", cache.listEtag(readVersion));
+        response.setHeader("Cache-Control", "no-cache");
+        ColumnarSnapshot snapshot = ColumnarSnapshot.shared();
+        if (snapshot.isReady()) {
+            StringBuilder[] capture = { new StringBuilder() };
+            snapshot.writeAll(chunk -> {
+                out.append(chunk);
+                if (capture[0] != null) {
+                    capture[0] = capture[0].length() + chunk.length() > LIST_CACHE_MAX_CHARS ? null : capture[0].append(chunk);
+                }
+            });
+            cache.putList(capture[0] != null ? capture[0].toString() : null, readVersion);
+            return;
+        }
+        StringBuilder row = new StringBuilder(256);
+        StringBuilder[] capture = { new StringBuilder("[") };
+        boolean[] started = { false };
+        try {
+            ProductRepository.shared().forEach(product -> {
+                row.setLength(0);
+                if (started[0]) {
+                    row.append(',');
+                } else {
+                    out.write('[');
+                    started[0] = true;
+                }
+                ProductJsonCodec.write(row, product);
+                out.append(row);
+                if (capture[0] != null) {
+                    // Stop copying once the listing is too big to cache
+                    capture[0] = capture[0].length() + row.length() > LIST_CACHE_MAX_CHARS ? null : capture[0].append(row);
+                }
+            }, committedBefore(request, true));
+            if (!started[0]) {
+                out.write('[');
+            }
+            out.write(']');
+            cache.putList(capture[0] != null ? capture[0].append(']').toString() : null, readVersion);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            if (!started[0] || !response.isCommitted()) {
+                response.resetBuffer();
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                out.print(ProductJsonCodec.error("Database error: " + e.getMessage()));
+            }
+            // Otherwise the array is left unterminated so the client sees a broken body, not a short list
+        }
+    }
+    
+    /**
+     * Write one page of a filtered listing as {"items": [...], "nextCursor": ...}
+     *
+     * nextCursor is null on the last page; otherwise pass it back as "after".
+     */
+    private void getProductPage(HttpServletRequest request, PrintWriter out, HttpServletResponse response) {
+        ProductQuery query;
+        try {
+            query = ProductQuery.fromRequest(request);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print(ProductJsonCodec.error(e.getMessage()));
+            return;
+        }
+        
+        try {
+            ColumnarSnapshot snapshot = ColumnarSnapshot.shared();
+            ProductQuery.Page page = snapshot.isReady() ? snapshot.query(query)
+                    : ProductRepository.shared().query(query, committedBefore(request, false));
+            StringBuilder body = new StringBuilder(256 * Math.min(query.getLimit(), 64));
+            body.append("{\"items\":");
+            ProductJsonCodec.writeArray(body, page.getItems());
+            body.append(",\"nextCursor\":");
+            ProductJsonCodec.writeString(body, page.getNextCursor());
+            body.append('}');
+            out.print(body);
+        } catch (SQLException e) {
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            out.print(ProductJsonCodec.error("Database error: " + e.getMessage()));
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * GET /products?since=version: products inserted, updated or deleted
+     * after the version, as {"since", "version", "items": [...], "deleted":
+     * [ids], "more"}. Pass version as since on the next sync; since=0
+     * returns every product.
+     */
+    private void getChangesSince(HttpServletRequest request, PrintWriter out, HttpServletResponse response) {
+        if (!requireDatabase(out, response)) {
+            return;
+        }
+        long since;
+        try {
+            since = Long.parseLong(request.getParameter("since").trim());
+            if (since < 0) {
+                throw new NumberFormatException();
+            }
+        } catch (NumberFormatException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print(ProductJsonCodec.error("since must be a version returned by an earlier sync, or 0"));
+            return;
+        }
+        try {
+            ProductChangeLog.Delta delta = ProductChangeLog.shared().since(since);
+            StringBuilder body = new StringBuilder(256 + 256 * delta.getItems().size());
+            body.append("{\"since\":").append(since);
+            body.append(",\"version\":").append(delta.getVersion());
+            body.append(",\"items\":");
+            ProductJsonCodec.writeArray(body, delta.getItems());
+            body.append(",\"deleted\":[");
+            for (int i = 0; i < delta.getDeleted().size(); i++) {
+                if (i > 0) {
+                    body.append(',');
                 }
-                
-                out.print(jsonArray.toString());
+                ProductJsonCodec.writeString(body, delta.getDeleted().get(i));
             }
-        } catch (SQLException | JSONException e) {
+            body.append("],\"more\":").append(delta.hasMore()).append('}');
+            response.setHeader("Cache-Control", "no-cache");
+            out.print(body);
+        } catch (SQLException e) {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            out.print("{\"error\": \"Database error: " + e.getMessage() + "\"}");
+            out.print(ProductJsonCodec.error("Database error: " + e.getMessage()));
             e.printStackTrace();
         }
     }
     
-    private void getProductById(PrintWriter out, String productId, HttpServletResponse response) {
-        try (Connection conn = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
-            String sql = "SELECT * FROM Product WHERE ID = ?";
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setString(1, productId);
-                
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        JSONObject jsonObject = new JSONObject();
-                        jsonObject.put("id", rs.getString("ID"));
-                        jsonObject.put("products", rs.getString("Products"));
-                        jsonObject.put("category", rs.getString("Category"));
-                        jsonObject.put("name", rs.getString("Name"));
-                        jsonObject.put("brand", rs.getString("Brand"));
-                        jsonObject.put("cost", rs.getInt("Cost"));
-                        jsonObject.put("quantity", rs.getInt("Quantity"));
-                        
-                        out.print(jsonObject.toString());
-                    } else {
-                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                        out.print("{}"); // Empty JSON object if product not found
+    /**
+     * GET /products?ids=1,2,3: the products in the order asked for, read
+     * at once (one IN query with MySQL), as {"items": [...], "missing": [ids]}
+     */
+    private void getProductsByIds(HttpServletRequest request, PrintWriter out, HttpServletResponse response) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (String id : request.getParameter("ids").split(",")) {
+            id = ProductJsonCodec.canonicalId(id.trim());
+            if (id == null) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print(ProductJsonCodec.error("ids must be a comma-separated list of product IDs"));
+                return;
+            }
+            ids.add(id);
+        }
+        if (ids.size() > ProductQuery.MAX_LIMIT) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print(ProductJsonCodec.error("At most " + ProductQuery.MAX_LIMIT + " ids per request"));
+            return;
+        }
+        try {
+            Map<String, Product> found = ProductRepository.shared().findAll(ids, committedBefore(request, false));
+            List<Product> items = new ArrayList<>(found.size());
+            StringBuilder missing = new StringBuilder();
+            for (String id : ids) {
+                Product product = found.get(id);
+                if (product != null) {
+                    items.add(product);
+                } else {
+                    if (missing.length() > 0) {
+                        missing.append(',');
                     }
+                    ProductJsonCodec.writeString(missing, id);
                 }
             }
-        } catch (SQLException | JSONException e) {
+            StringBuilder body = new StringBuilder(64 + 256 * items.size());
+            body.append("{\"items\":");
+            ProductJsonCodec.writeArray(body, items);
+            body.append(",\"missing\":[").append(missing).append("]}");
+            out.print(body);
+        } catch (SQLException e) {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            out.print("{\"error\": \"Database error: " + e.getMessage() + "\"}");
+            out.print(ProductJsonCodec.error("Database error: " + e.getMessage()));
             e.printStackTrace();
         }
     }
+
+    private void getProductById(HttpServletRequest request, PrintWriter out, String productId, HttpServletResponse response) {
+        QuantityWriteBehind writeBehind = QuantityWriteBehind.shared();
+        if (writeBehind != null && writeBehind.pendingDelta(productId) != 0) {
+            getProductWithPendingDeltas(writeBehind, out, productId, response);
+            return;
+        }
+        ProductCache cache = ProductCache.shared();
+        ProductCache.CachedView cached = cache.get(productId);
+        if (cached != null) {
+            if (!notModified(request, response, cached)) {
+                out.print(cached.getBody());
+            }
+            return;
+        }
+        
+        long readVersion = cache.currentVersion();
+        try {
+            Product product = ProductRepository.shared().find(productId, committedBefore(request, true));
+            if (product != null) {
+                String body = ProductJsonCodec.toJson(product);
+                notModified(request, response, cache.put(product, body, readVersion));
+                out.print(body);
+            } else {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                out.print("{}"); // Empty JSON object if product not found
+            }
+        } catch (SQLException e) {
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            out.print(ProductJsonCodec.error("Database error: " + e.getMessage()));
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * The product as it will be once queued adjustments are flushed; not
+     * cached, since it changes with every adjustment
+     */
+    private void getProductWithPendingDeltas(QuantityWriteBehind writeBehind, PrintWriter out, String productId,
+            HttpServletResponse response) {
+        try {
+            Product product = writeBehind.readMerged(productId);
+            response.setHeader("Cache-Control", "no-store");
+            if (product != null) {
+                out.print(ProductJsonCodec.toJson(product));
+            } else {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                out.print("{}");
+            }
+        } catch (SQLException e) {
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            out.print(ProductJsonCodec.error("Database error: " + e.getMessage()));
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * What a read-only handler must see: the client's own writes, so a
+     * replica that lacks them is skipped. Reads that fill the cache must also
+     * have every write made through this server, or the cache would keep a
+     * stale row; call after reading the cache version.
+     */
+    private long committedBefore(HttpServletRequest request, boolean fillsCache) {
+        long committedBefore = ReplicaRouter.clientWrittenBy(request);
+        if (fillsCache) {
+            committedBefore = Math.max(committedBefore, ProductCache.shared().lastWriteMillis());
+        }
+        return committedBefore;
+    }
+    
+    /**
+     * Answer 501 for features built on MySQL itself when ims.store is not mysql
+     *
+     * @return true if the request can go ahead
+     */
+    private boolean requireDatabase(PrintWriter out, HttpServletResponse response) {
+        if (ProductRepository.shared().isDatabase()) {
+            return true;
+        }
+        response.setStatus(HttpServletResponse.SC_NOT_IMPLEMENTED);
+        out.print(ProductJsonCodec.error("This feature requires ims.store=mysql"));
+        return false;
+    }
+    
+    /**
+     * Send the view's ETag and answer 304 if the client already has it
+     *
+     * @return true if a 304 was sent and no body should follow
+     */
+    private boolean notModified(HttpServletRequest request, HttpServletResponse response, ProductCache.CachedView view) {
+        response.setHeader("ETag", view.getEtag());
+        response.setHeader("Cache-Control", "no-cache");
+        if (ProductCache.matches(request.getHeader("If-None-Match"), view.getEtag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
     
     @Override
-protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-    enableCors(response);
-    response.setContentType("application/json");
-    PrintWriter out = response.getWriter();
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        response.setContentType("application/json");
+        PrintWriter out = response.getWriter();
     
-    try {
-        // Read JSON data from request body
-        StringBuilder requestBody = new StringBuilder();
-        BufferedReader reader = request.getReader();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            requestBody.append(line);
+        if (("/bulk".equals(request.getPathInfo()) || "/batch".equals(request.getPathInfo()))
+                && !requireDatabase(out, response)) {
+            return;
         }
-        
-        JSONObject productJson = new JSONObject(requestBody.toString());
+        if ("/bulk".equals(request.getPathInfo())) {
+            bulkImport(request, out, response);
+            return;
+        }
+        if ("/batch".equals(request.getPathInfo())) {
+            batchWrite(request, out, response);
+            return;
+        }
+        if (request.getPathInfo() != null && request.getPathInfo().matches("/[^/]+/adjust")) {
+            adjustQuantity(request, out, response);
+            return;
+        }
+    
+        try {
+            // Parse the request body straight into a Product
+            Product product = ProductJsonCodec.readProduct(request.getReader())
+                    .require(ProductJsonCodec.ALL_FIELDS).getProduct();
 
-        // Insert new product into database WITHOUT specifying ID (MySQL will generate it)
-        try (Connection conn = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
-            String sql = "INSERT INTO Product (Products, Category, Name, Brand, Cost, Quantity) VALUES (?, ?, ?, ?, ?, ?)"; 
-            // Removed 'ID' from the query
-            
-            try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                stmt.setString(1, productJson.getString("products"));
-                stmt.setString(2, productJson.getString("category"));
-                stmt.setString(3, productJson.getString("name"));
-                stmt.setString(4, productJson.getString("brand"));
-                stmt.setInt(5, productJson.getInt("cost"));
-                stmt.setInt(6, productJson.getInt("quantity"));
-                
-                int rowsAffected = stmt.executeUpdate();
-                if (rowsAffected > 0) {
-                    // Get the generated ID from MySQL
-                    ResultSet generatedKeys = stmt.getGeneratedKeys();
-                    if (generatedKeys.next()) {
-                        int generatedId = generatedKeys.getInt(1); // Get auto-incremented ID
-                        productJson.put("id", generatedId);
-                    }
-                    out.print(productJson.toString());
-                } else {
-                    response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                    out.print("{\"error\": \"Failed to insert product\"}");
-                }
+            // The store assigns the ID
+            product = ProductRepository.shared().insert(product);
+            ProductEvents.fireSaved(product);
+            out.print(ProductJsonCodec.toJson(product));
+        } catch (Exception e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print(ProductJsonCodec.error(e.getMessage()));
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * POST /products/bulk: stream NDJSON (default) or CSV (Content-Type text/csv)
+     * rows into the table. Optional parameters: batchSize, atomic=true.
+     */
+    private void bulkImport(HttpServletRequest request, PrintWriter out, HttpServletResponse response) throws IOException {
+        String contentType = request.getContentType() == null ? "" : request.getContentType().toLowerCase();
+        if (contentType.startsWith("application/x-www-form-urlencoded")) {
+            // The container would consume a form body while reading the parameters
+            response.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+            out.print("{\"error\": \"Send the rows as application/x-ndjson or text/csv\"}");
+            return;
+        }
+        boolean csv = contentType.startsWith("text/csv");
+        boolean atomic = Boolean.parseBoolean(request.getParameter("atomic"));
+        BulkImporter importer = null;
+        try {
+            String batchSize = request.getParameter("batchSize");
+            importer = new BulkImporter(
+                    batchSize == null ? BulkImporter.DEFAULT_BATCH_SIZE : Integer.parseInt(batchSize), atomic);
+            out.print(importer.importRows(request.getReader(), csv));
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print(ProductJsonCodec.error(e.getMessage()));
+        } catch (SQLException e) {
+            response.setStatus(databaseErrorStatus(e));
+            if (atomic || importer == null) {
+                out.print(ProductJsonCodec.error("Import rolled back: " + e.getMessage()));
+            } else {
+                // Batches committed before the failure stay; say which
+                out.print(importer.summary("Import stopped: " + e.getMessage()));
             }
+            e.printStackTrace();
         }
-    } catch (Exception e) {
-        response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-        out.print("{\"error\": \"" + e.getMessage() + "\"}");
-        e.printStackTrace();
     }
-}
+
+    /**
+     * POST /products/batch: apply NDJSON update and delete operations in one
+     * transaction, see {@link ProductBatch}. With atomic=true any failure
+     * rolls back the whole batch and answers 409.
+     */
+    private void batchWrite(HttpServletRequest request, PrintWriter out, HttpServletResponse response) throws IOException {
+        String contentType = request.getContentType() == null ? "" : request.getContentType().toLowerCase();
+        if (contentType.startsWith("application/x-www-form-urlencoded")) {
+            response.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+            out.print("{\"error\": \"Send the operations as application/x-ndjson\"}");
+            return;
+        }
+        try {
+            ProductBatch batch = new ProductBatch(Boolean.parseBoolean(request.getParameter("atomic")));
+            String summary = batch.apply(request.getReader());
+            if (!batch.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_CONFLICT);
+            }
+            out.print(summary);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print(ProductJsonCodec.error(e.getMessage()));
+        } catch (SQLException e) {
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            out.print(ProductJsonCodec.error("Batch rolled back: " + e.getMessage()));
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * POST /products/{id}/adjust with {"delta": n}: add a signed delta to the
+     * quantity as one conditional write in the store, so concurrent
+     * adjustments never overwrite each other and stock never goes negative.
+     * An If-Match header holding the product's version (the ETag of GET
+     * /products/{id}) makes the adjustment fail with 412 if anything else
+     * changed the product first.
+     *
+     * With ims.writeBehind.enabled, adjustments without If-Match are queued
+     * instead (see {@link QuantityWriteBehind}) and answered with 202.
+     */
+    private void adjustQuantity(HttpServletRequest request, PrintWriter out, HttpServletResponse response) {
+        String productId = ProductJsonCodec.canonicalId(
+                request.getPathInfo().substring(1, request.getPathInfo().length() - "/adjust".length()));
+        if (productId == null) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print(ProductJsonCodec.error("Invalid product ID"));
+            return;
+        }
+        int delta;
+        Long expectedVersion;
+        try {
+            delta = Math.toIntExact(ProductJsonCodec.readLong(request.getReader(), "delta"));
+            expectedVersion = parseIfMatch(request.getHeader("If-Match"));
+        } catch (IOException | IllegalArgumentException | ArithmeticException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print("{\"error\": \"Expected {\\\"delta\\\": <integer>} and an optional numeric If-Match version\"}");
+            return;
+        }
+        QuantityWriteBehind writeBehind = QuantityWriteBehind.shared();
+        if (writeBehind != null && expectedVersion == null) {
+            queueAdjustment(writeBehind, productId, delta, out, response);
+            return;
+        }
+
+        ProductRepository.Adjustment adjustment;
+        try {
+            adjustment = ProductRepository.shared().adjust(productId, delta, expectedVersion);
+        } catch (SQLException e) {
+            response.setStatus(databaseErrorStatus(e));
+            out.print(ProductJsonCodec.error("Database error: " + e.getMessage()));
+            e.printStackTrace();
+            return;
+        }
+        int quantity = adjustment.getQuantity();
+        long version = adjustment.getVersion();
+        switch (adjustment.getOutcome()) {
+            case NOT_FOUND:
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                out.print("{\"error\": \"Product not found\"}");
+                return;
+            case MODIFIED:
+                response.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED);
+                out.print("{\"error\": \"Product was modified\", \"quantity\": " + quantity
+                        + ", \"version\": " + version + "}");
+                return;
+            case INSUFFICIENT_STOCK:
+                response.setStatus(HttpServletResponse.SC_CONFLICT);
+                out.print("{\"error\": \"Insufficient stock\", \"quantity\": " + quantity
+                        + ", \"version\": " + version + "}");
+                return;
+            default:
+                break;
+        }
+
+        ProductEvents.fireQuantityChanged(productId, quantity, version);
+        StringBuilder sb = new StringBuilder(64).append("{\"id\":");
+        ProductJsonCodec.writeString(sb, productId);
+        sb.append(",\"quantity\":").append(quantity).append(",\"version\":").append(version).append('}');
+        out.print(sb);
+    }
+
+    /**
+     * Journal the delta for the next write-behind flush
+     */
+    private void queueAdjustment(QuantityWriteBehind writeBehind, String productId, int delta, PrintWriter out,
+            HttpServletResponse response) {
+        try {
+            if (!writeBehind.add(productId, delta)) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                out.print("{\"error\": \"Product not found\"}");
+                return;
+            }
+        } catch (IOException | SQLException | IllegalStateException e) {
+            // IllegalStateException: write-behind is shutting down
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            out.print(ProductJsonCodec.error("Adjustment not recorded: " + e.getMessage()));
+            e.printStackTrace();
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+        StringBuilder sb = new StringBuilder(64).append("{\"id\":");
+        ProductJsonCodec.writeString(sb, productId);
+        sb.append(",\"pendingDelta\":").append(writeBehind.pendingDelta(productId)).append('}');
+        out.print(sb);
+    }
+
+    /**
+     * @return the version in an If-Match header ("7", "\"7\"" or W/"7"), or null if absent or *
+     * @throws NumberFormatException if the header is not a version
+     */
+    private static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String value = ifMatch.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        return Long.valueOf(value);
+    }
+
+    /**
+     * 503 when the database could not be reached or is overloaded, so the
+     * client retries; 500 for any other database failure
+     */
+    private static int databaseErrorStatus(SQLException e) {
+        String state = e.getSQLState();
+        if (e instanceof SQLTransientException || e instanceof SQLNonTransientConnectionException
+                || (state != null && state.startsWith("08"))) {
+            return HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+        }
+        return HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+    }
 
     @Override
     protected void doPut(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-        enableCors(response);
         response.setContentType("application/json");
         
         String pathInfo = request.getPathInfo();
@@ -198,144 +654,102 @@ protected void doPost(HttpServletRequest request, HttpServletResponse response)
             return;
         }
         
-        String productId = pathInfo.substring(1); // Remove leading slash
+        String productId = ProductJsonCodec.canonicalId(pathInfo.substring(1));
+        if (productId == null) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print(ProductJsonCodec.error("Invalid product ID"));
+            return;
+        }
         
         try {
-            // Read JSON data from request body
-            StringBuilder requestBody = new StringBuilder();
-            BufferedReader reader = request.getReader();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                requestBody.append(line);
+            // Parse the fields to change from the request body
+            ProductJsonCodec.Fields fields = ProductJsonCodec.readProduct(request.getReader());
+            if (!fields.hasAny(ProductJsonCodec.ALL_FIELDS)) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\": \"No fields to update\"}");
+                return;
             }
             
-            JSONObject productJson = new JSONObject(requestBody.toString());
-            
-            // Update product in database
-            try (Connection conn = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
-                // First check if product exists
-                String checkSql = "SELECT COUNT(*) FROM Product WHERE ID = ?";
-                try (PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
-                    checkStmt.setString(1, productId);
-                    ResultSet rs = checkStmt.executeQuery();
-                    if (rs.next() && rs.getInt(1) == 0) {
-                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                        out.print("{\"error\": \"Product not found\"}");
-                        return;
-                    }
-                }
-                
-                // Proceed with update if product exists
-                StringBuilder sqlBuilder = new StringBuilder("UPDATE Product SET ");
-                boolean hasChanges = false;
-                
-                if (productJson.has("products")) {
-                    sqlBuilder.append("Products = ?, ");
-                    hasChanges = true;
-                }
-                if (productJson.has("category")) {
-                    sqlBuilder.append("Category = ?, ");
-                    hasChanges = true;
-                }
-                if (productJson.has("name")) {
-                    sqlBuilder.append("Name = ?, ");
-                    hasChanges = true;
-                }
-                if (productJson.has("brand")) {
-                    sqlBuilder.append("Brand = ?, ");
-                    hasChanges = true;
-                }
-                if (productJson.has("cost")) {
-                    sqlBuilder.append("Cost = ?, ");
-                    hasChanges = true;
-                }
-                if (productJson.has("quantity")) {
-                    sqlBuilder.append("Quantity = ?, ");
-                    hasChanges = true;
-                }
-                
-                if (!hasChanges) {
-                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                    out.print("{\"error\": \"No fields to update\"}");
+            // Every update moves the product to a new version
+            Product product;
+            QuantityWriteBehind writeBehind = QuantityWriteBehind.shared();
+            if (writeBehind != null && fields.hasAny(ProductJsonCodec.QUANTITY)) {
+                // Queued deltas were accepted before this PUT, so they are applied first
+                try {
+                    product = writeBehind.afterFlush(() -> ProductRepository.shared().update(productId, fields));
+                } catch (IllegalStateException e) {
+                    response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    out.print(ProductJsonCodec.error("Update not applied: " + e.getMessage()));
                     return;
                 }
-                
-                // Remove trailing comma and space
-                String sql = sqlBuilder.substring(0, sqlBuilder.length() - 2) + " WHERE ID = ?";
-                
-                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                    int paramIndex = 1;
-                    
-                    if (productJson.has("products")) {
-                        stmt.setString(paramIndex++, productJson.getString("products"));
-                    }
-                    if (productJson.has("category")) {
-                        stmt.setString(paramIndex++, productJson.getString("category"));
-                    }
-                    if (productJson.has("name")) {
-                        stmt.setString(paramIndex++, productJson.getString("name"));
-                    }
-                    if (productJson.has("brand")) {
-                        stmt.setString(paramIndex++, productJson.getString("brand"));
-                    }
-                    if (productJson.has("cost")) {
-                        stmt.setInt(paramIndex++, productJson.getInt("cost"));
-                    }
-                    if (productJson.has("quantity")) {
-                        stmt.setInt(paramIndex++, productJson.getInt("quantity"));
-                    }
-                    
-                    // Set the WHERE clause parameter
-                    stmt.setString(paramIndex, productId);
-                    
-                    int rowsAffected = stmt.executeUpdate();
-                    
-                    if (rowsAffected > 0) {
-                        // Fetch the updated product and return it
-                        getProductById(out, productId, response);
-                    } else {
-                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                        out.print("{\"error\": \"Product not found or no changes made\"}");
-                    }
-                }
+            } else {
+                product = ProductRepository.shared().update(productId, fields);
+            }
+            if (product != null) {
+                ProductEvents.fireSaved(product);
+                out.print(ProductJsonCodec.toJson(product));
+            } else {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                out.print("{\"error\": \"Product not found\"}");
             }
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            out.print("{\"error\": \"" + e.getMessage() + "\"}");
+            out.print(ProductJsonCodec.error(e.getMessage()));
             e.printStackTrace();
         }
     }
 
-    private void getLowStockProducts(PrintWriter out, HttpServletResponse response) throws SQLException {
-    try (Connection conn = DatabaseUtil.getConnection();
-         PreparedStatement stmt = conn.prepareStatement("SELECT * FROM Product WHERE Quantity < 5");
-         ResultSet rs = stmt.executeQuery()) {
-
-        List<Map<String, Object>> products = new ArrayList<>();
-        while (rs.next()) {
-            Map<String, Object> product = new HashMap<>();
-            product.put("id", rs.getInt("ID"));  // Match column name
-            product.put("product", rs.getString("Products"));  // Match column name
-            product.put("category", rs.getString("Category"));
-            product.put("name", rs.getString("Name"));
-            product.put("brand", rs.getString("Brand"));
-            product.put("cost", rs.getDouble("Cost"));
-            product.put("quantity", rs.getInt("Quantity"));
-            products.add(product);
-            
+    /**
+     * GET /products/search?q=...&limit=20: products matching every word of
+     * q, best first, as {"query", "total", "items"}
+     */
+    private void searchProducts(HttpServletRequest request, PrintWriter out, HttpServletResponse response) {
+        String query = request.getParameter("q");
+        if (query == null || query.trim().isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print(ProductJsonCodec.error("q is required"));
+            return;
+        }
+        int limit = 20;
+        String limitParam = request.getParameter("limit");
+        if (limitParam != null) {
+            try {
+                limit = Integer.parseInt(limitParam.trim());
+            } catch (NumberFormatException e) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print(ProductJsonCodec.error("limit must be an integer"));
+                return;
+            }
+            if (limit < 1 || limit > SearchIndex.MAX_LIMIT) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print(ProductJsonCodec.error("limit must be between 1 and " + SearchIndex.MAX_LIMIT));
+                return;
+            }
         }
+        
+        SearchIndex.Result result = SearchIndex.shared().search(query, limit);
+        StringBuilder body = new StringBuilder(256 * Math.max(1, result.getItems().size()));
+        body.append("{\"query\":");
+        ProductJsonCodec.writeString(body, query);
+        body.append(",\"total\":").append(result.getTotal()).append(",\"items\":");
+        ProductJsonCodec.writeArray(body, result.getItems());
+        body.append('}');
+        out.print(body);
+    }
 
-        out.print(new Gson().toJson(products));  // Convert list to JSON and send response
+    /**
+     * Products below the low-stock threshold, served from {@link LowStockIndex}
+     * instead of querying the table on every poll
+     */
+    private void getLowStockProducts(PrintWriter out, HttpServletResponse response) {
+        StringBuilder products = new StringBuilder(1024);
+        ProductJsonCodec.writeArray(products, LowStockIndex.shared().snapshot());
+        out.print(products);
         out.flush();
-    } catch (SQLException e) {
-        response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-        out.print("{\"error\": \"" + e.getMessage() + "\"}");
     }
-}
 
     @Override
     protected void doDelete(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-        enableCors(response);
         response.setContentType("application/json");
         
         String pathInfo = request.getPathInfo();
@@ -347,43 +761,25 @@ protected void doPost(HttpServletRequest request, HttpServletResponse response)
             return;
         }
         
-        String productId = pathInfo.substring(1); // Remove leading slash
+        String productId = ProductJsonCodec.canonicalId(pathInfo.substring(1));
+        if (productId == null) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print(ProductJsonCodec.error("Invalid product ID"));
+            return;
+        }
         
         try {
-            // Delete product from database
-            try (Connection conn = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
-                String sql = "DELETE FROM Product WHERE ID = ?";
-                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                    stmt.setString(1, productId);
-                    
-                    int rowsAffected = stmt.executeUpdate();
-                    
-                    if (rowsAffected > 0) {
-                        out.print("{\"success\": true, \"message\": \"Product deleted successfully\"}");
-                    } else {
-                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                        out.print("{\"error\": \"Product not found\"}");
-                    }
-                }
+            if (ProductRepository.shared().delete(productId)) {
+                ProductEvents.fireDeleted(productId);
+                out.print("{\"success\": true, \"message\": \"Product deleted successfully\"}");
+            } else {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                out.print("{\"error\": \"Product not found\"}");
             }
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            out.print("{\"error\": \"" + e.getMessage() + "\"}");
+            out.print(ProductJsonCodec.error(e.getMessage()));
             e.printStackTrace();
         }
     }
-    
-    @Override
-    protected void doOptions(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-        // Enable CORS
-        enableCors(response);
-        response.setStatus(HttpServletResponse.SC_OK);
-    }
-    
-    private void enableCors(HttpServletResponse response) {
-        response.setHeader("Access-Control-Allow-Origin", "*");
-        response.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization");
-        response.setHeader("Access-Control-Max-Age", "3600");
-    }
 }
@@ -0,0 +1,196 @@
+package Inventory.src.Inventory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only journal of accepted quantity deltas.
+ *
+ * Each record is a text line "seq id delta". Records go to the current
+ * segment file; {@link #append} returns only once the record is on disk.
+ * Concurrent appenders share one fsync (group commit): whoever syncs first
+ * forces everything written so far and the others find their record already
+ * durable. {@link #rotate} seals the current segment so it can be deleted
+ * once its deltas are committed to the database.
+ */
+public class QuantityJournal implements AutoCloseable {
+    private static final String PREFIX = "quantity-";
+    private static final String SUFFIX = ".log";
+
+    /**
+     * Receives records read back by {@link #recover}
+     */
+    public interface Replay {
+        void delta(long seq, String productId, long delta);
+    }
+
+    private final Path directory;
+    private final Object syncLock = new Object();
+    private final List<Path> sealed = new ArrayList<>();
+    private FileChannel channel;
+    private Path segment;
+    private long segmentNumber;
+    private long lastSeq;
+    private volatile long durableSeq;
+
+    public QuantityJournal(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Read every existing segment and open a new one for appending. Existing
+     * segments are sealed: they are deleted by the next {@link #deleteSealed()}.
+     * An incomplete last line (a crash mid-write) is ignored; it was never
+     * acknowledged.
+     *
+     * @param afterSeq records up to and including this sequence number are skipped
+     */
+    public synchronized void recover(long afterSeq, Replay replay) throws IOException {
+        Files.createDirectories(directory);
+        lastSeq = afterSeq;
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        segments.sort(null);
+        for (Path file : segments) {
+            segmentNumber = Math.max(segmentNumber, segmentNumber(file));
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split(" ");
+                    if (fields.length != 3) {
+                        continue;
+                    }
+                    long seq;
+                    long delta;
+                    try {
+                        seq = Long.parseLong(fields[0]);
+                        delta = Long.parseLong(fields[2]);
+                    } catch (NumberFormatException e) {
+                        continue;
+                    }
+                    lastSeq = Math.max(lastSeq, seq);
+                    if (seq > afterSeq) {
+                        replay.delta(seq, fields[1], delta);
+                    }
+                }
+            }
+            sealed.add(file);
+        }
+        durableSeq = lastSeq;
+        openSegment();
+    }
+
+    /**
+     * Write one record and wait until it is durable
+     *
+     * @param applied run while the journal is locked, after the record has
+     *        its sequence number, so that {@link #rotate} sees either both
+     *        the record and its effect or neither
+     * @return the record's sequence number
+     */
+    public long append(String productId, long delta, Runnable applied) throws IOException {
+        long seq;
+        synchronized (this) {
+            seq = ++lastSeq;
+            ByteBuffer record = StandardCharsets.UTF_8.encode(seq + " " + productId + " " + delta + "\n");
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            applied.run();
+        }
+        sync(seq);
+        return seq;
+    }
+
+    private void sync(long seq) throws IOException {
+        if (durableSeq >= seq) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (durableSeq >= seq) {
+                return;
+            }
+            long target;
+            FileChannel current;
+            synchronized (this) {
+                target = lastSeq;
+                current = channel;
+            }
+            current.force(false);
+            durableSeq = Math.max(durableSeq, target);
+        }
+    }
+
+    /**
+     * Seal the current segment and start a new one
+     *
+     * @param sealing run while appends are blocked, so it sees the effect of
+     *        every sealed record and of no later one
+     * @return the sequence number of the last sealed record
+     */
+    public long rotate(Runnable sealing) throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                channel.force(false);
+                channel.close();
+                durableSeq = lastSeq;
+                sealed.add(segment);
+                openSegment();
+                sealing.run();
+                return lastSeq;
+            }
+        }
+    }
+
+    /**
+     * Delete the sealed segments, once everything in them is committed
+     */
+    public synchronized void deleteSealed() throws IOException {
+        for (Path file : sealed) {
+            Files.deleteIfExists(file);
+        }
+        sealed.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (channel != null) {
+                    channel.force(false);
+                    channel.close();
+                    channel = null;
+                }
+            }
+        }
+    }
+
+    private void openSegment() throws IOException {
+        segmentNumber++;
+        segment = directory.resolve(String.format("%s%012d%s", PREFIX, segmentNumber, SUFFIX));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
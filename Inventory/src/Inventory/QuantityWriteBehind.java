@@ -0,0 +1,374 @@
+package Inventory.src.Inventory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Optional write-behind for stock adjustments on hot products.
+ *
+ * Instead of one UPDATE per adjustment, deltas are journaled to local disk
+ * (so an acknowledged adjustment survives a crash) and summed per product in
+ * {@link LongAdder}s, which spread concurrent additions over striped cells
+ * instead of contending on one value or lock. A single flusher thread
+ * applies the sums every flushIntervalMs, or as soon as flushThreshold
+ * adjustments are pending, in one batched transaction. The same transaction
+ * records the last journal sequence number it covers in
+ * WriteBehindCheckpoint, so replaying the journal after a crash never
+ * applies a delta twice. A PUT that sets the quantity outright runs on the
+ * flusher thread right after a flush, so no earlier delta lands on top of it.
+ *
+ * Deltas are not checked against the stock level when accepted; use the
+ * synchronous path (If-Match or write-behind disabled) where stock must
+ * never go below zero.
+ */
+public class QuantityWriteBehind implements AutoCloseable {
+    private static final QuantityWriteBehind SHARED = InventoryConfig.getBoolean("writeBehind.enabled", false)
+            ? new QuantityWriteBehind(
+                    Paths.get(InventoryConfig.getString("writeBehind.journalDir",
+                            Paths.get(System.getProperty("java.io.tmpdir"), "ims-journal").toString())),
+                    InventoryConfig.getLong("writeBehind.flushIntervalMs", 50),
+                    InventoryConfig.getInt("writeBehind.flushThreshold", 1000))
+            : null;
+
+    private static final String CHECKPOINT = "quantity";
+
+    private final QuantityJournal journal;
+    private final long flushIntervalMillis;
+    private final int flushThreshold;
+
+    // Accepted deltas not yet taken by a flush
+    private final Map<String, LongAdder> pending = new ConcurrentHashMap<>();
+    // Deltas taken by the running flush and not yet committed
+    private final Map<String, Long> inFlight = new ConcurrentHashMap<>();
+    // Shared by merged reads; exclusive while deltas move between the maps
+    // above and the database, so a read never counts a delta twice or not at all
+    private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private final AtomicInteger unflushed = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private ScheduledExecutorService flusher;
+    private volatile boolean accepting;
+
+    public QuantityWriteBehind(Path journalDirectory, long flushIntervalMillis, int flushThreshold) {
+        this.journal = new QuantityJournal(journalDirectory);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.flushThreshold = flushThreshold;
+    }
+
+    /**
+     * @return the shared instance, or null if ims.writeBehind.enabled is not set
+     */
+    public static QuantityWriteBehind shared() {
+        return SHARED;
+    }
+
+    /**
+     * Replay journaled deltas that were not committed before the last
+     * shutdown or crash, then start flushing
+     */
+    public synchronized void start() throws IOException, SQLException {
+        journal.recover(readCheckpoint(), (seq, productId, delta) -> {
+            pending.computeIfAbsent(productId, id -> new LongAdder()).add(delta);
+            unflushed.incrementAndGet();
+        });
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ims-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, 0, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        accepting = true;
+    }
+
+    /**
+     * Accept a delta; returns once it is journaled
+     *
+     * @return false if the product does not exist
+     * @throws IllegalStateException if write-behind is not running
+     */
+    public boolean add(String productId, int delta) throws IOException, SQLException {
+        if (!accepting) {
+            throw new IllegalStateException("Write-behind is not running");
+        }
+        // Checked on every adjustment, since a flush cannot report a missing
+        // row back to the client; a lookup by key takes no row lock
+        if (!exists(productId)) {
+            return false;
+        }
+        journal.append(productId, delta, () -> pending.computeIfAbsent(productId, id -> new LongAdder()).add(delta));
+        if (unflushed.incrementAndGet() >= flushThreshold && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // Shutting down; close() flushes what is left
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Run a write that sets quantities outright (PUT) on the flusher thread,
+     * right after a flush, so the deltas accepted before it are applied
+     * before it and none of them lands on top of its value
+     *
+     * @throws IllegalStateException if write-behind is not running
+     */
+    public <T> T afterFlush(Callable<T> write) throws IOException, SQLException {
+        if (!accepting) {
+            throw new IllegalStateException("Write-behind is not running");
+        }
+        Future<T> result;
+        try {
+            result = flusher.submit(() -> {
+                flush();
+                return write.call();
+            });
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("Write-behind is not running", e);
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the flush", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Sum of accepted deltas for the product that are not yet in the database
+     */
+    public long pendingDelta(String productId) {
+        LongAdder adder = pending.get(productId);
+        Long taken = inFlight.get(productId);
+        return (adder == null ? 0 : adder.sum()) + (taken == null ? 0 : taken);
+    }
+
+    /**
+     * Read a product with its pending deltas applied
+     *
+     * @return the product, or null if there is no such product
+     */
+    public Product readMerged(String productId) throws SQLException {
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM Product WHERE ID = ?")) {
+            stmt.setString(1, productId);
+            flushLock.readLock().lock();
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                Product product = DatabaseUtil.toProduct(rs);
+                product.setQuantity((int) (product.getQuantity() + pendingDelta(productId)));
+                return product;
+            } finally {
+                flushLock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Apply every pending delta to the database in one transaction
+     */
+    public void flush() throws IOException, SQLException {
+        flushRequested.set(false);
+        if (unflushed.get() == 0) {
+            return;
+        }
+        long coveredSeq;
+        flushLock.writeLock().lock();
+        try {
+            // append() adds to the adders while holding the journal lock, so
+            // the sums taken here are exactly the records up to coveredSeq
+            coveredSeq = journal.rotate(() -> {
+                unflushed.set(0);
+                for (Map.Entry<String, LongAdder> entry : pending.entrySet()) {
+                    long delta = entry.getValue().sum();
+                    if (delta != 0) {
+                        inFlight.put(entry.getKey(), delta);
+                    }
+                }
+                // Appends are blocked, so no adder is in use; products that
+                // stop being adjusted do not keep an entry
+                pending.clear();
+            });
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+
+        List<Product> flushed = new ArrayList<>();
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                if (!inFlight.isEmpty()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(
+                            "UPDATE Product SET Quantity = Quantity + ?, Version = Version + 1 WHERE ID = ?")) {
+                        for (Map.Entry<String, Long> entry : inFlight.entrySet()) {
+                            stmt.setLong(1, entry.getValue());
+                            stmt.setString(2, entry.getKey());
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                    }
+                    readBack(conn, flushed);
+                }
+                writeCheckpoint(conn, coveredSeq);
+                flushLock.writeLock().lock();
+                try {
+                    commit(conn, coveredSeq);
+                    inFlight.clear();
+                } finally {
+                    flushLock.writeLock().unlock();
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            restoreInFlight();
+            throw e;
+        }
+        journal.deleteSealed();
+        for (Product product : flushed) {
+            ProductEvents.fireSaved(product);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException, SQLException {
+        if (flusher == null) {
+            return;
+        }
+        accepting = false;
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } finally {
+            journal.close();
+        }
+    }
+
+    /**
+     * Commit, treating a failed commit whose checkpoint nevertheless landed
+     * (e.g. the connection dropped after the server committed) as success,
+     * so its deltas are not applied a second time
+     */
+    private static void commit(Connection conn, long coveredSeq) throws SQLException {
+        try {
+            conn.commit();
+        } catch (SQLException e) {
+            if (readCheckpoint() < coveredSeq) {
+                throw e;
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException | SQLException | RuntimeException e) {
+            // Deltas stay pending and journaled; the next flush retries them
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Put the deltas of a failed flush back so the next one retries them
+     */
+    private void restoreInFlight() {
+        flushLock.writeLock().lock();
+        try {
+            for (Map.Entry<String, Long> entry : inFlight.entrySet()) {
+                pending.computeIfAbsent(entry.getKey(), id -> new LongAdder()).add(entry.getValue());
+            }
+            inFlight.clear();
+            unflushed.incrementAndGet();
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    private void readBack(Connection conn, List<Product> flushed) throws SQLException {
+        List<String> ids = new ArrayList<>(inFlight.keySet());
+        StringBuilder sql = new StringBuilder("SELECT * FROM Product WHERE ID IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < ids.size(); i++) {
+                stmt.setString(i + 1, ids.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    flushed.add(DatabaseUtil.toProduct(rs));
+                }
+            }
+        }
+    }
+
+    private static boolean exists(String productId) throws SQLException {
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM Product WHERE ID = ?")) {
+            stmt.setString(1, productId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static long readCheckpoint() throws SQLException {
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT Seq FROM WriteBehindCheckpoint WHERE Name = ?")) {
+            stmt.setString(1, CHECKPOINT);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    private static void writeCheckpoint(Connection conn, long seq) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO WriteBehindCheckpoint (Name, Seq) VALUES (?, ?) ON DUPLICATE KEY UPDATE Seq = ?")) {
+            stmt.setString(1, CHECKPOINT);
+            stmt.setLong(2, seq);
+            stmt.setLong(3, seq);
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package Inventory.src.Inventory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+
+/**
+ * Rebuilds an in-memory copy of the table beside the live one.
+ *
+ * The owner applies every write to its live copy under its lock and passes
+ * it to record(); while a rebuild reads the table those writes are kept and
+ * replayed onto the new copy before it is installed, so nothing committed
+ * during the read is lost. Only one rebuild runs at a time.
+ */
+final class Rebuild<T> {
+    interface Source<T> {
+        T read() throws SQLException;
+    }
+
+    private final Lock lock;
+    // Writes committed while a rebuild reads the table, replayed onto the new copy
+    private List<Consumer<T>> pending;
+
+    Rebuild(Lock lock) {
+        this.lock = lock;
+    }
+
+    /**
+     * Read a new copy without holding the lock, then replay the writes
+     * recorded meanwhile and install it under the lock. Returns at once if
+     * another rebuild is already reading the table.
+     */
+    void run(Source<T> source, Consumer<T> install) throws SQLException {
+        lock.lock();
+        try {
+            if (pending != null) {
+                return;
+            }
+            pending = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+
+        T rebuilt;
+        try {
+            rebuilt = source.read();
+        } catch (SQLException | RuntimeException e) {
+            lock.lock();
+            pending = null;
+            lock.unlock();
+            throw e;
+        }
+
+        lock.lock();
+        try {
+            for (Consumer<T> write : pending) {
+                write.accept(rebuilt);
+            }
+            install.accept(rebuilt);
+        } finally {
+            pending = null;
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Keep a write just applied to the live copy; the caller holds the lock
+     */
+    void record(Consumer<T> write) {
+        if (pending != null) {
+            pending.add(write);
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package Inventory.src.Inventory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Sends reads to MySQL read replicas, each with its own
+ * {@link ConnectionPool}, and keeps them off replicas that are behind.
+ *
+ * Every ims.db.replicas.probeIntervalMs the router compares each replica's
+ * last ProductChange entry with the primary's. A replica that has the
+ * primary's last change is caught up to the time of the probe; one that is
+ * missing changes is caught up to the time of the first one it lacks, and
+ * its lag is how long ago that was. Replicas lagging more than
+ * ims.db.replicas.maxLagMs, or whose probe failed, get no reads.
+ *
+ * Read-your-writes: a caller passes the time by which its own writes were
+ * committed, and only replicas caught up past that time are used; if none
+ * are, the read goes to the primary. For a client that is the start of its
+ * last write plus ims.sync.settleMs, the longest a write transaction runs.
+ *
+ * Reads that fill the shared {@link ProductCache} must also not miss any
+ * write made through this server, or a stale row would be cached for
+ * everyone; they pass {@link ProductCache#lastWriteMillis()} as well.
+ */
+public class ReplicaRouter {
+    private static final String LEAST_LOADED = "least-loaded";
+    private static final String ROUND_ROBIN = "round-robin";
+
+    // Cookie holding the time by which the client's last write was committed
+    private static final String WRITTEN_COOKIE = "ims-written";
+    private static final long SETTLE_MILLIS = InventoryConfig.getLong("sync.settleMs", 5000);
+
+    private final List<Replica> replicas;
+    private final boolean leastLoaded;
+    private final long maxLagMillis;
+    private final long probeIntervalMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private ScheduledExecutorService prober;
+    private boolean primaryFailing;
+
+    /**
+     * @param pools one pool per replica, in the order of ims.db.replicas
+     * @param balance "least-loaded" or "round-robin"
+     */
+    public ReplicaRouter(List<ConnectionPool> pools, String balance, long maxLagMillis, long probeIntervalMillis) {
+        if (!LEAST_LOADED.equals(balance) && !ROUND_ROBIN.equals(balance)) {
+            throw new IllegalArgumentException("Replica balance must be " + LEAST_LOADED + " or " + ROUND_ROBIN
+                    + ", not " + balance);
+        }
+        List<Replica> list = new ArrayList<>();
+        for (ConnectionPool pool : pools) {
+            list.add(new Replica(list.size(), pool));
+        }
+        this.replicas = Collections.unmodifiableList(list);
+        this.leastLoaded = LEAST_LOADED.equals(balance);
+        this.maxLagMillis = maxLagMillis;
+        this.probeIntervalMillis = probeIntervalMillis;
+    }
+
+    /**
+     * One replica and what the last probe found
+     */
+    public static final class Replica {
+        private final int index;
+        private final ConnectionPool pool;
+        // Every transaction committed on the primary before this time is on the replica
+        private volatile long caughtUpTo = Long.MIN_VALUE;
+        private volatile long lagMillis = -1;
+        private volatile long probedAt;
+        // Report a failing probe once, not every interval
+        private boolean failing;
+
+        Replica(int index, ConnectionPool pool) {
+            this.index = index;
+            this.pool = pool;
+        }
+
+        public ConnectionPool getPool() {
+            return pool;
+        }
+
+        /**
+         * Lag found by the last probe in milliseconds; -1 if it failed
+         */
+        public long getLagMillis() {
+            return lagMillis;
+        }
+
+        void markDown() {
+            lagMillis = -1;
+            caughtUpTo = Long.MIN_VALUE;
+        }
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Start probing replica lag; until the first probe every read goes to
+     * the primary
+     */
+    public synchronized void start() {
+        if (prober == null) {
+            prober = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "ims-replica-probe");
+                thread.setDaemon(true);
+                return thread;
+            });
+            prober.scheduleWithFixedDelay(this::probe, 0, probeIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop probing and close the replica pools
+     */
+    public synchronized void close() {
+        if (prober != null) {
+            prober.shutdownNow();
+            prober = null;
+        }
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+    }
+
+    /**
+     * Borrow a connection from a replica that has every transaction
+     * committed on the primary before the given time
+     *
+     * @param committedBefore time in milliseconds the read must not miss
+     *        writes from; 0 for none
+     * @return a replica connection, or null if the read should go to the primary
+     */
+    public Connection getConnection(long committedBefore) {
+        long stale = System.currentTimeMillis() - 3 * probeIntervalMillis;
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        Replica chosen = null;
+        int chosenLoad = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.lagMillis < 0 || replica.lagMillis > maxLagMillis || replica.probedAt < stale
+                    || replica.caughtUpTo < committedBefore) {
+                continue;
+            }
+            if (!leastLoaded) {
+                chosen = replica;
+                break;
+            }
+            int load = replica.pool.getActiveCount() + replica.pool.getWaiterCount();
+            if (load < chosenLoad) {
+                chosen = replica;
+                chosenLoad = load;
+            }
+        }
+        if (chosen == null) {
+            return null;
+        }
+        try {
+            return chosen.pool.getConnection();
+        } catch (SQLTransientConnectionException e) {
+            // Its pool is exhausted; the primary takes this read
+            return null;
+        } catch (SQLException e) {
+            // Keep reads off it until the next probe finds it working
+            chosen.markDown();
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Remember on the client that it is writing now, so its next reads see
+     * the write; call before the response is committed
+     */
+    public static void rememberWrite(HttpServletRequest request, HttpServletResponse response) {
+        Cookie cookie = new Cookie(WRITTEN_COOKIE, Long.toString(System.currentTimeMillis() + SETTLE_MILLIS));
+        cookie.setPath(request.getContextPath().isEmpty() ? "/" : request.getContextPath());
+        cookie.setHttpOnly(true);
+        // Long enough for any replica within the lag limit to have the write
+        cookie.setMaxAge((int) (SETTLE_MILLIS / 1000) + 60);
+        response.addCookie(cookie);
+    }
+
+    /**
+     * Time by which the client's last write was committed, from the cookie
+     * set by {@link #rememberWrite}; 0 if it has not written recently
+     */
+    public static long clientWrittenBy(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (WRITTEN_COOKIE.equals(cookie.getName())) {
+                    try {
+                        return Long.parseLong(cookie.getValue());
+                    } catch (NumberFormatException e) {
+                        // Not ours; treat as a fresh write
+                        return System.currentTimeMillis() + SETTLE_MILLIS;
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Measure how far each replica is behind the primary
+     */
+    void probe() {
+        long probeStart = System.currentTimeMillis();
+        long primarySeq;
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            primarySeq = lastSeq(conn);
+            for (Replica replica : replicas) {
+                probe(replica, conn, primarySeq, probeStart);
+            }
+            primaryFailing = false;
+        } catch (SQLException | RuntimeException e) {
+            // Without the primary's position no replica can be trusted
+            for (Replica replica : replicas) {
+                replica.markDown();
+            }
+            if (!primaryFailing) {
+                primaryFailing = true;
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void probe(Replica replica, Connection primary, long primarySeq, long probeStart) throws SQLException {
+        long replicaSeq;
+        try (Connection conn = replica.pool.getConnection()) {
+            replicaSeq = lastSeq(conn);
+        } catch (SQLException e) {
+            if (!replica.failing) {
+                replica.failing = true;
+                e.printStackTrace();
+            }
+            replica.markDown();
+            return;
+        }
+        replica.failing = false;
+
+        long lag = 0;
+        if (replicaSeq < primarySeq) {
+            // How long ago the first change the replica lacks was made, by the primary's clock
+            String sql = "SELECT ChangedAt, CURRENT_TIMESTAMP(3) AS Now FROM ProductChange "
+                    + "WHERE Seq > ? ORDER BY Seq LIMIT 1";
+            try (PreparedStatement stmt = primary.prepareStatement(sql)) {
+                stmt.setLong(1, replicaSeq);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        lag = Math.max(0, rs.getTimestamp("Now").getTime() - rs.getTimestamp("ChangedAt").getTime());
+                    }
+                }
+            }
+        }
+        replica.caughtUpTo = probeStart - lag;
+        replica.lagMillis = lag;
+        replica.probedAt = probeStart;
+    }
+
+    private static long lastSeq(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(Seq) FROM ProductChange")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Replica lag and pool counters as a JSON array
+     */
+    public String statsJson() {
+        StringBuilder sb = new StringBuilder("[");
+        for (Replica replica : replicas) {
+            if (replica.index > 0) {
+                sb.append(", ");
+            }
+            sb.append("{\"replica\": ").append(replica.index)
+                    .append(", \"lagMs\": ").append(replica.lagMillis)
+                    .append(", \"pool\": ").append(replica.pool.statsJson())
+                    .append('}');
+        }
+        return sb.append(']').toString();
+    }
+}
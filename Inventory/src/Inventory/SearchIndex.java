@@ -0,0 +1,642 @@
+package Inventory.src.Inventory;
+
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory full-text index over the Name, Products, Brand and Category of
+ * every product, serving GET /products/search.
+ *
+ * Each word maps to a sorted posting list of the products containing it,
+ * with a bit per field it occurs in. Query words match indexed words
+ * exactly or as a prefix ("sam" finds "samsung"); a word that is no prefix
+ * of anything is matched against the dictionary allowing one typo (two for
+ * words of 8 or more letters), with candidates found through the bigrams
+ * they share. Every query word must match. Products are ranked by the sum,
+ * over query words, of field weight (name highest, category lowest) times
+ * the rarity of the matched word times how exactly it matched.
+ *
+ * Built from the database at startup and kept current from committed
+ * writes. A rebuild (after a bulk import) runs beside the live index and
+ * replaces it when done; writes committed meanwhile are applied to both.
+ */
+public class SearchIndex implements ProductChangeListener {
+    private static final SearchIndex SHARED = new SearchIndex(
+            InventoryConfig.getInt("search.maxExpansions", 50));
+
+    public static final int MAX_LIMIT = 100;
+    private static final int MAX_QUERY_WORDS = 8;
+    private static final int MAX_WORD_LENGTH = 32;
+    // Bigrams are taken from this many leading characters of each word
+    private static final int GRAM_CHARS = 16;
+
+    // Field bits in the postings, in the order of FIELD_WEIGHTS
+    private static final int NAME = 1;
+    private static final int PRODUCTS = 2;
+    private static final int BRAND = 4;
+    private static final int CATEGORY = 8;
+    private static final float[] FIELD_WEIGHTS = { 3f, 2f, 2f, 1f };
+
+    private static final float EXACT = 1f;
+    private static final float PREFIX = 0.75f;
+    private static final float FUZZY = 0.5f;
+
+    private final int maxExpansions;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Index index = new Index();
+    private final Rebuild<Index> rebuild = new Rebuild<>(lock.writeLock());
+
+    public SearchIndex(int maxExpansions) {
+        this.maxExpansions = maxExpansions;
+    }
+
+    public static SearchIndex shared() {
+        return SHARED;
+    }
+
+    /**
+     * Matching products, best first
+     */
+    public static final class Result {
+        private final List<Product> items;
+        private final int total;
+
+        Result(List<Product> items, int total) {
+            this.items = items;
+            this.total = total;
+        }
+
+        public List<Product> getItems() {
+            return items;
+        }
+
+        /**
+         * Number of products matching, of which getItems() holds the first limit
+         */
+        public int getTotal() {
+            return total;
+        }
+    }
+
+    /**
+     * Build a new index from the product store and replace the current one
+     */
+    public void load() throws SQLException {
+        rebuild.run(() -> {
+            Index rebuilt = new Index();
+            ProductRepository.shared().forEach(rebuilt::put, ProductRepository.LATEST);
+            return rebuilt;
+        }, rebuilt -> index = rebuilt);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.productCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param query words separated by spaces or punctuation; case and accents are ignored
+     * @param limit maximum number of products returned
+     */
+    public Result search(String query, int limit) {
+        List<String> words = new ArrayList<>();
+        tokenize(query, word -> {
+            if (words.size() < MAX_QUERY_WORDS && !words.contains(word)) {
+                words.add(word);
+            }
+        });
+        if (words.isEmpty()) {
+            return new Result(new ArrayList<>(), 0);
+        }
+        lock.readLock().lock();
+        try {
+            return index.search(words, Math.max(1, Math.min(limit, MAX_LIMIT)), maxExpansions);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void productSaved(Product product) {
+        write(index -> index.put(product));
+    }
+
+    @Override
+    public void quantityChanged(String productId, int quantity, long version) {
+        write(index -> index.updateQuantity(productId, quantity, version));
+    }
+
+    @Override
+    public void productDeleted(String productId) {
+        write(index -> index.remove(productId));
+    }
+
+    @Override
+    public void productsReloaded() {
+        try {
+            load();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void write(Consumer<Index> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(index);
+            rebuild.record(change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Split text into lower-case words of letters and digits, without accents
+     */
+    static void tokenize(String text, Consumer<String> words) {
+        if (text == null) {
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                // Decompose so accents become separate marks, which are dropped below
+                text = Normalizer.normalize(text, Normalizer.Form.NFD);
+                break;
+            }
+        }
+        StringBuilder word = new StringBuilder(16);
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (word.length() < MAX_WORD_LENGTH) {
+                    word.append(Character.toLowerCase(c));
+                }
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK && word.length() > 0) {
+                words.accept(word.toString());
+                word.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * Edit distance (with transpositions) between the query word and the
+     * closest prefix of the term, or max + 1 if it is larger than max
+     */
+    static int prefixDistance(String word, String term, int max) {
+        int n = word.length();
+        int rows = Math.min(term.length(), n + max);
+        int[] previous2 = new int[n + 1];
+        int[] previous = new int[n + 1];
+        int[] current = new int[n + 1];
+        for (int j = 0; j <= n; j++) {
+            previous[j] = j;
+        }
+        int best = n; // distance to the empty prefix
+        for (int i = 1; i <= rows; i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            char t = term.charAt(i - 1);
+            for (int j = 1; j <= n; j++) {
+                char w = word.charAt(j - 1);
+                int cost = t == w ? 0 : 1;
+                int value = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && t == word.charAt(j - 2) && term.charAt(i - 2) == w) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            best = Math.min(best, current[n]);
+            if (rowMin > max) {
+                break; // longer prefixes only get further away
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return best <= max ? best : max + 1;
+    }
+
+    private static int maxTypos(String word) {
+        return word.length() < 4 ? 0 : word.length() < 8 ? 1 : 2;
+    }
+
+    /**
+     * Products containing one word, sorted by document number, with the
+     * fields the word occurs in
+     */
+    private static final class Postings {
+        int[] docs = new int[2];
+        byte[] fields = new byte[2];
+        int size;
+
+        void add(int doc, int fieldBits) {
+            int at = Arrays.binarySearch(docs, 0, size, doc);
+            if (at >= 0) {
+                fields[at] |= fieldBits;
+                return;
+            }
+            at = -at - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                fields = Arrays.copyOf(fields, size * 2);
+            }
+            System.arraycopy(docs, at, docs, at + 1, size - at);
+            System.arraycopy(fields, at, fields, at + 1, size - at);
+            docs[at] = doc;
+            fields[at] = (byte) fieldBits;
+            size++;
+        }
+
+        void remove(int doc) {
+            int at = Arrays.binarySearch(docs, 0, size, doc);
+            if (at >= 0) {
+                System.arraycopy(docs, at + 1, docs, at, size - at - 1);
+                System.arraycopy(fields, at + 1, fields, at, size - at - 1);
+                size--;
+            }
+        }
+    }
+
+    private static final class Term {
+        final String text;
+        final Postings postings = new Postings();
+
+        Term(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * A dictionary word a query word matched, and how well
+     */
+    private static final class Expansion {
+        final Term term;
+        final float quality;
+
+        Expansion(Term term, float quality) {
+            this.term = term;
+            this.quality = quality;
+        }
+    }
+
+    /**
+     * The index contents. Words stay in the dictionary after their last
+     * product is gone; they only cost memory until the next rebuild.
+     */
+    private static final class Index {
+        final TreeMap<String, Term> dictionary = new TreeMap<>();
+        final List<Term> termsById = new ArrayList<>();
+        // (previous char << 16 | char) -> ids of terms containing that bigram; word starts use previous char 0
+        final Map<Integer, int[]> bigrams = new HashMap<>();
+        final Map<String, Integer> docsByProductId = new HashMap<>();
+        Product[] products = new Product[1024];
+        int[] freeDocs = new int[16];
+        int freeCount;
+        int nextDoc;
+        int productCount;
+
+        void put(Product product) {
+            Integer doc = docsByProductId.get(product.getId());
+            if (doc != null) {
+                Product indexed = products[doc];
+                if (indexed.getVersion() > product.getVersion()) {
+                    return; // a newer write was already applied
+                }
+                if (sameText(indexed, product)) {
+                    products[doc] = product;
+                    return;
+                }
+                unindex(doc, indexed);
+            } else {
+                doc = freeCount > 0 ? freeDocs[--freeCount] : nextDoc++;
+                if (doc == products.length) {
+                    products = Arrays.copyOf(products, products.length * 2);
+                }
+                docsByProductId.put(product.getId(), doc);
+                productCount++;
+            }
+            products[doc] = product;
+            int d = doc;
+            tokenize(product.getName(), word -> term(word).postings.add(d, NAME));
+            tokenize(product.getProducts(), word -> term(word).postings.add(d, PRODUCTS));
+            tokenize(product.getBrand(), word -> term(word).postings.add(d, BRAND));
+            tokenize(product.getCategory(), word -> term(word).postings.add(d, CATEGORY));
+        }
+
+        void updateQuantity(String productId, int quantity, long version) {
+            Integer doc = docsByProductId.get(productId);
+            if (doc == null || products[doc].getVersion() > version) {
+                return;
+            }
+            Product indexed = products[doc];
+            Product adjusted = new Product(productId, indexed.getProducts(), indexed.getCategory(),
+                    indexed.getName(), indexed.getBrand(), indexed.getCost(), quantity);
+            adjusted.setVersion(version);
+            products[doc] = adjusted;
+        }
+
+        void remove(String productId) {
+            Integer doc = docsByProductId.remove(productId);
+            if (doc == null) {
+                return;
+            }
+            unindex(doc, products[doc]);
+            products[doc] = null;
+            if (freeCount == freeDocs.length) {
+                freeDocs = Arrays.copyOf(freeDocs, freeCount * 2);
+            }
+            freeDocs[freeCount++] = doc;
+            productCount--;
+        }
+
+        private void unindex(int doc, Product product) {
+            Consumer<String> remove = word -> {
+                Term term = dictionary.get(word);
+                if (term != null) {
+                    term.postings.remove(doc);
+                }
+            };
+            tokenize(product.getName(), remove);
+            tokenize(product.getProducts(), remove);
+            tokenize(product.getBrand(), remove);
+            tokenize(product.getCategory(), remove);
+        }
+
+        private static boolean sameText(Product a, Product b) {
+            return Objects.equals(a.getName(), b.getName())
+                    && Objects.equals(a.getProducts(), b.getProducts())
+                    && Objects.equals(a.getBrand(), b.getBrand())
+                    && Objects.equals(a.getCategory(), b.getCategory());
+        }
+
+        private Term term(String word) {
+            Term term = dictionary.get(word);
+            if (term == null) {
+                term = new Term(word);
+                dictionary.put(word, term);
+                int id = termsById.size();
+                termsById.add(term);
+                int previous = 0;
+                for (int i = 0; i < Math.min(word.length(), GRAM_CHARS); i++) {
+                    int gram = previous << 16 | word.charAt(i);
+                    int[] ids = bigrams.get(gram);
+                    // ids[0] is the count
+                    if (ids == null) {
+                        ids = new int[4];
+                    } else if (ids[0] + 1 == ids.length) {
+                        ids = Arrays.copyOf(ids, ids.length * 2);
+                    }
+                    if (ids[0] == 0 || ids[ids[0]] != id) {
+                        ids[++ids[0]] = id;
+                    }
+                    bigrams.put(gram, ids);
+                    previous = word.charAt(i);
+                }
+            }
+            return term;
+        }
+
+        Result search(List<String> words, int limit, int maxExpansions) {
+            List<List<Expansion>> expansions = new ArrayList<>(words.size());
+            List<Long> costs = new ArrayList<>(words.size());
+            for (String word : words) {
+                List<Expansion> matches = expand(word, maxExpansions);
+                if (matches.isEmpty()) {
+                    return new Result(new ArrayList<>(), 0);
+                }
+                long cost = 0;
+                for (Expansion expansion : matches) {
+                    cost += expansion.term.postings.size;
+                }
+                expansions.add(matches);
+                costs.add(cost);
+            }
+            // Start from the rarest word so the candidate set is as small as possible
+            Integer[] order = new Integer[words.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(costs.get(a), costs.get(b)));
+
+            ScoreTable scores = new ScoreTable((int) Math.min(costs.get(order[0]), productCount));
+            for (int round = 0; round < order.length; round++) {
+                for (Expansion expansion : expansions.get(order[round])) {
+                    Postings postings = expansion.term.postings;
+                    float weight = expansion.quality * idf(postings.size);
+                    for (int i = 0; i < postings.size; i++) {
+                        scores.match(postings.docs[i], round, weight * fieldWeight(postings.fields[i]));
+                    }
+                }
+                scores.endRound(round);
+            }
+            return scores.top(limit, products);
+        }
+
+        /**
+         * Dictionary words the query word matches: itself, words it is a
+         * prefix of, or, failing both, words within the typo allowance
+         */
+        private List<Expansion> expand(String word, int maxExpansions) {
+            List<Expansion> matches = new ArrayList<>();
+            Term exact = dictionary.get(word);
+            if (exact != null && exact.postings.size > 0) {
+                matches.add(new Expansion(exact, EXACT));
+            }
+            NavigableMap<String, Term> longer = dictionary.tailMap(word, false);
+            for (Term term : longer.values()) {
+                if (!term.text.startsWith(word) || matches.size() >= maxExpansions) {
+                    break;
+                }
+                if (term.postings.size > 0) {
+                    matches.add(new Expansion(term, PREFIX));
+                }
+            }
+            if (matches.isEmpty() && maxTypos(word) > 0) {
+                fuzzy(word, maxExpansions, matches);
+            }
+            return matches;
+        }
+
+        private void fuzzy(String word, int maxExpansions, List<Expansion> matches) {
+            int typos = maxTypos(word);
+            int grams = Math.min(word.length(), GRAM_CHARS);
+            // Each typo changes at most three of the word's bigrams
+            int required = Math.max(1, grams - 3 * typos);
+            Map<Integer, Integer> shared = new HashMap<>();
+            int previous = 0;
+            for (int i = 0; i < grams; i++) {
+                int[] ids = bigrams.get(previous << 16 | word.charAt(i));
+                previous = word.charAt(i);
+                if (ids != null) {
+                    for (int k = 1; k <= ids[0]; k++) {
+                        shared.merge(ids[k], 1, Integer::sum);
+                    }
+                }
+            }
+            List<Expansion> found = new ArrayList<>();
+            for (Map.Entry<Integer, Integer> candidate : shared.entrySet()) {
+                if (candidate.getValue() < required) {
+                    continue;
+                }
+                Term term = termsById.get(candidate.getKey());
+                if (term.postings.size == 0) {
+                    continue;
+                }
+                int distance = prefixDistance(word, term.text, typos);
+                if (distance <= typos) {
+                    found.add(new Expansion(term, FUZZY / (1 + distance)));
+                }
+            }
+            found.sort((a, b) -> Float.compare(b.quality, a.quality));
+            matches.addAll(found.subList(0, Math.min(found.size(), maxExpansions)));
+        }
+
+        private float idf(int documentFrequency) {
+            return (float) Math.log(1 + (double) productCount / Math.max(1, documentFrequency));
+        }
+
+        private static float fieldWeight(int bits) {
+            for (int i = 0; i < FIELD_WEIGHTS.length; i++) {
+                if ((bits & (1 << i)) != 0) {
+                    return FIELD_WEIGHTS[i]; // the highest-weighted field the word occurs in
+                }
+            }
+            return 0f;
+        }
+    }
+
+    /**
+     * Open-addressing map from document to score for one query. A
+     * document stays a candidate only while it matches every word so far.
+     */
+    private static final class ScoreTable {
+        private int[] docs;
+        private float[] totals;
+        private float[] current;
+        private int[] rounds; // last round the document matched in; -1 for an empty slot
+        private int mask;
+        private int size;
+
+        ScoreTable(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+            docs = new int[capacity];
+            totals = new float[capacity];
+            current = new float[capacity];
+            rounds = new int[capacity];
+            Arrays.fill(rounds, -1);
+            mask = capacity - 1;
+        }
+
+        void match(int doc, int round, float score) {
+            int slot = slot(doc);
+            while (rounds[slot] != -1 && docs[slot] != doc) {
+                slot = (slot + 1) & mask;
+            }
+            if (rounds[slot] == -1) {
+                if (round > 0) {
+                    return; // missed an earlier word
+                }
+                if ((size + 1) * 2 > docs.length) {
+                    grow();
+                    match(doc, round, score);
+                    return;
+                }
+                docs[slot] = doc;
+                rounds[slot] = round;
+                current[slot] = score;
+                size++;
+            } else if (rounds[slot] == round) {
+                current[slot] = Math.max(current[slot], score);
+            } else if (rounds[slot] == round - 1) {
+                rounds[slot] = round;
+                current[slot] = score;
+            }
+        }
+
+        /**
+         * Add this word's best score to each document that matched it;
+         * the others are out from now on
+         */
+        void endRound(int round) {
+            for (int slot = 0; slot < docs.length; slot++) {
+                if (rounds[slot] == round) {
+                    totals[slot] += current[slot];
+                } else if (rounds[slot] >= 0) {
+                    rounds[slot] = Integer.MIN_VALUE; // keeps probe chains intact
+                    size--;
+                }
+            }
+        }
+
+        Result top(int limit, Product[] products) {
+            PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, (a, b) -> {
+                int byScore = Float.compare(totals[a], totals[b]);
+                return byScore != 0 ? byScore : compareIds(products[docs[b]].getId(), products[docs[a]].getId());
+            });
+            int total = 0;
+            for (int slot = 0; slot < docs.length; slot++) {
+                if (rounds[slot] >= 0) {
+                    total++;
+                    best.add(slot);
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
+            }
+            Product[] ranked = new Product[best.size()];
+            for (int i = ranked.length - 1; i >= 0; i--) {
+                ranked[i] = products[docs[best.poll()]];
+            }
+            return new Result(new ArrayList<>(Arrays.asList(ranked)), total);
+        }
+
+        private int slot(int doc) {
+            int hash = doc * 0x9E3779B9;
+            return (hash ^ hash >>> 16) & mask;
+        }
+
+        private void grow() {
+            int[] oldDocs = docs;
+            float[] oldCurrent = current;
+            int[] oldRounds = rounds;
+            int capacity = docs.length * 2;
+            docs = new int[capacity];
+            totals = new float[capacity];
+            current = new float[capacity];
+            rounds = new int[capacity];
+            Arrays.fill(rounds, -1);
+            mask = capacity - 1;
+            size = 0;
+            // Only called in the first round, before any totals exist
+            for (int slot = 0; slot < oldDocs.length; slot++) {
+                if (oldRounds[slot] >= 0) {
+                    match(oldDocs[slot], 0, oldCurrent[slot]);
+                }
+            }
+        }
+    }
+
+    private static int compareIds(String a, String b) {
+        if (a.length() != b.length()) {
+            return Integer.compare(a.length(), b.length());
+        }
+        return a.compareTo(b);
+    }
+}
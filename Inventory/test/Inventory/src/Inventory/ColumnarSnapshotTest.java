@@ -0,0 +1,179 @@
+package Inventory.src.Inventory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+class ColumnarSnapshotTest {
+    private final ColumnarSnapshot snapshot = new ColumnarSnapshot(true, 1024, 0);
+
+    @Test
+    void savedProductsAreListedInIdOrder() {
+        snapshot.productSaved(product(3, "Cake", "Bakery", 250, 12));
+        snapshot.productSaved(product(1, "Cone", "Dairy", 90, 5));
+        snapshot.productSaved(product(2, "Sorbet", "Non-Dairy", 120, 0));
+
+        assertEquals(3, snapshot.size());
+        assertEquals(List.of("1", "2", "3"), ids(snapshot.query(query())));
+        assertEquals("[" + json(1, "Cone", "Dairy", 90, 5, 0) + "," + json(2, "Sorbet", "Non-Dairy", 120, 0, 0)
+                + "," + json(3, "Cake", "Bakery", 250, 12, 0) + "]", writeAll());
+    }
+
+    @Test
+    void aSavedProductReplacesItsRow() {
+        snapshot.productSaved(product(1, "Cone", "Dairy", 90, 5));
+        Product changed = product(1, "Crème cone", "Frozen", 95, 6);
+        changed.setVersion(1);
+        snapshot.productSaved(changed);
+
+        assertEquals(1, snapshot.size());
+        assertEquals("[" + json(1, "Crème cone", "Frozen", 95, 6, 1) + "]", writeAll());
+        assertEquals(List.of(), ids(snapshot.query(query("category", "Dairy"))));
+        assertEquals(List.of("1"), ids(snapshot.query(query("category", "frozen"))));
+    }
+
+    @Test
+    void quantityChangesKeepTheRestOfTheRow() {
+        snapshot.productSaved(product(1, "Cone", "Dairy", 90, 5));
+        snapshot.productSaved(product(2, "Cake", "Bakery", 250, 12));
+        snapshot.quantityChanged("1", 40, 3);
+
+        assertEquals(List.of("1"), ids(snapshot.query(query("minQuantity", "20"))));
+        Product cone = snapshot.query(query("maxCost", "100")).getItems().get(0);
+        assertEquals("Cone", cone.getProducts());
+        assertEquals(90, cone.getCost());
+        assertEquals(40, cone.getQuantity());
+        assertEquals(3, cone.getVersion());
+    }
+
+    @Test
+    void deletedProductsAreNoLongerListed() {
+        snapshot.productSaved(product(1, "Cone", "Dairy", 90, 5));
+        snapshot.productSaved(product(2, "Cake", "Bakery", 250, 12));
+        snapshot.productDeleted("1");
+        snapshot.productDeleted("99");
+
+        assertEquals(1, snapshot.size());
+        assertEquals(List.of("2"), ids(snapshot.query(query())));
+        assertEquals("[" + json(2, "Cake", "Bakery", 250, 12, 0) + "]", writeAll());
+
+        // The ID can be written again, e.g. by a write that raced the delete
+        snapshot.productSaved(product(1, "Cone", "Dairy", 90, 5));
+        assertEquals(List.of("1", "2"), ids(snapshot.query(query())));
+    }
+
+    @Test
+    void rowsStayCorrectAcrossManyRewrites() {
+        for (int id = 1; id <= 50; id++) {
+            snapshot.productSaved(product(id, "Product " + id, "Dairy", id, id));
+        }
+        // Rewritten text and deleted rows waste space until the columns are compacted
+        for (int round = 0; round < 100; round++) {
+            for (int id = 1; id <= 50; id += 2) {
+                snapshot.productSaved(product(id, "Renamed " + id + " #" + round, "Dairy", id, id));
+            }
+        }
+        for (int id = 2; id <= 50; id += 2) {
+            snapshot.productDeleted(Integer.toString(id));
+        }
+
+        assertEquals(25, snapshot.size());
+        ProductQuery.Page page = snapshot.query(query("name", "renamed 4", "limit", "100"));
+        assertEquals(List.of("41", "43", "45", "47", "49"), ids(page));
+        assertEquals("Renamed 41 #99", page.getItems().get(0).getProducts());
+    }
+
+    @Test
+    void categoryPrefixMatchesIgnoringCase() {
+        snapshot.productSaved(product(1, "Cone", "Dairy", 90, 5));
+        snapshot.productSaved(product(2, "Sorbet", "Non-Dairy", 120, 0));
+        snapshot.productSaved(product(3, "Milk", "dairy-free", 40, 8));
+
+        assertEquals(List.of("1", "3"), ids(snapshot.query(query("categoryPrefix", "DAIRY"))));
+        assertEquals(List.of("2"), ids(snapshot.query(query("categoryPrefix", "non"))));
+        assertEquals(List.of("1"), ids(snapshot.query(query("categoryPrefix", "dai", "category", "Dairy"))));
+        assertEquals(List.of(), ids(snapshot.query(query("categoryPrefix", "airy"))));
+    }
+
+    @Test
+    void sortedPagesFollowTheCursor() {
+        for (int id = 1; id <= 7; id++) {
+            snapshot.productSaved(product(id, "Product " + id, "Dairy", 100 - id * 10, id));
+        }
+
+        ProductQuery.Page first = snapshot.query(query("sort", "cost", "order", "desc", "limit", "3"));
+        assertEquals(List.of("1", "2", "3"), ids(first));
+        ProductQuery.Page second = snapshot.query(
+                query("sort", "cost", "order", "desc", "limit", "3", "after", first.getNextCursor()));
+        assertEquals(List.of("4", "5", "6"), ids(second));
+        ProductQuery.Page last = snapshot.query(
+                query("sort", "cost", "order", "desc", "limit", "3", "after", second.getNextCursor()));
+        assertEquals(List.of("7"), ids(last));
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    void cursorsCarryAnySortValue() {
+        snapshot.productSaved(product(1, "Cone\nwith\nnewlines", "Dairy", 90, 5));
+        snapshot.productSaved(product(2, "Cone\n", "Dairy", 90, 5));
+        snapshot.productSaved(product(3, "Cone:2:", "Dairy", 90, 5));
+        snapshot.productSaved(product(4, "Cone", "Dairy", 90, 5));
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            ProductQuery.Page page = snapshot.query(cursor == null ? query("sort", "name", "limit", "1")
+                    : query("sort", "name", "limit", "1", "after", cursor));
+            seen.addAll(ids(page));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(List.of("4", "2", "1", "3"), seen);
+    }
+
+    private String writeAll() {
+        StringBuilder listing = new StringBuilder();
+        snapshot.writeAll(listing::append);
+        return listing.toString();
+    }
+
+    private static List<String> ids(ProductQuery.Page page) {
+        List<String> ids = new ArrayList<>();
+        for (Product product : page.getItems()) {
+            ids.add(product.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * A listing query as parsed from request parameters, given as name, value pairs
+     */
+    private static ProductQuery query(String... parameters) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < parameters.length; i += 2) {
+            values.put(parameters[i], parameters[i + 1]);
+        }
+        HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(
+                HttpServletRequest.class.getClassLoader(), new Class<?>[] { HttpServletRequest.class },
+                (proxy, method, args) -> method.getName().equals("getParameter") ? values.get(args[0]) : null);
+        return ProductQuery.fromRequest(request);
+    }
+
+    private static Product product(int id, String products, String category, int cost, int quantity) {
+        return new Product(Integer.toString(id), products, category, products, "Brand", cost, quantity);
+    }
+
+    private static String json(int id, String products, String category, int cost, int quantity, long version) {
+        return "{\"id\":\"" + id + "\",\"products\":\"" + products + "\",\"category\":\"" + category
+                + "\",\"name\":\"" + products + "\",\"brand\":\"Brand\",\"cost\":" + cost + ",\"quantity\":"
+                + quantity + ",\"version\":" + version + "}";
+    }
+}
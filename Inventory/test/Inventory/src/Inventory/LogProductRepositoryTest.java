@@ -0,0 +1,181 @@
+package Inventory.src.Inventory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LogProductRepositoryTest {
+    private static final int SEGMENT_BYTES = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void productsSurviveAReopen() throws Exception {
+        LogProductRepository store = open();
+        Product cone = store.insert(product("Cône glacé", 90, 5));
+        Product cake = store.insert(product("Cake", 250, 12));
+        store.update(cone.getId(), fields("{\"name\": \"Crème brûlée cone\", \"cost\": 95}"));
+        store.adjust(cake.getId(), -2, null);
+        store.close();
+
+        store = open();
+        Product reread = store.find(cone.getId(), ProductRepository.LATEST);
+        assertEquals("Crème brûlée cone", reread.getName());
+        assertEquals("Cône glacé", reread.getProducts());
+        assertEquals("Dairy", reread.getCategory());
+        assertEquals(95, reread.getCost());
+        assertEquals(5, reread.getQuantity());
+        assertEquals(1, reread.getVersion());
+
+        Map<String, Product> found = store.findAll(List.of(cake.getId(), "99"), ProductRepository.LATEST);
+        assertEquals(1, found.size());
+        assertEquals(10, found.get(cake.getId()).getQuantity());
+        assertEquals(1, found.get(cake.getId()).getVersion());
+        assertEquals(List.of("1", "2"), ids(store));
+        store.close();
+    }
+
+    @Test
+    void aTornLastRecordIsDroppedOnReopen() throws Exception {
+        LogProductRepository store = open();
+        store.insert(product("First", 10, 1));
+        store.insert(product("Second", 20, 2));
+        store.insert(product("Third", 30, 3));
+        store.close();
+
+        // A crash mid-write: the end of the last record never reached the disk
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int lastEnd = endOfLastRecord(channel);
+            channel.write(ByteBuffer.allocate(4), lastEnd - 4);
+        }
+
+        store = open();
+        assertEquals(List.of("1", "2"), ids(store));
+        assertEquals("Second", store.find("2", ProductRepository.LATEST).getProducts());
+        assertNull(store.find("3", ProductRepository.LATEST));
+        // The torn record was never acknowledged, so its ID is free again
+        assertEquals("3", store.insert(product("Third again", 30, 3)).getId());
+        store.close();
+
+        store = open();
+        assertEquals("Third again", store.find("3", ProductRepository.LATEST).getProducts());
+        store.close();
+    }
+
+    @Test
+    void compactionDropsSupersededRecordsAndKeepsTheLatest() throws Exception {
+        LogProductRepository store = open();
+        store.insert(product("Hot", 10, 0));
+        store.insert(product("Gone", 20, 0));
+        store.insert(product("Cold", 30, 7));
+        for (int i = 1; i <= 300; i++) {
+            store.update("1", fields("{\"quantity\": " + i + "}"));
+        }
+        assertTrue(store.delete("2"));
+        int before = segments().size();
+
+        store.compact();
+        int after = segments().size();
+        assertTrue(after < before, after + " segments after compaction, " + before + " before");
+        assertEquals(300, store.find("1", ProductRepository.LATEST).getQuantity());
+        assertEquals(300, store.find("1", ProductRepository.LATEST).getVersion());
+        assertNull(store.find("2", ProductRepository.LATEST));
+        assertEquals(7, store.find("3", ProductRepository.LATEST).getQuantity());
+
+        // Writes after compaction go on as before
+        store.update("3", fields("{\"quantity\": 8}"));
+        store.close();
+
+        store = open();
+        assertEquals(List.of("1", "3"), ids(store));
+        assertEquals(300, store.find("1", ProductRepository.LATEST).getVersion());
+        assertEquals(8, store.find("3", ProductRepository.LATEST).getQuantity());
+        store.close();
+    }
+
+    @Test
+    void deletedIdsAreNotReused() throws Exception {
+        LogProductRepository store = open();
+        store.insert(product("One", 10, 1));
+        store.insert(product("Two", 20, 2));
+        assertTrue(store.delete("2"));
+        assertFalse(store.delete("2"));
+        store.close();
+
+        store = open();
+        assertEquals("3", store.insert(product("Three", 30, 3)).getId());
+        assertTrue(store.delete("3"));
+        store.compact();
+        store.close();
+
+        // The tombstones are copied by compaction, so the highest ID is still known
+        store = open();
+        assertEquals("4", store.insert(product("Four", 40, 4)).getId());
+        assertEquals(List.of("1", "4"), ids(store));
+        store.close();
+    }
+
+    private LogProductRepository open() throws IOException {
+        LogProductRepository store = new LogProductRepository(directory, SEGMENT_BYTES, false, 0);
+        store.open();
+        return store;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static List<String> ids(LogProductRepository store) throws SQLException {
+        List<String> ids = new ArrayList<>();
+        store.forEach(product -> ids.add(product.getId()), ProductRepository.LATEST);
+        return ids;
+    }
+
+    /**
+     * Records are [length][CRC32][payload]; the segment is zero-filled after the last one
+     */
+    private static int endOfLastRecord(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        int position = 0;
+        while (true) {
+            header.clear();
+            channel.read(header, position);
+            int length = header.getInt(0);
+            if (length <= 0) {
+                return position;
+            }
+            position += 8 + length;
+        }
+    }
+
+    private static Product product(String products, int cost, int quantity) {
+        return new Product(null, products, "Dairy", products + " name", "Brand", cost, quantity);
+    }
+
+    private static ProductJsonCodec.Fields fields(String json) throws IOException {
+        return ProductJsonCodec.readProduct(new StringReader(json));
+    }
+}
@@ -0,0 +1,101 @@
+package Inventory.src.Inventory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SearchIndexTest {
+    private final SearchIndex index = new SearchIndex(50);
+
+    @Test
+    void findsSavedProductsByAnyIndexedField() {
+        index.productSaved(product(1, "Galaxy S24", "Electronics", "Samsung Galaxy phone", "Samsung"));
+        index.productSaved(product(2, "Cone", "Dairy", "Chocolate Cone", "Cornetto"));
+
+        assertEquals(2, index.size());
+        assertEquals(List.of("1"), ids(index.search("galaxy", 10)));
+        assertEquals(List.of("1"), ids(index.search("SAMSUNG", 10)));
+        assertEquals(List.of("2"), ids(index.search("cornetto", 10)));
+        assertEquals(List.of("2"), ids(index.search("dairy", 10)));
+        assertEquals(List.of(), ids(index.search("", 10)));
+    }
+
+    @Test
+    void everyQueryWordMustMatch() {
+        index.productSaved(product(1, "Cone", "Dairy", "Chocolate Cone", "Cornetto"));
+        index.productSaved(product(2, "Bar", "Dairy", "Chocolate Bar", "Amul"));
+
+        assertEquals(2, index.search("chocolate", 10).getTotal());
+        assertEquals(List.of("2"), ids(index.search("chocolate bar", 10)));
+        assertEquals(List.of(), ids(index.search("chocolate sorbet", 10)));
+    }
+
+    @Test
+    void matchesPrefixesTyposAndAccents() {
+        index.productSaved(product(1, "Galaxy S24", "Electronics", "Samsung Galaxy phone", "Samsung"));
+        index.productSaved(product(2, "Brûlée", "Dairy", "Crème brûlée", "Amul"));
+
+        assertEquals(List.of("1"), ids(index.search("sam", 10)));
+        assertEquals(List.of("1"), ids(index.search("samsong", 10)));
+        assertEquals(List.of("2"), ids(index.search("creme brulee", 10)));
+    }
+
+    @Test
+    void nameMatchesRankAboveCategoryMatches() {
+        index.productSaved(product(1, "Tub", "Frozen", "Vanilla tub", "Amul"));
+        index.productSaved(product(2, "Frozen yogurt", "Dairy", "Frozen yogurt", "Amul"));
+
+        assertEquals(List.of("2", "1"), ids(index.search("frozen", 10)));
+        SearchIndex.Result first = index.search("frozen", 1);
+        assertEquals(List.of("2"), ids(first));
+        assertEquals(2, first.getTotal());
+    }
+
+    @Test
+    void aSavedProductReplacesItsWords() {
+        index.productSaved(product(1, "Cone", "Dairy", "Chocolate Cone", "Cornetto"));
+        index.productSaved(product(1, "Cone", "Dairy", "Strawberry Cone", "Cornetto"));
+
+        assertEquals(1, index.size());
+        assertEquals(List.of(), ids(index.search("chocolate", 10)));
+        assertEquals(List.of("1"), ids(index.search("strawberry", 10)));
+    }
+
+    @Test
+    void quantityChangesShowInResults() {
+        index.productSaved(product(1, "Cone", "Dairy", "Chocolate Cone", "Cornetto"));
+        index.quantityChanged("1", 42, 3);
+
+        Product cone = index.search("cone", 10).getItems().get(0);
+        assertEquals(42, cone.getQuantity());
+        assertEquals(3, cone.getVersion());
+        assertEquals("Chocolate Cone", cone.getName());
+    }
+
+    @Test
+    void deletedProductsAreNoLongerFound() {
+        index.productSaved(product(1, "Cone", "Dairy", "Chocolate Cone", "Cornetto"));
+        index.productSaved(product(2, "Bar", "Dairy", "Chocolate Bar", "Amul"));
+        index.productDeleted("1");
+        index.productDeleted("99");
+
+        assertEquals(1, index.size());
+        assertEquals(List.of("2"), ids(index.search("chocolate", 10)));
+        assertEquals(List.of(), ids(index.search("cornetto", 10)));
+    }
+
+    private static List<String> ids(SearchIndex.Result result) {
+        List<String> ids = new ArrayList<>();
+        for (Product product : result.getItems()) {
+            ids.add(product.getId());
+        }
+        return ids;
+    }
+
+    private static Product product(int id, String products, String category, String name, String brand) {
+        return new Product(Integer.toString(id), products, category, name, brand, 100, 10);
+    }
+}